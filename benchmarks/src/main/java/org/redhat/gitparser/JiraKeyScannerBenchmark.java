@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JIRA key extraction and linkification, the {@link JiraKeyScanner} against the indexOf/replace
+ * implementation it replaced. The messages are the ones from JiraReplaceTest plus a longer one.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JiraKeyScannerBenchmark {
+
+   private static final String BROWSE = "https://issues.apache.org/jira/browse/";
+
+   @Param({"multiple", "simple", "single", "long"})
+   public String message;
+
+   private String text;
+   private JiraKeyScanner scanner;
+   private JiraKeyScanner.Matches matches;
+   private GitParser parser;
+
+   @Setup
+   public void setup() {
+      switch (message) {
+         case "multiple":
+            text = "[ARTEMIS-110] [ARTEMIS-1264]";
+            break;
+         case "simple":
+            text = "ARTEMIS-1537 broker was less strict while reloading configuration";
+            break;
+         case "single":
+            text = "ARTEMIS-123";
+            break;
+         default:
+            text = "ARTEMIS-1723 ARTEMIS-1724 avoid blocking on the large message streaming when the consumer is slow " +
+               "(follow up on ARTEMIS-1723, related to ARTEMIS-1498 and ARTEMIS-1723) no JIRA on the rest of the message";
+      }
+      scanner = new JiraKeyScanner("ARTEMIS-");
+      matches = new JiraKeyScanner.Matches();
+      parser = new GitParser(new File("."), "ARTEMIS-", BROWSE, "https://github.com/apache/activemq-artemis/");
+   }
+
+   @Benchmark
+   public void scan(Blackhole bh) {
+      scanner.scan(text, matches);
+      bh.consume(matches.size());
+   }
+
+   @Benchmark
+   public String[] extractKeys() {
+      return scanner.scan(text, matches).keys();
+   }
+
+   @Benchmark
+   public String[] extractKeysLegacy() {
+      return legacyExtract("ARTEMIS-", text);
+   }
+
+   @Benchmark
+   public String prettyMessage() {
+      return parser.prettyCommitMessage(text);
+   }
+
+   @Benchmark
+   public String prettyMessageLegacy() {
+      String[] jiras = legacyExtract("ARTEMIS-", text);
+      String result = text;
+      for (int i = 0; i < jiras.length; i++) {
+         result = result.replace(jiras[i], "<a href='" + BROWSE + jiras[i] + "'>" + jiras[i] + "</a>");
+      }
+      return result;
+   }
+
+   /**
+    * The extraction as it was before {@link JiraKeyScanner}.
+    */
+   private static String[] legacyExtract(String jira, String message) {
+      HashSet<String> list = new HashSet<>(1);
+      for (int jiraIndex = message.indexOf(jira); jiraIndex >= 0; jiraIndex = message.indexOf(jira, jiraIndex)) {
+         StringBuffer jiraID = new StringBuffer(jira);
+
+         for (int i = jiraIndex + jira.length(); i < message.length(); i++) {
+            char charAt = message.charAt(i);
+            if (charAt >= '0' && charAt <= '9') {
+               jiraID.append(charAt);
+            } else {
+               break;
+            }
+         }
+         list.add(jiraID.toString());
+         jiraIndex++;
+      }
+
+      return list.toArray(new String[list.size()]);
+   }
+}
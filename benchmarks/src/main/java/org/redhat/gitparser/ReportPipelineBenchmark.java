@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Each stage of the report on its own, plus the whole {@link GitParser#parse(File, String, String)},
+ * over a {@link SyntheticRepository} generated once per trial.
+ *
+ * Every operation covers the whole range between the start and end tags, so the scores of the stages
+ * can be compared with each other and with the full parse. JIRAs are not resolved, there's no network here.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportPipelineBenchmark {
+
+   @Param({"1000"})
+   public int commits;
+
+   @Param({"4"})
+   public int filesPerCommit;
+
+   @Param({"5"})
+   public int hunkSize;
+
+   @Param({"1", "4"})
+   public int parallelism;
+
+   // commits moving a whole package
+   @Param({"0"})
+   public int packageMoves;
+
+   @Param({"false"})
+   public boolean detectRenames;
+
+   @Param({"HISTOGRAM"})
+   public DiffAlgorithm.SupportedAlgorithm diffAlgorithm;
+
+   private File directory;
+   private File repositoryFolder;
+   private Repository repository;
+   private RevWalk walk;
+   private GitParser parser;
+   private PathClassifier classifier;
+   private CommitDiffer differ;
+   private final JiraKeyScanner.Matches matches = new JiraKeyScanner.Matches();
+   private final BitSet folders = new BitSet();
+
+   private List<RevCommit> commitList;
+   private List<String> messages;
+   private List<String> paths;
+   private List<CommitStats> statsList;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      directory = Files.createTempDirectory("report-benchmark").toFile();
+      repositoryFolder = new SyntheticRepository().setCommits(commits).setFilesPerCommit(filesPerCommit).setHunkSize(hunkSize).
+         setPackageMoves(packageMoves).create(new File(directory, "repository"));
+
+      parser = newParser();
+      classifier = parser.newPathClassifier();
+      repository = new FileRepositoryBuilder().setGitDir(new File(repositoryFolder, ".git")).build();
+      walk = new RevWalk(repository);
+      differ = new CommitDiffer(parser, classifier, repository, new ReportMetrics());
+
+      commitList = walk(walk);
+      messages = new ArrayList<>(commitList.size());
+      paths = new ArrayList<>();
+      statsList = new ArrayList<>(commitList.size());
+      for (RevCommit commit : commitList) {
+         messages.add(commit.getShortMessage());
+         CommitStats stats = differ.diff(commit);
+         stats.setJiras(parser.getJiraScanner().scan(commit.getShortMessage()).keys());
+         statsList.add(stats);
+      }
+
+      // every path changed on the range, as given to the PathClassifier
+      try (ObjectReader reader = repository.newObjectReader()) {
+         for (RevCommit commit : commitList) {
+            for (DiffEntry entry : DiffEntry.scan(newTreeWalk(reader, commit))) {
+               paths.add(entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath());
+            }
+         }
+      }
+   }
+
+   private static TreeWalk newTreeWalk(ObjectReader reader, RevCommit commit) throws IOException {
+      TreeWalk treeWalk = new TreeWalk(reader);
+      treeWalk.setRecursive(true);
+      treeWalk.addTree(commit.getParent(0).getTree());
+      treeWalk.addTree(commit.getTree());
+      return treeWalk;
+   }
+
+   private GitParser newParser() {
+      GitParser parser = new GitParser(repositoryFolder, "ARTEMIS-", "https://issues.apache.org/jira/browse/", "https://github.com/apache/activemq-artemis/").
+         setSourceSuffix(".java", ".md").setParallelism(parallelism).setDetectRenames(detectRenames).setDiffAlgorithm(diffAlgorithm).setQuiet(true);
+      parser.addInterestingfolder("test").addInterestingfolder("docs/");
+      return parser;
+   }
+
+   /**
+    * The same walk as the report, parsing the parents so they can be diffed.
+    */
+   private List<RevCommit> walk(RevWalk walk) throws Exception {
+      walk.reset();
+      ObjectId from = repository.resolve("start");
+      ObjectId to = repository.resolve("end");
+      walk.markUninteresting(walk.parseCommit(from));
+      walk.markStart(walk.parseCommit(to));
+      walk.sort(RevSort.REVERSE, true);
+      walk.setRevFilter(RevFilter.NO_MERGES);
+
+      List<RevCommit> list = new ArrayList<>();
+      for (RevCommit commit : walk) {
+         if (commit.getParentCount() > 0) {
+            walk.parseHeaders(commit.getParent(0));
+         }
+         list.add(commit);
+      }
+      return list;
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception {
+      differ.close();
+      walk.close();
+      repository.close();
+      Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   @Benchmark
+   public int revWalk() throws Exception {
+      try (RevWalk revWalk = new RevWalk(repository)) {
+         return walk(revWalk).size();
+      }
+   }
+
+   /**
+    * Tree diff, blob loading and edit lists on a single thread.
+    */
+   @Benchmark
+   public void diff(Blackhole bh) throws Exception {
+      for (RevCommit commit : commitList) {
+         bh.consume(differ.diff(commit));
+      }
+   }
+
+   /**
+    * The same as {@link #diff(Blackhole)}, through the worker pool of the given parallelism.
+    */
+   @Benchmark
+   public List<CommitStats> diffEngine() throws Exception {
+      try (DiffEngine engine = new DiffEngine(parser, classifier, repository, new ReportMetrics(), parallelism)) {
+         return engine.diff(commitList);
+      }
+   }
+
+   @Benchmark
+   @OutputTimeUnit(TimeUnit.MICROSECONDS)
+   public void jiraExtraction(Blackhole bh) {
+      JiraKeyScanner scanner = parser.getJiraScanner();
+      for (int i = 0; i < messages.size(); i++) {
+         bh.consume(scanner.scan(messages.get(i), matches).keys());
+      }
+   }
+
+   @Benchmark
+   @OutputTimeUnit(TimeUnit.MICROSECONDS)
+   public int pathClassification() {
+      int sources = 0;
+      for (int i = 0; i < paths.size(); i++) {
+         if (classifier.classify(paths.get(i), folders)) {
+            sources += 1 + folders.cardinality();
+         }
+      }
+      return sources;
+   }
+
+   /**
+    * Only the HTML, from the commits and stats already computed.
+    */
+   @Benchmark
+   public long htmlRendering() throws Exception {
+      File output = new File(directory, "rendering.html");
+      try (HtmlReport report = new HtmlReport(parser, output)) {
+         RevCommit first = commitList.get(0);
+         RevCommit last = commitList.get(commitList.size() - 1);
+         report.begin(parser, "start", first, "end", last);
+         for (int i = 0; i < commitList.size(); i++) {
+            report.commit(i + 1, commitList.get(i), statsList.get(i), null);
+         }
+         report.end(Collections.<String>emptyList());
+         return report.getWritten();
+      }
+   }
+
+   @Benchmark
+   public File parse() throws Exception {
+      File output = new File(directory, "report/report.html");
+      newParser().parse(output, "start", "end");
+      return output;
+   }
+}
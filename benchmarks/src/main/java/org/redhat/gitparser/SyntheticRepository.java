@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+
+/**
+ * Generates a git repository locally, with no network, shaped like the ones the report runs on.
+ *
+ * The first commit adds all the files and is tagged <i>start</i>, each following commit edits a few of them
+ * with a number of hunks, and the last one is tagged <i>end</i>. Files are spread over main sources, tests,
+ * docs and non source files, so every stage of the report has work to do.
+ *
+ * Objects are written straight through an ObjectInserter, which is a lot faster than staging files on a work tree.
+ * The same settings and seed always produce the same repository.
+ */
+
+public class SyntheticRepository {
+
+   private int commits = 1000;
+   private int files = 200;
+   private int filesPerCommit = 4;
+   private int hunksPerFile = 3;
+   private int hunkSize = 5;
+   private int fileLines = 200;
+   // percentage of the commits with a JIRA on the message
+   private int jiraPercentage = 80;
+   private String jira = "ARTEMIS-";
+   // number of commits moving a whole package, spread over the range
+   private int packageMoves = 0;
+   private boolean packed = true;
+   private long seed = 42;
+
+   private Random random;
+   // the current name of each package, changed by the package moves
+   private final String[] packages = new String[7];
+
+   public SyntheticRepository setCommits(int commits) {
+      this.commits = commits;
+      return this;
+   }
+
+   public SyntheticRepository setFiles(int files) {
+      this.files = files;
+      return this;
+   }
+
+   public SyntheticRepository setFilesPerCommit(int filesPerCommit) {
+      this.filesPerCommit = filesPerCommit;
+      return this;
+   }
+
+   public SyntheticRepository setHunksPerFile(int hunksPerFile) {
+      this.hunksPerFile = hunksPerFile;
+      return this;
+   }
+
+   /**
+    * Number of lines inserted, replaced or deleted by each hunk.
+    */
+   public SyntheticRepository setHunkSize(int hunkSize) {
+      this.hunkSize = hunkSize;
+      return this;
+   }
+
+   public SyntheticRepository setFileLines(int fileLines) {
+      this.fileLines = fileLines;
+      return this;
+   }
+
+   public SyntheticRepository setJiraPercentage(int jiraPercentage) {
+      this.jiraPercentage = jiraPercentage;
+      return this;
+   }
+
+   public SyntheticRepository setJira(String jira) {
+      this.jira = jira;
+      return this;
+   }
+
+   /**
+    * Each of these commits moves every file of one package to a new package, editing a few of them, as on a refactoring.
+    */
+   public SyntheticRepository setPackageMoves(int packageMoves) {
+      this.packageMoves = packageMoves;
+      return this;
+   }
+
+   /**
+    * When set the objects are packed at the end, as on a cloned repository.
+    */
+   public SyntheticRepository setPacked(boolean packed) {
+      this.packed = packed;
+      return this;
+   }
+
+   public SyntheticRepository setSeed(long seed) {
+      this.seed = seed;
+      return this;
+   }
+
+   /**
+    * The path of the file number n, about 60% main sources, 20% tests, 10% docs and 10% non source files.
+    * Sources and tests are spread over 7 packages.
+    */
+   static String path(int n, String pkg) {
+      switch (n % 10) {
+         case 0:
+            return "pom" + n + ".xml";
+         case 1:
+            return "docs/user-manual/chapter" + n + ".md";
+         case 2:
+         case 3:
+            return "tests/src/test/java/org/example/" + pkg + "/Class" + n + "Test.java";
+         default:
+            return "src/main/java/org/example/" + pkg + "/Class" + n + ".java";
+      }
+   }
+
+   private String currentPath(int n) {
+      return path(n, packages[n % 7]);
+   }
+
+   /**
+    * Moves the sources and tests of one package, the files keep their content.
+    */
+   private void movePackage(TreeMap<String, ObjectId> blobs, int pkg, String name) {
+      for (int n = pkg; n < files; n += 7) {
+         ObjectId blob = blobs.remove(currentPath(n));
+         blobs.put(path(n, name), blob);
+      }
+      packages[pkg] = name;
+   }
+
+   public File create(File folder) throws Exception {
+      random = new Random(seed);
+      for (int p = 0; p < packages.length; p++) {
+         packages[p] = "pkg" + p;
+      }
+      List<List<String>> contents = new ArrayList<>(files);
+      TreeMap<String, ObjectId> blobs = new TreeMap<>();
+
+      try (Git git = Git.init().setDirectory(folder).call()) {
+         Repository repository = git.getRepository();
+         try (ObjectInserter inserter = repository.newObjectInserter()) {
+            for (int n = 0; n < files; n++) {
+               List<String> lines = new ArrayList<>(fileLines);
+               for (int i = 0; i < fileLines; i++) {
+                  lines.add(newLine(n));
+               }
+               contents.add(lines);
+               blobs.put(currentPath(n), insertBlob(inserter, lines));
+            }
+
+            long time = 1500000000000L;
+            ObjectId head = insertCommit(inserter, blobs, null, "initial commit", 0, time);
+            updateRef(repository, Constants.R_TAGS + "start", head);
+
+            for (int c = 1; c <= commits; c++) {
+               if (packageMoves > 0 && c % (commits / packageMoves + 1) == 0) {
+                  int pkg = c % packages.length;
+                  movePackage(blobs, pkg, "pkg" + pkg + "v" + c);
+               }
+               for (int f = 0; f < filesPerCommit; f++) {
+                  int n = random.nextInt(files);
+                  List<String> lines = contents.get(n);
+                  for (int h = 0; h < hunksPerFile; h++) {
+                     edit(lines, n);
+                  }
+                  blobs.put(currentPath(n), insertBlob(inserter, lines));
+               }
+
+               String message;
+               if (random.nextInt(100) < jiraPercentage) {
+                  message = jira + (1000 + random.nextInt(commits)) + " change number " + c;
+               } else {
+                  message = "NO-JIRA change number " + c;
+               }
+               head = insertCommit(inserter, blobs, head, message, c, time + c * 60000L);
+            }
+            inserter.flush();
+
+            updateRef(repository, Constants.R_TAGS + "end", head);
+            updateRef(repository, Constants.R_HEADS + "master", head);
+         }
+
+         if (packed) {
+            git.gc().call();
+         }
+      }
+      return folder;
+   }
+
+   private String newLine(int file) {
+      return "   int field" + random.nextInt(100000) + " = " + file + ";";
+   }
+
+   /**
+    * One hunk, inserting, replacing or deleting hunkSize lines at a random position.
+    */
+   private void edit(List<String> lines, int file) {
+      int position = random.nextInt(lines.size() + 1);
+      int type = lines.size() - position < hunkSize ? 0 : random.nextInt(3);
+      for (int i = 0; i < hunkSize; i++) {
+         switch (type) {
+            case 0:
+               lines.add(position, newLine(file));
+               break;
+            case 1:
+               lines.set(position + i, newLine(file));
+               break;
+            default:
+               // the file never goes below its original size
+               if (lines.size() > fileLines) {
+                  lines.remove(position);
+               } else {
+                  lines.set(position + i, newLine(file));
+               }
+         }
+      }
+   }
+
+   private static ObjectId insertBlob(ObjectInserter inserter, List<String> lines) throws IOException {
+      StringBuilder builder = new StringBuilder(lines.size() * 32);
+      for (String line : lines) {
+         builder.append(line).append('\n');
+      }
+      return inserter.insert(Constants.OBJ_BLOB, builder.toString().getBytes(StandardCharsets.UTF_8));
+   }
+
+   private ObjectId insertCommit(ObjectInserter inserter, TreeMap<String, ObjectId> blobs, ObjectId parent, String message, int number, long time) throws IOException {
+      PersonIdent author = new PersonIdent("Author " + (number % 7), "author" + (number % 7) + "@example.com", time, 0);
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(insertTree(inserter, blobs, ""));
+      if (parent != null) {
+         commit.setParentId(parent);
+      }
+      commit.setAuthor(author);
+      commit.setCommitter(author);
+      commit.setMessage(message);
+      return inserter.insert(commit);
+   }
+
+   /**
+    * Inserts the tree for one directory, given as a prefix of the (sorted) paths.
+    */
+   private static ObjectId insertTree(ObjectInserter inserter, TreeMap<String, ObjectId> blobs, String directory) throws IOException {
+      // git sorts a directory as if its name ended with '/', the keys here follow the same rule
+      TreeMap<String, Object> entries = new TreeMap<>();
+      Map<String, ObjectId> children = directory.isEmpty() ? blobs : blobs.subMap(directory, directory + Character.MAX_VALUE);
+      for (Map.Entry<String, ObjectId> entry : children.entrySet()) {
+         String relative = entry.getKey().substring(directory.length());
+         int slash = relative.indexOf('/');
+         if (slash < 0) {
+            entries.put(relative, entry.getValue());
+         } else {
+            String name = relative.substring(0, slash + 1);
+            if (!entries.containsKey(name)) {
+               entries.put(name, insertTree(inserter, blobs, directory + name));
+            }
+         }
+      }
+
+      TreeFormatter tree = new TreeFormatter();
+      for (Map.Entry<String, Object> entry : entries.entrySet()) {
+         String name = entry.getKey();
+         if (name.endsWith("/")) {
+            tree.append(name.substring(0, name.length() - 1), FileMode.TREE, (ObjectId) entry.getValue());
+         } else {
+            tree.append(name, FileMode.REGULAR_FILE, (ObjectId) entry.getValue());
+         }
+      }
+      return inserter.insert(tree);
+   }
+
+   private static void updateRef(Repository repository, String name, ObjectId id) throws IOException {
+      RefUpdate update = repository.updateRef(name);
+      update.setNewObjectId(id);
+      update.setForceUpdate(true);
+      update.update();
+   }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Same as {@link ArtemisParser}, for many ranges at once, e.g. 2.16.0..2.17.0 2.17.0..2.18.0
+ */
+
+public class ArtemisBatchParser {
+
+   public static void main(String arg[]) {
+      try {
+         if (arg.length < 4) {
+            System.err.println("use ArtemisBatchParser <repository> <reportDirectory> <rest : true|false> [--resume] <from..to [^excluded]...>...");
+            System.exit(-1);
+         }
+
+         boolean rest = Boolean.parseBoolean(arg[2]);
+
+         boolean resume = false;
+         List<ReportRange> ranges = new ArrayList<>();
+         for (int i = 3; i < arg.length; i++) {
+            if (arg[i].equals("--resume")) {
+               resume = true;
+            } else if (arg[i].startsWith("^") && !ranges.isEmpty()) {
+               // excluded from the range before it
+               ReportRange range = ranges.remove(ranges.size() - 1);
+               ranges.add(ReportRange.parse(range + " " + arg[i]));
+            } else {
+               ranges.add(ReportRange.parse(arg[i]));
+            }
+         }
+
+         GitParser parser = ArtemisParser.newParser(new File(arg[0]), rest).setCheckpointInterval(ArtemisParser.CHECKPOINT_INTERVAL).setResume(resume);
+         parser.parse(new File(arg[1]), ranges);
+
+      } catch (Exception e) {
+         e.printStackTrace();
+         System.exit(-1);
+      }
+   }
+}
@@ -18,8 +18,7 @@
 package org.redhat.gitparser;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
 
 /**
  * @author Clebert Suconic
@@ -27,24 +26,30 @@ import java.io.PrintStream;
 
 public class ArtemisParser {
 
+   // a checkpoint a minute on the command line runs, which --resume goes on from
+   static final int CHECKPOINT_INTERVAL = 60000;
+
+   /**
+    * The parser of the artemis profile, see {@link ReportProfile#builtin(String)}.
+    */
+   static GitParser newParser(File repository, boolean rest) throws IOException {
+      GitParser parser = ReportProfile.builtin("artemis").newParser(repository);
+      if (!rest) {
+         parser.setRestLocation(null);
+      }
+      return parser;
+   }
+
    public static void main(String arg[]) {
       try {
-         if (arg.length != 5) {
-            System.err.println("use Parser <repository> <reportOutput> <from> <to> <rest : true|false>");
+         if (arg.length != 5 && !(arg.length == 6 && arg[5].equals("--resume"))) {
+            System.err.println("use Parser <repository> <reportOutput> <from> <to> <rest : true|false> [--resume]");
             System.exit(-1);
          }
 
          boolean rest = Boolean.parseBoolean(arg[4]);
 
-         GitParser parser = new GitParser(new File(arg[0]), "ARTEMIS-", "https://issues.apache.org/jira/browse/", "https://github.com/apache/activemq-artemis/").
-            setSourceSuffix(".java", ".md", ".c", ".sh", ".groovy").
-            setSampleJQL("https://issues.apache.org/jira/issues/?jql=project%20%3D%20ARTEMIS%20AND%20key%20in%20");
-
-         if (rest) {
-            parser.setRestLocation("https://issues.apache.org/jira/rest/api/2/issue/");
-         }
-
-         parser.addInterestingfolder("test").addInterestingfolder("docs/").addInterestingfolder("examples/");
+         GitParser parser = newParser(new File(arg[0]), rest).setCheckpointInterval(CHECKPOINT_INTERVAL).setResume(arg.length == 6);
          File file = new File(arg[1]);
          parser.parse(file, arg[2], arg[3]);
 
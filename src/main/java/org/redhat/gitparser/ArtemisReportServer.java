@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves the {@link ArtemisParser} reports from a long running process, e.g. http://localhost:8080/report?from=2.16.0&amp;to=2.17.0
+ */
+
+public class ArtemisReportServer {
+
+   public static void main(String arg[]) {
+      try {
+         if (arg.length != 3) {
+            System.err.println("use ArtemisReportServer <repository> <port> <rest : true|false>");
+            System.exit(-1);
+         }
+
+         boolean rest = Boolean.parseBoolean(arg[2]);
+
+         GitParser parser = ArtemisParser.newParser(new File(arg[0]), rest).setQuiet(true);
+         ReportServer server = new ReportServer(parser, new InetSocketAddress("localhost", Integer.parseInt(arg[1])), 4);
+         server.start();
+         System.out.println("Serving reports on http://localhost:" + server.getPort() + "/report?from=X&to=Y");
+
+      } catch (Exception e) {
+         e.printStackTrace();
+         System.exit(-1);
+      }
+   }
+}
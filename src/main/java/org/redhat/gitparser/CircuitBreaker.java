@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.redhat.gitparser;
+
+/**
+ * Stops calling a tracker that keeps failing.
+ *
+ * After a number of failures in a row the breaker opens, and every request is refused for a while.
+ * Then a single request goes through: the breaker closes if it succeeds, or opens again if it fails.
+ */
+
+final class CircuitBreaker {
+
+   enum State {
+      CLOSED, OPEN, HALF_OPEN
+   }
+
+   private final int threshold;
+   private final long openNanos;
+   private State state = State.CLOSED;
+   private int failures;
+   private long openedAt;
+
+   /**
+    * @param threshold  failures in a row opening the breaker, 0 to never open it
+    * @param openMillis how long requests are refused once open
+    */
+   CircuitBreaker(int threshold, long openMillis) {
+      this.threshold = threshold;
+      this.openNanos = openMillis * 1000000L;
+   }
+
+   /**
+    * Whether a request can go, letting the trial request through once the open time is over.
+    */
+   synchronized boolean allow() {
+      switch (state) {
+         case CLOSED:
+            return true;
+         case OPEN:
+            if (System.nanoTime() - openedAt < openNanos) {
+               return false;
+            }
+            state = State.HALF_OPEN;
+            return true;
+         default:
+            // the trial request is still out
+            return false;
+      }
+   }
+
+   /**
+    * Refusing requests, without letting a trial through.
+    */
+   synchronized boolean isOpen() {
+      return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+   }
+
+   synchronized void success() {
+      failures = 0;
+      state = State.CLOSED;
+   }
+
+   synchronized void failure() {
+      failures++;
+      if (state == State.HALF_OPEN || threshold > 0 && failures >= threshold) {
+         state = State.OPEN;
+         openedAt = System.nanoTime();
+      }
+   }
+
+   /**
+    * Opens the breaker at once, e.g. when the tracker asks to wait longer than anyone would.
+    */
+   synchronized void trip() {
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+   }
+
+   synchronized State getState() {
+      return state;
+   }
+}
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+/**
+ * Computes the {@link CommitStats} of one commit at a time.
+ *
+ * ObjectReader, DiffFormatter and the tree parsers are not thread safe,
+ * so each thread diffing commits needs its own CommitDiffer.
+ */
+
+class CommitDiffer implements AutoCloseable {
+
+   private final GitParser parser;
+   private final PathClassifier classifier;
+   private final BitSet folders = new BitSet();
+   private final ObjectReader reader;
+   private final DiffFormatter diffFormatter;
+   private final CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
+   private final CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
+   private final ReportMetrics metrics;
+   // counted here and added to the metrics on close, so the threads don't contend on every entry
+   private long diffEntries;
+   private long blobsLoaded;
+   private long editsCounted;
+   // edits this close are linked as one range
+   private final int lineGap;
+   // the ranges of the file being diffed, reused from one file to the next
+   private int[] ranges = new int[16];
+   private long renamesDetected;
+   private long diffsSkipped;
+   private final int maxDiffBytes;
+   // used to count the lines of the files too large to diff
+   private final byte[] buffer = new byte[8 * 1024];
+
+   CommitDiffer(GitParser parser, PathClassifier classifier, Repository repository, ReportMetrics metrics) {
+      this.parser = parser;
+      this.classifier = classifier;
+      this.metrics = metrics;
+      this.reader = repository.newObjectReader();
+      this.diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+      diffFormatter.setReader(reader, repository.getConfig());
+      TreeFilter filter = sourceFilter(parser.getSourceSuffix());
+      TreeFilter pathFilter = pathFilter(parser.getIncludePaths(), parser.getExcludePaths());
+      if (pathFilter != TreeFilter.ALL) {
+         filter = filter == TreeFilter.ALL ? pathFilter : AndTreeFilter.create(filter, pathFilter);
+      }
+      diffFormatter.setPathFilter(filter);
+      if (parser.getDiffAlgorithm() != null) {
+         diffFormatter.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(parser.getDiffAlgorithm()));
+      }
+      if (parser.isIgnoreWhitespace()) {
+         diffFormatter.setDiffComparator(RawTextComparator.WS_IGNORE_ALL);
+      }
+      maxDiffBytes = parser.getMaxDiffBytes();
+      lineGap = parser.getLineGap();
+      if (parser.isDetectRenames()) {
+         diffFormatter.setDetectRenames(true);
+         RenameDetector renameDetector = diffFormatter.getRenameDetector();
+         renameDetector.setRenameLimit(parser.getRenameLimit());
+         renameDetector.setRenameScore(parser.getRenameScore());
+      }
+   }
+
+   /**
+    * Only source files are counted or linked, so anything else is left out of the diff.
+    */
+   static TreeFilter sourceFilter(String[] sourceSuffix) {
+      if (sourceSuffix == null || sourceSuffix.length == 0) {
+         return TreeFilter.ALL;
+      }
+      if (sourceSuffix.length == 1) {
+         return PathSuffixFilter.create(sourceSuffix[0]);
+      }
+      TreeFilter[] filters = new TreeFilter[sourceSuffix.length];
+      for (int i = 0; i < sourceSuffix.length; i++) {
+         filters[i] = PathSuffixFilter.create(sourceSuffix[i]);
+      }
+      return OrTreeFilter.create(filters);
+   }
+
+   /**
+    * The include and exclude paths of the report, ALL when there's none.
+    */
+   static TreeFilter pathFilter(List<String> includePaths, List<String> excludePaths) {
+      TreeFilter include = includePaths.isEmpty() ? TreeFilter.ALL : PathFilterGroup.createFromStrings(includePaths);
+      if (excludePaths.isEmpty()) {
+         return include;
+      }
+      TreeFilter exclude = new ExcludePathFilter(excludePaths);
+      return include == TreeFilter.ALL ? exclude : AndTreeFilter.create(include, exclude);
+   }
+
+   /**
+    * The parent of the commit has to be parsed already, as RevWalk can't be used from multiple threads.
+    */
+   CommitStats diff(RevCommit commit) throws Exception {
+      List<String> interestingFolder = parser.getInterestingFolder();
+      CommitStats stats = new CommitStats(commit.getName(), interestingFolder.size());
+
+      AbstractTreeIterator oldTree;
+      if (commit.getParentCount() > 0) {
+         oldTreeIter.reset(reader, commit.getParent(0).getTree());
+         oldTree = oldTreeIter;
+      } else {
+         oldTree = new EmptyTreeIterator();
+      }
+      newTreeIter.reset(reader, commit.getTree());
+
+      List<DiffEntry> diffList = diffFormatter.scan(oldTree, newTreeIter);
+      diffEntries += diffList.size();
+
+      for (DiffEntry entry : diffList) {
+         String path = entry.getNewPath();
+         if (path.equals("/dev/null")) {
+            // this could happen on deleting a whole file
+            path = entry.getOldPath();
+         }
+
+         if (!classifier.classify(path, folders)) {
+            continue;
+         }
+
+         boolean interested = !folders.isEmpty();
+
+         if (!interested && !path.endsWith(".java")) {
+            // nothing is counted or linked for this file, no need to load the blobs
+            continue;
+         }
+
+         boolean deleted = entry.getNewPath().equals("/dev/null");
+         // the edits of a renamed or copied file are against its source, only the real edits are counted
+         String oldPath = null;
+         if (entry.getChangeType() == DiffEntry.ChangeType.RENAME || entry.getChangeType() == DiffEntry.ChangeType.COPY) {
+            oldPath = entry.getOldPath();
+            renamesDetected++;
+         }
+
+         // a deleted file on an interesting folder is only listed, its edits are not needed
+         FileHeader header = null;
+         if (!interested || !deleted) {
+            int blobs = entry.getChangeType() == DiffEntry.ChangeType.ADD || entry.getChangeType() == DiffEntry.ChangeType.DELETE ? 1 : 2;
+            if (maxDiffBytes > 0 && isTooLarge(entry)) {
+               diffsSkipped++;
+               if (!interested) {
+                  countLines(entry, stats);
+                  blobsLoaded += blobs;
+               }
+            } else {
+               header = diffFormatter.toFileHeader(entry);
+               blobsLoaded += blobs;
+               if (header.getPatchType() != FileHeader.PatchType.UNIFIED) {
+                  // binary, there are no edits
+                  diffsSkipped++;
+               }
+            }
+         }
+
+         CommitStats.ChangedFile changed = null;
+         if (interested) {
+            if (deleted) {
+               // deleted, there's no link
+               changed = new CommitStats.ChangedFile(path, null, true, CommitStats.ChangedFile.NO_RANGES);
+            } else if (header == null) {
+               // too large to diff, listed with no lines
+               changed = new CommitStats.ChangedFile(path, oldPath, false, CommitStats.ChangedFile.NO_RANGES);
+            } else {
+               changed = new CommitStats.ChangedFile(path, oldPath, false, edits(header, stats, false));
+            }
+         } else if (header != null) {
+            edits(header, stats, true);
+         }
+
+         for (int i = folders.nextSetBit(0); i >= 0; i = folders.nextSetBit(i + 1)) {
+            stats.interestingChanges.get(i).add(changed);
+         }
+      }
+
+      return stats;
+   }
+
+   /**
+    * Walks the edits of a file once, counting the lines on the stats or collecting the changed lines.
+    *
+    * The changed lines are on the new file, a deletion marks the line before it. Edits closer than the line gap
+    * of the parser end up on the same range.
+    *
+    * @return the ranges, as first/last pairs, when not counting
+    */
+   private int[] edits(FileHeader header, CommitStats stats, boolean count) {
+      int size = 0;
+      for (Edit edit : header.toEditList()) {
+         editsCounted++;
+         if (count) {
+            switch (edit.getType()) {
+               case INSERT:
+                  stats.addition += (edit.getEndB() - edit.getBeginB());
+                  break;
+               case DELETE:
+                  stats.deletion += (edit.getEndA() - edit.getBeginA());
+                  break;
+               case REPLACE:
+                  stats.replacement += (edit.getEndB() - edit.getBeginB());
+                  break;
+            }
+            continue;
+         }
+         int first, last;
+         if (edit.getType() == Edit.Type.DELETE) {
+            first = last = Math.max(1, edit.getBeginB());
+         } else if (edit.getType() == Edit.Type.EMPTY) {
+            continue;
+         } else {
+            first = edit.getBeginB() + 1; // the begin is always +1
+            last = edit.getEndB();
+         }
+         if (size > 0 && first - ranges[size - 1] - 1 <= lineGap) {
+            ranges[size - 1] = Math.max(ranges[size - 1], last);
+         } else {
+            if (size == ranges.length) {
+               ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = first;
+            ranges[size++] = last;
+         }
+      }
+      return size == 0 ? CommitStats.ChangedFile.NO_RANGES : Arrays.copyOf(ranges, size);
+   }
+
+   private boolean isTooLarge(DiffEntry entry) throws IOException {
+      return entry.getChangeType() != DiffEntry.ChangeType.ADD && size(entry.getOldId()) > maxDiffBytes ||
+         entry.getChangeType() != DiffEntry.ChangeType.DELETE && size(entry.getNewId()) > maxDiffBytes;
+   }
+
+   private long size(AbbreviatedObjectId id) throws IOException {
+      return reader.getObjectSize(id.toObjectId(), Constants.OBJ_BLOB);
+   }
+
+   /**
+    * The approximation of a file too large to diff: the change on its number of lines, nothing if either side is binary.
+    */
+   private void countLines(DiffEntry entry, CommitStats stats) throws IOException {
+      int oldLines = entry.getChangeType() == DiffEntry.ChangeType.ADD ? 0 : lines(entry.getOldId());
+      if (oldLines < 0) {
+         return;
+      }
+      int newLines = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? 0 : lines(entry.getNewId());
+      if (newLines < 0) {
+         return;
+      }
+      if (newLines > oldLines) {
+         stats.addition += newLines - oldLines;
+      } else {
+         stats.deletion += oldLines - newLines;
+      }
+   }
+
+   /**
+    * The number of lines of a blob as it is streamed, -1 if it is binary.
+    */
+   private int lines(AbbreviatedObjectId id) throws IOException {
+      try (InputStream in = reader.open(id.toObjectId(), Constants.OBJ_BLOB).openStream()) {
+         int lines = 0;
+         byte last = '\n';
+         boolean first = true;
+         for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+            if (first && RawText.isBinary(buffer, read)) {
+               return -1;
+            }
+            first = false;
+            for (int i = 0; i < read; i++) {
+               if (buffer[i] == '\n') {
+                  lines++;
+               }
+            }
+            last = buffer[read - 1];
+         }
+         // the last line may have no line feed
+         return last == '\n' ? lines : lines + 1;
+      }
+   }
+
+   @Override
+   public void close() {
+      metrics.diffEntries.addAndGet(diffEntries);
+      metrics.blobsLoaded.addAndGet(blobsLoaded);
+      metrics.editsCounted.addAndGet(editsCounted);
+      metrics.renamesDetected.addAndGet(renamesDetected);
+      metrics.diffsSkipped.addAndGet(diffsSkipped);
+      diffEntries = blobsLoaded = editsCounted = renamesDetected = diffsSkipped = 0;
+      diffFormatter.close();
+      reader.close();
+   }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.lib.ObjectIdSet;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The parents of every commit seen so far, so the history behind a commit can be followed without parsing
+ * any commit object. Used by the {@link RangeEnumerator} to tell which commits are reachable from the uninteresting
+ * end of a range, which on a long-lived branch can be most of the history of the repository.
+ *
+ * A commit is only added with all its ancestors, so the commits reachable from one on the graph are on the graph.
+ * When kept on a file, each batch of commits added is appended as one record, and a record cut short by a crash is dropped
+ * on load. Commits never change, so the file is valid for any repository, and whatever happens to their refs.
+ */
+
+class CommitGraph {
+
+   private static final int MAGIC = 0x47524701;
+
+   private static final class Node extends ObjectIdOwnerMap.Entry {
+
+      private static final long serialVersionUID = 1L;
+
+      final int position;
+      Node[] parents;
+
+      Node(AnyObjectId id, int position) {
+         super(id);
+         this.position = position;
+      }
+   }
+
+   // null when only kept in memory
+   private final File file;
+   private final ObjectIdOwnerMap<Node> nodes = new ObjectIdOwnerMap<>();
+   private final List<Node> positions = new ArrayList<>();
+
+   CommitGraph() {
+      this.file = null;
+   }
+
+   CommitGraph(File directory) throws IOException {
+      directory.mkdirs();
+      this.file = new File(directory, "commits.graph");
+      load();
+   }
+
+   synchronized int size() {
+      return positions.size();
+   }
+
+   private void load() throws IOException {
+      if (!file.exists()) {
+         return;
+      }
+      long valid = 0;
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+         if (input.readInt() != MAGIC) {
+            throw new EOFException();
+         }
+         valid = 4;
+         byte[] id = new byte[20];
+         while (true) {
+            byte[] record = new byte[input.readInt()];
+            input.readFully(record);
+            DataInputStream recordInput = new DataInputStream(new ByteArrayInputStream(record));
+            int first = positions.size();
+            int[][] parents = new int[recordInput.readInt()][];
+            for (int i = 0; i < parents.length; i++) {
+               recordInput.readFully(id);
+               parents[i] = new int[recordInput.readInt()];
+               for (int p = 0; p < parents[i].length; p++) {
+                  parents[i][p] = recordInput.readInt();
+               }
+               Node node = new Node(ObjectId.fromRaw(id), first + i);
+               nodes.add(node);
+               positions.add(node);
+            }
+            for (int i = 0; i < parents.length; i++) {
+               Node node = positions.get(first + i);
+               node.parents = new Node[parents[i].length];
+               for (int p = 0; p < parents[i].length; p++) {
+                  node.parents[p] = positions.get(parents[i][p]);
+               }
+            }
+            valid += 4 + record.length;
+         }
+      } catch (EOFException e) {
+         // end of the file, or a batch cut short
+      }
+
+      if (valid < file.length()) {
+         try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(valid);
+         }
+      }
+   }
+
+   /**
+    * Adds the commit with every ancestor not on the graph yet, parsing their headers only.
+    */
+   synchronized void add(ObjectReader reader, AnyObjectId commit) throws IOException {
+      if (nodes.contains(commit)) {
+         return;
+      }
+      // the batch only goes to the graph once complete, so a missing object leaves the graph as it was
+      ObjectIdOwnerMap<Node> added = new ObjectIdOwnerMap<>();
+      List<Node> batch = new ArrayList<>();
+      ArrayDeque<RevCommit> pending = new ArrayDeque<>();
+      try (RevWalk walk = new RevWalk(reader)) {
+         walk.setRetainBody(false);
+         Node node = new Node(commit, positions.size());
+         added.add(node);
+         batch.add(node);
+         pending.add(walk.lookupCommit(commit));
+         while (!pending.isEmpty()) {
+            RevCommit next = pending.poll();
+            walk.parseHeaders(next);
+            Node child = added.get(next);
+            child.parents = new Node[next.getParentCount()];
+            for (int p = 0; p < child.parents.length; p++) {
+               RevCommit parent = next.getParent(p);
+               Node parentNode = nodes.get(parent);
+               if (parentNode == null) {
+                  parentNode = added.get(parent);
+               }
+               if (parentNode == null) {
+                  parentNode = new Node(parent, positions.size() + batch.size());
+                  added.add(parentNode);
+                  batch.add(parentNode);
+                  pending.add(parent);
+               }
+               child.parents[p] = parentNode;
+            }
+         }
+      }
+      for (Node node : batch) {
+         nodes.add(node);
+         positions.add(node);
+      }
+      if (file != null) {
+         append(batch);
+      }
+   }
+
+   private void append(List<Node> batch) throws IOException {
+      ByteArrayOutputStream record = new ByteArrayOutputStream(batch.size() * 28);
+      DataOutputStream recordOutput = new DataOutputStream(record);
+      recordOutput.writeInt(batch.size());
+      byte[] id = new byte[20];
+      for (Node node : batch) {
+         node.copyRawTo(id, 0);
+         recordOutput.write(id);
+         recordOutput.writeInt(node.parents.length);
+         for (Node parent : node.parents) {
+            recordOutput.writeInt(parent.position);
+         }
+      }
+      boolean newFile = !file.exists() || file.length() == 0;
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+         if (newFile) {
+            output.writeInt(MAGIC);
+         }
+         output.writeInt(record.size());
+         record.writeTo(output);
+      }
+   }
+
+   /**
+    * The commits reachable from the given ones, adding them to the graph first when needed.
+    */
+   ObjectIdSet reachable(ObjectReader reader, Collection<? extends AnyObjectId> commits) throws IOException {
+      for (AnyObjectId commit : commits) {
+         add(reader, commit);
+      }
+      final BitSet reachable = new BitSet();
+      synchronized (this) {
+         ArrayDeque<Node> pending = new ArrayDeque<>();
+         for (AnyObjectId commit : commits) {
+            Node node = nodes.get(commit);
+            if (!reachable.get(node.position)) {
+               reachable.set(node.position);
+               pending.add(node);
+            }
+         }
+         while (!pending.isEmpty()) {
+            for (Node parent : pending.poll().parents) {
+               if (!reachable.get(parent.position)) {
+                  reachable.set(parent.position);
+                  pending.add(parent);
+               }
+            }
+         }
+      }
+      return new ObjectIdSet() {
+         @Override
+         public boolean contains(AnyObjectId commit) {
+            Node node;
+            synchronized (CommitGraph.this) {
+               node = nodes.get(commit);
+            }
+            return node != null && reachable.get(node.position);
+         }
+      };
+   }
+}
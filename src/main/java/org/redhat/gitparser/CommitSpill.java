@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The commits of a range on disk, 20 bytes each, written as the walk finds them (newest first)
+ * and read back from the end of the file, oldest first, a batch at a time.
+ */
+
+class CommitSpill implements AutoCloseable {
+
+   private final File file;
+   private OutputStream out;
+   private RandomAccessFile in;
+   private int size;
+   // commits not read yet, the first ones on the file
+   private int remaining;
+
+   CommitSpill(File file) throws IOException {
+      this.file = file;
+      this.out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+   }
+
+   void add(AnyObjectId id) throws IOException {
+      id.copyRawTo(out);
+      size++;
+   }
+
+   int size() {
+      return size;
+   }
+
+   /**
+    * The next commits in the order of the report, at most max of them, none at the end.
+    */
+   List<ObjectId> next(int max) throws IOException {
+      if (out != null) {
+         out.close();
+         out = null;
+         in = new RandomAccessFile(file, "r");
+         remaining = size;
+      }
+      int count = Math.min(max, remaining);
+      byte[] raw = new byte[count * Constants.OBJECT_ID_LENGTH];
+      in.seek((long) (remaining - count) * Constants.OBJECT_ID_LENGTH);
+      in.readFully(raw);
+      remaining -= count;
+
+      List<ObjectId> ids = new ArrayList<>(count);
+      for (int i = count - 1; i >= 0; i--) {
+         ids.add(ObjectId.fromRaw(raw, i * Constants.OBJECT_ID_LENGTH));
+      }
+      return ids;
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         if (out != null) {
+            out.close();
+         }
+         if (in != null) {
+            in.close();
+         }
+      } finally {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The diff statistics of a single commit, as computed by {@link CommitDiffer}.
+ */
+
+public class CommitStats {
+
+   /**
+    * A file changed under one of the interesting folders.
+    */
+   public static class ChangedFile {
+
+      static final int[] NO_RANGES = new int[0];
+
+      final String path;
+      // the path before a rename or copy, null otherwise
+      final String oldPath;
+      final boolean deleted;
+      // the changed lines of the new file as first/last pairs, in order and not overlapping
+      final int[] ranges;
+
+      public ChangedFile(String path, boolean deleted, int min, int max) {
+         this(path, null, deleted, min, max);
+      }
+
+      public ChangedFile(String path, String oldPath, boolean deleted, int min, int max) {
+         this(path, oldPath, deleted, min <= max ? new int[]{min, max} : NO_RANGES);
+      }
+
+      /**
+       * @param ranges first and last line of each range, e.g. {3, 10, 250, 251}
+       */
+      public ChangedFile(String path, String oldPath, boolean deleted, int[] ranges) {
+         this.path = path;
+         this.oldPath = oldPath;
+         this.deleted = deleted;
+         this.ranges = ranges;
+      }
+
+      public String getPath() {
+         return path;
+      }
+
+      public String getName() {
+         int slash = path.lastIndexOf('/');
+         return slash >= 0 ? path.substring(slash + 1) : path;
+      }
+
+      public String getOldPath() {
+         return oldPath;
+      }
+
+      /**
+       * Renamed or copied from {@link #getOldPath()}, only when detecting renames.
+       */
+      public boolean isMoved() {
+         return oldPath != null;
+      }
+
+      /**
+       * At least one line was changed, a file moved as is has no lines to link to.
+       */
+      public boolean hasLines() {
+         return ranges.length > 0;
+      }
+
+      public boolean isDeleted() {
+         return deleted;
+      }
+
+      /**
+       * Number of ranges of changed lines, each one linked on the report as #Lfirst-Llast.
+       */
+      public int getRangeCount() {
+         return ranges.length / 2;
+      }
+
+      public int getRangeFirst(int range) {
+         return ranges[range * 2];
+      }
+
+      public int getRangeLast(int range) {
+         return ranges[range * 2 + 1];
+      }
+
+      /**
+       * First changed line, Integer.MAX_VALUE if none.
+       */
+      public int getMin() {
+         return ranges.length > 0 ? ranges[0] : Integer.MAX_VALUE;
+      }
+
+      /**
+       * Last changed line, Integer.MIN_VALUE if none.
+       */
+      public int getMax() {
+         return ranges.length > 0 ? ranges[ranges.length - 1] : Integer.MIN_VALUE;
+      }
+   }
+
+   final String id;
+   int addition;
+   int replacement;
+   int deletion;
+   String[] jiras = new String[0];
+
+   // one list per GitParser.interestingFolder, on the same order
+   final List<List<ChangedFile>> interestingChanges;
+
+   public CommitStats(String id, int folders) {
+      this.id = id;
+      this.interestingChanges = new ArrayList<>(folders);
+      for (int i = 0; i < folders; i++) {
+         interestingChanges.add(new ArrayList<ChangedFile>());
+      }
+   }
+
+   public String getId() {
+      return id;
+   }
+
+   public int getAddition() {
+      return addition;
+   }
+
+   public int getReplacement() {
+      return replacement;
+   }
+
+   public int getDeletion() {
+      return deletion;
+   }
+
+   public int getTotal() {
+      return addition + replacement - deletion;
+   }
+
+   public String[] getJiras() {
+      return jiras;
+   }
+
+   public void setJiras(String[] jiras) {
+      this.jiras = jiras;
+   }
+
+   public List<ChangedFile> getInterestingChanges(int folder) {
+      return interestingChanges.get(folder);
+   }
+}
@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Keeps the {@link CommitStats} of every commit already diffed, so a later report
+ * only diffs the commits it has not seen before.
+ *
+ * Stats depend on the source suffixes and interesting folders, so each configuration
+ * has its own file. Records are only appended, a record cut short by a crash is dropped on load.
+ *
+ * With {@link GitParser#setMaxRecordsInMemory(int)} the stats are not loaded: only the offset of each record is kept,
+ * a couple of longs per commit, and the records are read from the file when asked for.
+ */
+
+public class CommitStatsStore implements AutoCloseable {
+
+   private static final int MAGIC = 0x47525304;
+
+   private final File file;
+   private final int folders;
+   // null when the records are read through the index
+   private final HashMap<String, CommitStats> stats;
+   private final OffsetIndex index;
+   private DataOutputStream output;
+   // the length of the file, with what is still buffered on the output, and without
+   private long length;
+   private long flushed;
+   private RandomAccessFile reader;
+
+   /**
+    * The offset of each record on the file, by the first 60 bits of its commit id, with open addressing.
+    * Ids sharing those bits are told apart by the records themselves.
+    */
+   private static final class OffsetIndex {
+
+      private long[] keys = new long[1024];
+      // 0 is an empty slot, no record starts there
+      private long[] offsets = new long[1024];
+      private int size;
+
+      static long key(String id) {
+         return id.length() >= 15 ? Long.parseLong(id.substring(0, 15), 16) : id.hashCode();
+      }
+
+      int slot(long key) {
+         return (int) (key ^ (key >>> 32)) & (keys.length - 1);
+      }
+
+      int next(int slot) {
+         return (slot + 1) & (keys.length - 1);
+      }
+
+      void put(long key, long offset) {
+         if ((size + 1) * 2 > keys.length) {
+            long[] oldKeys = keys;
+            long[] oldOffsets = offsets;
+            keys = new long[oldKeys.length * 2];
+            offsets = new long[oldOffsets.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+               if (oldOffsets[i] != 0) {
+                  put(oldKeys[i], oldOffsets[i]);
+               }
+            }
+         }
+         int slot = slot(key);
+         while (offsets[slot] != 0) {
+            slot = next(slot);
+         }
+         keys[slot] = key;
+         offsets[slot] = offset;
+         size++;
+      }
+   }
+
+   public CommitStatsStore(File directory, GitParser parser) throws IOException {
+      directory.mkdirs();
+      this.folders = parser.getInterestingFolder().size();
+      this.file = new File(directory, "commits-" + configurationKey(parser) + ".stats");
+      boolean bounded = parser.getMaxRecordsInMemory() > 0;
+      this.stats = bounded ? null : new HashMap<String, CommitStats>();
+      this.index = bounded ? new OffsetIndex() : null;
+      load();
+   }
+
+   /**
+    * A hash of everything on the parser that changes the stats of a commit.
+    */
+   static String configurationKey(GitParser parser) {
+      StringBuilder configuration = new StringBuilder();
+      for (String prefix : parser.getJiraPrefixes()) {
+         configuration.append("jira:").append(prefix).append('\n');
+      }
+      for (String suffix : parser.getSourceSuffix()) {
+         configuration.append("suffix:").append(suffix).append('\n');
+      }
+      for (String folder : parser.getInterestingFolder()) {
+         configuration.append("folder:").append(folder).append('\n');
+      }
+      for (String path : parser.getIncludePaths()) {
+         configuration.append("include:").append(path).append('\n');
+      }
+      for (String path : parser.getExcludePaths()) {
+         configuration.append("exclude:").append(path).append('\n');
+      }
+      if (parser.isAnchoredFolders()) {
+         configuration.append("anchored\n");
+      }
+      if (parser.isDetectRenames()) {
+         configuration.append("renames:").append(parser.getRenameLimit()).append(':').append(parser.getRenameScore()).append('\n');
+      }
+      if (parser.getDiffAlgorithm() != null) {
+         configuration.append("algorithm:").append(parser.getDiffAlgorithm()).append('\n');
+      }
+      if (parser.isIgnoreWhitespace()) {
+         configuration.append("ignoreWhitespace\n");
+      }
+      if (parser.getMaxDiffBytes() > 0) {
+         configuration.append("maxDiffBytes:").append(parser.getMaxDiffBytes()).append('\n');
+      }
+      configuration.append("lineGap:").append(parser.getLineGap()).append('\n');
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-1");
+         return ObjectId.fromRaw(digest.digest(configuration.toString().getBytes(StandardCharsets.UTF_8))).name();
+      } catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private void load() throws IOException {
+      if (!file.exists()) {
+         return;
+      }
+      // the length of the file up to the last complete record
+      long valid = 0;
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+         if (input.readInt() != MAGIC) {
+            throw new EOFException();
+         }
+         valid = 4;
+         while (true) {
+            byte[] record = new byte[input.readInt()];
+            input.readFully(record);
+            if (index != null) {
+               // the id leads the record
+               index.put(OffsetIndex.key(new DataInputStream(new ByteArrayInputStream(record)).readUTF()), valid);
+            } else {
+               CommitStats commitStats = read(new DataInputStream(new ByteArrayInputStream(record)));
+               stats.put(commitStats.getId(), commitStats);
+            }
+            valid += 4 + record.length;
+         }
+      } catch (EOFException e) {
+         // end of the file, or a record cut short
+      }
+
+      if (valid < file.length()) {
+         // new records are appended after the last one that is complete
+         try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(valid);
+         }
+      }
+   }
+
+   private CommitStats read(DataInputStream input) throws IOException {
+      CommitStats commitStats = new CommitStats(input.readUTF(), folders);
+      commitStats.addition = input.readInt();
+      commitStats.replacement = input.readInt();
+      commitStats.deletion = input.readInt();
+      String[] jiras = new String[input.readInt()];
+      for (int i = 0; i < jiras.length; i++) {
+         jiras[i] = input.readUTF();
+      }
+      commitStats.setJiras(jiras);
+      for (int folder = 0; folder < folders; folder++) {
+         int files = input.readInt();
+         for (int i = 0; i < files; i++) {
+            String path = input.readUTF();
+            String oldPath = input.readUTF();
+            boolean deleted = input.readBoolean();
+            int[] ranges = new int[input.readInt() * 2];
+            for (int r = 0; r < ranges.length; r++) {
+               ranges[r] = input.readInt();
+            }
+            commitStats.interestingChanges.get(folder).add(new CommitStats.ChangedFile(path, oldPath.isEmpty() ? null : oldPath, deleted, ranges.length == 0 ? CommitStats.ChangedFile.NO_RANGES : ranges));
+         }
+      }
+      return commitStats;
+   }
+
+   private void write(DataOutputStream out, CommitStats commitStats) throws IOException {
+      out.writeUTF(commitStats.getId());
+      out.writeInt(commitStats.addition);
+      out.writeInt(commitStats.replacement);
+      out.writeInt(commitStats.deletion);
+      String[] jiras = commitStats.getJiras();
+      out.writeInt(jiras.length);
+      for (String jira : jiras) {
+         out.writeUTF(jira);
+      }
+      for (int folder = 0; folder < folders; folder++) {
+         List<CommitStats.ChangedFile> files = commitStats.getInterestingChanges(folder);
+         out.writeInt(files.size());
+         for (CommitStats.ChangedFile changedFile : files) {
+            out.writeUTF(changedFile.getPath());
+            out.writeUTF(changedFile.isMoved() ? changedFile.getOldPath() : "");
+            out.writeBoolean(changedFile.isDeleted());
+            out.writeInt(changedFile.getRangeCount());
+            for (int r = 0; r < changedFile.getRangeCount(); r++) {
+               out.writeInt(changedFile.getRangeFirst(r));
+               out.writeInt(changedFile.getRangeLast(r));
+            }
+         }
+      }
+   }
+
+   public synchronized CommitStats get(String id) throws IOException {
+      if (index == null) {
+         return stats.get(id);
+      }
+      long key = OffsetIndex.key(id);
+      for (int slot = index.slot(key); index.offsets[slot] != 0; slot = index.next(slot)) {
+         if (index.keys[slot] == key) {
+            CommitStats commitStats = readAt(index.offsets[slot]);
+            if (commitStats.getId().equals(id)) {
+               return commitStats;
+            }
+         }
+      }
+      return null;
+   }
+
+   private CommitStats readAt(long offset) throws IOException {
+      if (offset >= flushed && output != null) {
+         output.flush();
+         flushed = length;
+      }
+      if (reader == null) {
+         reader = new RandomAccessFile(file, "r");
+      }
+      reader.seek(offset);
+      byte[] record = new byte[reader.readInt()];
+      reader.readFully(record);
+      return read(new DataInputStream(new ByteArrayInputStream(record)));
+   }
+
+   public synchronized int size() {
+      return index != null ? index.size : stats.size();
+   }
+
+   public synchronized void put(CommitStats commitStats) throws IOException {
+      if (index != null ? get(commitStats.getId()) != null : stats.put(commitStats.getId(), commitStats) != null) {
+         return;
+      }
+      if (output == null) {
+         boolean newFile = !file.exists() || file.length() == 0;
+         output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+         if (newFile) {
+            output.writeInt(MAGIC);
+         }
+         length = newFile ? 4 : file.length();
+         flushed = newFile ? 0 : length;
+      }
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      write(new DataOutputStream(record), commitStats);
+      if (index != null) {
+         index.put(OffsetIndex.key(commitStats.getId()), length);
+      }
+      output.writeInt(record.size());
+      record.writeTo(output);
+      length += 4 + record.size();
+   }
+
+   /**
+    * Writes out the records buffered so far.
+    */
+   public synchronized void flush() throws IOException {
+      if (output != null) {
+         output.flush();
+         flushed = length;
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException {
+      try {
+         if (output != null) {
+            output.close();
+            output = null;
+         }
+      } finally {
+         if (reader != null) {
+            reader.close();
+            reader = null;
+         }
+      }
+   }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Writes one CSV line per commit (RFC 4180), after a line with the column names:
+ *
+ * <pre>
+ * number,sha,date,author,message,jiras,statuses,addition,replacement,deletion,total,&lt;one column per interesting folder&gt;
+ * </pre>
+ *
+ * Lists are separated by ';': the JIRA keys, their statuses on the same order (empty when not resolved)
+ * and the paths changed on each interesting folder.
+ */
+
+public class CsvSink implements ReportSink {
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final File file;
+   private final DateFormat dateFormat;
+   private final StringBuilder list = new StringBuilder();
+   private GitParser parser;
+   private HtmlWriter out;
+
+   public CsvSink(File file) {
+      this.file = file;
+      dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+      dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   @Override
+   public void begin(GitParser parser, String from, RevCommit fromCommit, String to, RevCommit toCommit) throws IOException {
+      this.parser = parser;
+      out = HtmlWriter.open(file, BUFFER_SIZE);
+      out.append("number,sha,date,author,message,jiras,statuses,addition,replacement,deletion,total");
+      for (String folder : parser.getInterestingFolder()) {
+         out.append(',');
+         field(folder);
+      }
+      out.append('\r').newLine();
+   }
+
+   /**
+    * The value, quoted only when needed.
+    */
+   private HtmlWriter field(CharSequence value) throws IOException {
+      boolean quote = false;
+      for (int i = 0; i < value.length() && !quote; i++) {
+         char c = value.charAt(i);
+         quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+      }
+      if (!quote) {
+         for (int i = 0; i < value.length(); i++) {
+            out.append(value.charAt(i));
+         }
+         return out;
+      }
+      out.append('"');
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         if (c == '"') {
+            out.append('"');
+         }
+         out.append(c);
+      }
+      return out.append('"');
+   }
+
+   @Override
+   public void commit(int number, RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException {
+      out.append(number).append(',').append(commit.getName()).append(',');
+      out.append(dateFormat.format(commit.getAuthorIdent().getWhen())).append(',');
+      field(commit.getAuthorIdent().getName()).append(',');
+      field(commit.getShortMessage()).append(',');
+
+      String[] jiras = stats.getJiras();
+      list.setLength(0);
+      for (int i = 0; i < jiras.length; i++) {
+         list.append(i > 0 ? ";" : "").append(jiras[i]);
+      }
+      field(list).append(',');
+
+      list.setLength(0);
+      for (int i = 0; i < jiras.length; i++) {
+         JiraIssue issue = issues != null ? issues[i] : null;
+         list.append(i > 0 ? ";" : "").append(issue != null && issue.getStatus() != null ? issue.getStatus() : "");
+      }
+      field(list).append(',');
+
+      out.append(stats.getAddition()).append(',').append(stats.getReplacement()).append(',').append(stats.getDeletion()).append(',').append(stats.getTotal());
+
+      for (int i = 0; i < parser.getInterestingFolder().size(); i++) {
+         List<CommitStats.ChangedFile> files = stats.getInterestingChanges(i);
+         list.setLength(0);
+         for (int f = 0; f < files.size(); f++) {
+            list.append(f > 0 ? ";" : "").append(files.get(f).getPath());
+         }
+         out.append(',');
+         field(list);
+      }
+      out.append('\r').newLine();
+   }
+
+   @Override
+   public void end(Collection<String> totalJiras) throws IOException {
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (out != null) {
+         out.close();
+         out = null;
+      }
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Diffs commits on a pool of {@link CommitDiffer}s, one per worker thread.
+ *
+ * Results are always returned in the same order the commits were given,
+ * regardless of which worker finished first.
+ */
+
+class DiffEngine implements AutoCloseable {
+
+   private final BlockingQueue<CommitDiffer> differs;
+   private final List<CommitDiffer> allDiffers = new ArrayList<>();
+   private final ExecutorService executor;
+   // false when the executor is shared with other engines
+   private final boolean ownExecutor;
+   private int diffedCommits;
+
+   DiffEngine(GitParser parser, PathClassifier classifier, Repository repository, ReportMetrics metrics, int parallelism) {
+      this(parser, classifier, repository, metrics, parallelism, null);
+   }
+
+   /**
+    * @param executor shared with other engines and not shut down on close, null for threads of its own when the parallelism is above 1
+    */
+   DiffEngine(GitParser parser, PathClassifier classifier, Repository repository, ReportMetrics metrics, int parallelism, ExecutorService executor) {
+      parallelism = Math.max(1, parallelism);
+      differs = new ArrayBlockingQueue<>(parallelism);
+      for (int i = 0; i < parallelism; i++) {
+         CommitDiffer differ = new CommitDiffer(parser, classifier, repository, metrics);
+         allDiffers.add(differ);
+         differs.add(differ);
+      }
+
+      if (executor != null) {
+         this.executor = executor;
+         ownExecutor = false;
+      } else {
+         this.executor = parallelism > 1 ? newExecutor(parallelism) : null;
+         ownExecutor = true;
+      }
+   }
+
+   static ExecutorService newExecutor(int threads) {
+      return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         final AtomicInteger count = new AtomicInteger(0);
+
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "git-report-diff-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+   }
+
+   List<CommitStats> diff(List<RevCommit> commits) throws Exception {
+      List<CommitStats> result = new ArrayList<>(commits.size());
+      diffedCommits += commits.size();
+
+      if (executor == null) {
+         CommitDiffer differ = differs.peek();
+         for (RevCommit commit : commits) {
+            result.add(differ.diff(commit));
+         }
+         return result;
+      }
+
+      List<Future<CommitStats>> futures = new ArrayList<>(commits.size());
+      for (final RevCommit commit : commits) {
+         futures.add(executor.submit(new Callable<CommitStats>() {
+            @Override
+            public CommitStats call() throws Exception {
+               CommitDiffer differ = differs.take();
+               try {
+                  return differ.diff(commit);
+               } finally {
+                  // never full, and not interrupted by a cancel
+                  differs.add(differ);
+               }
+            }
+         }));
+      }
+
+      try {
+         for (Future<CommitStats> future : futures) {
+            result.add(future.get());
+         }
+      } catch (ExecutionException e) {
+         for (Future<CommitStats> future : futures) {
+            future.cancel(true);
+         }
+         awaitDiffers();
+         if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+         }
+         throw e;
+      }
+
+      return result;
+   }
+
+   /**
+    * Waits for the tasks already running, which still use their differs, on an executor that could be shared:
+    * they are done once every differ is back. The tasks cancelled before they started never take one.
+    */
+   private void awaitDiffers() {
+      List<CommitDiffer> returned = new ArrayList<>(allDiffers.size());
+      try {
+         while (returned.size() < allDiffers.size()) {
+            returned.add(differs.take());
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         differs.addAll(returned);
+      }
+   }
+
+   int getDiffedCommits() {
+      return diffedCommits;
+   }
+
+   @Override
+   public void close() {
+      if (executor != null && ownExecutor) {
+         executor.shutdownNow();
+         try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      for (CommitDiffer differ : allDiffers) {
+         differ.close();
+      }
+   }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Leaves out the given paths and everything under them.
+ *
+ * The negation of a PathFilterGroup can't be used for this, as it would also leave out the parent
+ * directories of the paths, e.g. module/ when module/src is excluded, and with them every other file under module/.
+ */
+
+class ExcludePathFilter extends TreeFilter {
+
+   private final byte[][] paths;
+   private final boolean recursive;
+
+   ExcludePathFilter(List<String> paths) {
+      this.paths = new byte[paths.size()][];
+      boolean recursive = false;
+      for (int i = 0; i < this.paths.length; i++) {
+         String path = paths.get(i);
+         while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+         }
+         if (path.isEmpty()) {
+            throw new IllegalArgumentException("empty path excluded");
+         }
+         recursive |= path.indexOf('/') >= 0;
+         this.paths[i] = Constants.encode(path);
+      }
+      this.recursive = recursive;
+   }
+
+   @Override
+   public boolean include(TreeWalk walker) {
+      for (byte[] path : paths) {
+         // 0 as well when the current entry is one of the parents of the path, which are still walked
+         if (walker.getPathLength() >= path.length && walker.isPathPrefix(path, path.length) == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   @Override
+   public boolean shouldBeRecursive() {
+      return recursive;
+   }
+
+   @Override
+   public TreeFilter clone() {
+      // immutable
+      return this;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder = new StringBuilder("EXCLUDE(");
+      for (int i = 0; i < paths.length; i++) {
+         builder.append(i > 0 ? ", " : "").append(new String(paths[i], Constants.CHARSET));
+      }
+      return builder.append(')').toString();
+   }
+}
@@ -17,32 +17,30 @@
 
 package org.redhat.gitparser;
 
-import javax.json.Json;
-import javax.json.JsonObject;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.net.URL;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.patch.FileHeader;
-import org.eclipse.jgit.patch.HunkHeader;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevTree;
@@ -50,7 +48,8 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 /**
  * @author Clebert Suconic
@@ -61,23 +60,104 @@ public class GitParser {
    final List<String> interestingFolder = new ArrayList<>();
    final File folder;
    final String jira;
+   // jira plus any other project added with addJiraPrefix
+   final List<String> jiraPrefixes = new ArrayList<>();
+   volatile JiraKeyScanner jiraScanner;
    final String jiraBrowseURI;
    final String githubURI;
    String restLocation;
    String[] sourceSuffix;
    // JQL used to list all JIRAs here
    String sampleJQL;
-   String[] currentJiras;
-
-   final HashSet<String> totalJiras = new HashSet<>();
+   // number of threads diffing commits
+   int parallelism = 1;
+   // number of JIRAs fetched at the same time
+   int jiraConcurrency = 8;
+   // JIRA requests per second, lowered while the tracker throttles, 0 for no limit
+   double jiraRateLimit = 10;
+   // timeouts of the JIRA requests
+   int jiraConnectTimeout = 10000;
+   int jiraReadTimeout = 30000;
+   // interesting folders only matching at the start of a path segment
+   boolean anchoredFolders;
+   // where JIRAs are cached between runs, no cache if null
+   File cacheDirectory;
+   // no output for each JIRA fetched
+   boolean quiet;
+   // where the metrics are written at the end of the run, as JSON
+   File metricsFile;
+   // metrics registered as an MBean while the report runs
+   boolean registerMBean;
+   // rows per data file, 0 to keep all rows on the page
+   int pageSize;
+   // renamed files are diffed against their old path instead of counted as added and deleted
+   boolean detectRenames;
+   // above this many added or deleted files on a commit, only exact renames are detected, 0 for no limit
+   int renameLimit = 400;
+   // similarity, from 0 to 100, of a file to be considered renamed
+   int renameScore = 60;
+   // null for the one on the repository configuration, histogram unless set
+   DiffAlgorithm.SupportedAlgorithm diffAlgorithm;
+   // lines only changed on their whitespace are not counted
+   boolean ignoreWhitespace;
+   // files larger than this are not diffed, their lines are counted instead, 0 for no limit
+   int maxDiffBytes;
+   // changed lines of an interesting file this close are linked as one range
+   int lineGap = 10;
+   // totals per author, JIRA status and interesting folder after the commits
+   boolean summary;
+   // bounded memory mode when > 0, the number of JIRA keys kept in memory before they are spilled to disk
+   int maxRecordsInMemory;
+   // only commits changing these paths are reported, all of them if empty
+   final List<String> includePaths = new ArrayList<>();
+   // changes on these paths are left out, and the commits only changing them
+   final List<String> excludePaths = new ArrayList<>();
+   // ranges listed through the pack bitmaps or a commit graph, instead of walking what is behind their uninteresting end
+   boolean fastEnumeration;
+   // the stylesheets, scripts and images are on the page instead of next to it
+   boolean inlineAssets;
+   // milliseconds between checkpoints of a run, 0 for none
+   int checkpointInterval;
+   // go on from the checkpoint of a previous run, if there's one
+   boolean resume;
+   // the metrics of the last run
+   volatile ReportMetrics metrics;
+
+   // number of commits handed to the DiffEngine at once
+   private static final int BATCH_SIZE = 256;
+
+   // the JIRAs of the last run, a new set on each run so a parser reused by the ReportServer doesn't keep them all
+   volatile HashSet<String> totalJiras = new HashSet<>();
+
+   // written on the same pass as the HTML report
+   final List<ReportSink> sinks = new ArrayList<>();
 
    public GitParser(File folder, String jira, String jiraBrowseURI, String githubURI) {
       this.folder = folder;
       this.jira = jira;
+      this.jiraPrefixes.add(jira);
+      this.jiraScanner = new JiraKeyScanner(jiraPrefixes);
       this.jiraBrowseURI = jiraBrowseURI;
       this.githubURI = githubURI;
    }
 
+   /**
+    * Also looks for keys of another project on the same tracker, e.g. AMQ- besides ARTEMIS-.
+    */
+   public GitParser addJiraPrefix(String prefix) {
+      jiraPrefixes.add(prefix);
+      jiraScanner = new JiraKeyScanner(jiraPrefixes);
+      return this;
+   }
+
+   public List<String> getJiraPrefixes() {
+      return jiraPrefixes;
+   }
+
+   public JiraKeyScanner getJiraScanner() {
+      return jiraScanner;
+   }
+
    public GitParser addInterestingfolder(String folder) {
       interestingFolder.add(folder);
       return this;
@@ -107,347 +187,1038 @@ public class GitParser {
       return this;
    }
 
-   public String getRestLocation() {
-      return restLocation;
+   public boolean isAnchoredFolders() {
+      return anchoredFolders;
    }
 
-   public GitParser setRestLocation(String restLocation) {
-      this.restLocation = restLocation;
+   /**
+    * When set, an interesting folder only matches at the start of a path segment,
+    * so "test" matches "test/" or "module/tests/" but no longer "latest/".
+    */
+   public GitParser setAnchoredFolders(boolean anchoredFolders) {
+      this.anchoredFolders = anchoredFolders;
       return this;
    }
 
-   private String makeALink(String text, String uri) {
-      return "<a href='" + uri + "'>" + text + "</a>";
+   public int getParallelism() {
+      return parallelism;
    }
 
-   private String commitCell(RevCommit commit) {
-      String text = commit.getId().getName().substring(0, 7);
+   /**
+    * Number of threads used to diff commits. Rows are still written in the order of the walk.
+    */
+   public GitParser setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+      return this;
+   }
 
-      return makeALink(text, githubURI + "commit/" + commit.getName());
+   public int getJiraConcurrency() {
+      return jiraConcurrency;
    }
 
-   public static String[] extractJIRAs(String jira, String message) {
-      HashSet list = new HashSet(1);
-      for (int jiraIndex = message.indexOf(jira); jiraIndex >= 0; jiraIndex = message.indexOf(jira, jiraIndex)) {
-         StringBuffer jiraID = new StringBuffer(jira);
-
-         for (int i = jiraIndex + jira.length(); i < message.length(); i++) {
-            char charAt = message.charAt(i);
-            if (charAt >= '0' && charAt <= '9') {
-               jiraID.append(charAt);
-            } else {
-               break;
-            }
-         }
-         list.add(jiraID.toString());
-         jiraIndex++;
-      }
+   /**
+    * Maximum number of concurrent requests made to {@link #setRestLocation(String)}.
+    */
+   public GitParser setJiraConcurrency(int jiraConcurrency) {
+      this.jiraConcurrency = jiraConcurrency;
+      return this;
+   }
 
-      return (String[]) list.toArray(new String[list.size()]);
+   public double getJiraRateLimit() {
+      return jiraRateLimit;
    }
 
-   public String prettyCommitMessage(String message) {
-      currentJiras = extractJIRAs(jira, message);
-      for (int i = 0; i < currentJiras.length; i++) {
-         totalJiras.add(currentJiras[i]);
-         message = message.replace(currentJiras[i], makeALink(currentJiras[i], jiraBrowseURI + currentJiras[i]));
-      }
+   /**
+    * Requests per second made to {@link #setRestLocation(String)}, 10 unless set, 0 for no limit.
+    * The rate is halved each time the tracker throttles, and grows back on the following successes.
+    */
+   public GitParser setJiraRateLimit(double jiraRateLimit) {
+      this.jiraRateLimit = jiraRateLimit;
+      return this;
+   }
 
-      return message;
+   public int getJiraConnectTimeout() {
+      return jiraConnectTimeout;
    }
 
-   private void copy(InputStream is, OutputStream os) throws IOException {
-      byte[] buffer = new byte[1024 * 4];
-      int c = is.read(buffer);
-      while (c >= 0) {
-         os.write(buffer, 0, c);
-         c = is.read(buffer);
-      }
+   public int getJiraReadTimeout() {
+      return jiraReadTimeout;
    }
 
-   private String readString(String fileName) throws Exception {
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      try (InputStream in = GitParser.class.getResourceAsStream(fileName)) {
-         copy(in, out);
-      }
+   /**
+    * Timeouts of the requests made to {@link #setRestLocation(String)}, 10 seconds to connect and 30 seconds to read unless set.
+    */
+   public GitParser setJiraTimeouts(int jiraConnectTimeout, int jiraReadTimeout) {
+      this.jiraConnectTimeout = jiraConnectTimeout;
+      this.jiraReadTimeout = jiraReadTimeout;
+      return this;
+   }
 
-      return new String(out.toByteArray());
+   public File getCacheDirectory() {
+      return cacheDirectory;
    }
 
-   JsonObject lastJIRAObject;
-   String lastJIRA;
+   /**
+    * Keeps the JIRA fields on this directory, so repeated reports only fetch new or still open issues.
+    */
+   public GitParser setCacheDirectory(File cacheDirectory) {
+      this.cacheDirectory = cacheDirectory;
+      return this;
+   }
 
-   private JsonObject restJIRA(String JIRA) throws Exception {
+   public boolean isQuiet() {
+      return quiet;
+   }
 
-      System.out.println("Inspecting " + JIRA);
-      if (lastJIRA != null && lastJIRA.equals(JIRA)) {
-         return lastJIRAObject;
-      }
-      if (restLocation != null) {
-         try {
-            URL url = new URL(restLocation + JIRA);
-            InputStream stream = url.openStream();
-
-            lastJIRA = JIRA;
-            lastJIRAObject = Json.createReader(stream).readObject();
-         } catch (Throwable e) {
-            e.printStackTrace();
-            lastJIRAObject = null;
-            lastJIRA = null;
-         }
-         return lastJIRAObject;
-      }
-      return null;
+   /**
+    * Removes the output printed for each JIRA fetched, only the summary of the run is printed.
+    */
+   public GitParser setQuiet(boolean quiet) {
+      this.quiet = quiet;
+      return this;
    }
 
-   private String getField(JsonObject object, String name) {
+   /**
+    * Also writes the report to this sink, e.g. a {@link JsonLinesSink} or a {@link CsvSink}.
+    */
+   public GitParser addSink(ReportSink sink) {
+      sinks.add(sink);
+      return this;
+   }
 
-      try {
-         return object.getJsonObject("fields").getJsonObject(name).getString("name");
-      } catch (Throwable e) {
-         return " ";
-      }
+   public List<ReportSink> getSinks() {
+      return sinks;
    }
-   private void copy(String name, File directory) throws Exception {
-      directory.mkdirs();
-      InputStream stream = this.getClass().getResourceAsStream(name);
-      File file = new File(directory, name);
-      copy(stream, new FileOutputStream(file));
+
+   public int getPageSize() {
+      return pageSize;
    }
 
-   public void parse(File outputFile, String from, String to) throws Exception {
+   /**
+    * Writes the rows on data files of this many rows next to the report, e.g. report-data/rows-0.js for report.html,
+    * loaded by the page after it is shown. Meant for ranges too large for a browser to parse as a single table.
+    * The report directory still works from file:// or any web server. 0, the default, keeps all rows on the page.
+    */
+   public GitParser setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+      return this;
+   }
+
+   public boolean isDetectRenames() {
+      return detectRenames;
+   }
+
+   /**
+    * Diffs renamed and copied files against their source, so a moved file only counts its real edits
+    * and is listed as moved instead of deleted.
+    */
+   public GitParser setDetectRenames(boolean detectRenames) {
+      this.detectRenames = detectRenames;
+      return this;
+   }
+
+   public int getRenameLimit() {
+      return renameLimit;
+   }
+
+   /**
+    * When more than this many files are left added or deleted on a commit after the exact renames, no other rename
+    * is detected, as comparing the contents costs added times deleted files. 400 by default, 0 for no limit.
+    */
+   public GitParser setRenameLimit(int renameLimit) {
+      this.renameLimit = renameLimit;
+      return this;
+   }
+
+   public int getRenameScore() {
+      return renameScore;
+   }
 
-      PrintStream output = new PrintStream(new FileOutputStream(outputFile));
+   /**
+    * The similarity, from 0 to 100, for a file to be considered renamed. 60 by default.
+    */
+   public GitParser setRenameScore(int renameScore) {
+      this.renameScore = renameScore;
+      return this;
+   }
 
-      File styleDirectory = new File(outputFile.getParent(), "styles");
-      File imageDirectory = new File(outputFile.getParent(), "images");
+   public DiffAlgorithm.SupportedAlgorithm getDiffAlgorithm() {
+      return diffAlgorithm;
+   }
 
-      copy("framework.css", styleDirectory);
-      copy("jquery.dataTables.min.css", styleDirectory);
-      copy("jquery.dataTables.min.js", styleDirectory);
-      copy("jquery.min.js", styleDirectory);
+   /**
+    * HISTOGRAM or MYERS, by default the diff.algorithm of the repository configuration, or HISTOGRAM.
+    */
+   public GitParser setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm diffAlgorithm) {
+      this.diffAlgorithm = diffAlgorithm;
+      return this;
+   }
 
-      copy("sort_both.png", imageDirectory);
-      copy("sort_asc.png", imageDirectory);
-      copy("sort_desc.png", imageDirectory);
-      Git git = Git.open(folder);
-      RevWalk walk = new RevWalk(git.getRepository());
+   public boolean isIgnoreWhitespace() {
+      return ignoreWhitespace;
+   }
 
-      ObjectId fromID = git.getRepository().resolve(from); // ONE COMMIT BEFORE THE SELECTED AS WE NEED DIFFS
-      ObjectId toID = git.getRepository().resolve(to);
+   /**
+    * Compares lines ignoring all whitespace, so reformatting and license header sweeps don't count as changes.
+    */
+   public GitParser setIgnoreWhitespace(boolean ignoreWhitespace) {
+      this.ignoreWhitespace = ignoreWhitespace;
+      return this;
+   }
 
-      RevCommit fromCommit = walk.parseCommit(fromID);
-      RevCommit toCommit = walk.parseCommit(toID);
-      walk.markUninteresting(fromCommit);
-      walk.markStart(toCommit);
+   public int getMaxDiffBytes() {
+      return maxDiffBytes;
+   }
 
-      DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-      diffFormatter.setRepository(git.getRepository());
+   /**
+    * Files larger than this many bytes are not diffed: a new file counts all its lines as added, a deleted one as deleted,
+    * and a modified one only the change on its number of lines. A binary file is not counted.
+    * The size is known without loading the file, the lines are counted as it is streamed. 0, the default, for no limit.
+    */
+   public GitParser setMaxDiffBytes(int maxDiffBytes) {
+      this.maxDiffBytes = maxDiffBytes;
+      return this;
+   }
 
-      walk.sort(RevSort.REVERSE, true);
-      walk.setRevFilter(RevFilter.NO_MERGES);
-      Iterator<RevCommit> commits = walk.iterator();
+   public int getLineGap() {
+      return lineGap;
+   }
 
-      ObjectReader reader = git.getRepository().newObjectReader();
-      CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
-      CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
+   /**
+    * The files on the interesting folders get one link per range of changed lines, ranges with fewer unchanged lines than
+    * this in between are linked as one. 10 by default, Integer.MAX_VALUE links a single range from the first to the last line changed.
+    */
+   public GitParser setLineGap(int lineGap) {
+      this.lineGap = lineGap;
+      return this;
+   }
 
-      output.println(readString("header.txt"));
+   public boolean isSummary() {
+      return summary;
+   }
 
-      output.println("<body>");
+   /**
+    * Adds the totals of the report after the commits: churn per author, commits per JIRA issue type and status,
+    * and files changed per interesting folder, see {@link ReportSummary}. Also written by the {@link JsonLinesSink}.
+    */
+   public GitParser setSummary(boolean summary) {
+      this.summary = summary;
+      return this;
+   }
 
-      output.println("<br/>");
-      output.println("<h4>Release report " + from + "(" + fromCommit.getId().getName() + ") and " + to + "(" + toCommit.getId().getName() + ")</h4>");
-      output.println("<br/>");
+   public int getMaxRecordsInMemory() {
+      return maxRecordsInMemory;
+   }
 
-      output.println("<table id=\"gitreport\" class=\"display\">");
+   /**
+    * Bounded memory mode, for ranges too large for the heap, e.g. the whole history of a project.
+    *
+    * The walk keeps no commit message and writes the commits to a temporary file instead of a list, the rows are then
+    * read back and written a batch at a time, and the JIRA keys of the report go to disk past this many entries,
+    * read back sorted through a merge of the sorted runs. What is left on the heap is the walk itself, about 100 bytes
+    * per commit and released before the rows are written, and the JIRAs being resolved.
+    * The same bound applies to the distinct JIRAs and files of the summary, spilled the same way, and to the JIRA lookups
+    * kept once done. The stats of a cache directory are read from disk, through the offset of each record.
+    *
+    * Commits on more than one range of {@link #parse(File, List)} are diffed once per range, unless a cache directory is set.
+    * The JIRAs of the report are listed sorted on the sample JQL, and {@link #getTotalJiras()} is not filled.
+    * 0, the default, keeps everything in memory.
+    */
+   public GitParser setMaxRecordsInMemory(int maxRecordsInMemory) {
+      this.maxRecordsInMemory = maxRecordsInMemory;
+      return this;
+   }
 
-      DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+   public List<String> getIncludePaths() {
+      return includePaths;
+   }
 
-      StringBuffer interestingChanges[] = new StringBuffer[interestingFolder.size()];
+   /**
+    * Reports only the commits changing something under this path, e.g. artemis-server or artemis-protocols/amqp,
+    * and only counts and links the files under it. Can be called more than once, for a report on a few modules.
+    *
+    * The path is matched from the root of the repository, on whole path segments. The commits are filtered
+    * by the walk itself, so the commits left out are never diffed, which is where the time of a report goes.
+    */
+   public GitParser addIncludePath(String path) {
+      includePaths.add(path);
+      return this;
+   }
 
-      output.print("<thead><tr><th>#</th><th>Commit</th><th>Date</th><th>Author</th><th>Short Message</th><th>Jira Status</th><th>Add</th><th>Rep</th><th>Del</th><th>Tot</th>");
+   public List<String> getExcludePaths() {
+      return excludePaths;
+   }
 
-      for (int i = 0; i < interestingFolder.size(); i++) {
-         output.print("<th>" + interestingFolder.get(i) + "</th>");
-      }
+   /**
+    * Leaves the files under this path out of the report, and the commits only changing files under it,
+    * e.g. a generated or vendored module. Matched as {@link #addIncludePath(String)}.
+    */
+   public GitParser addExcludePath(String path) {
+      excludePaths.add(path);
+      return this;
+   }
+
+   public boolean isFastEnumeration() {
+      return fastEnumeration;
+   }
+
+   /**
+    * Lists the commits of a range without walking the history behind its uninteresting end, which a RevWalk does until
+    * it is sure none of its pending commits is on the range: on a range between long-lived branches, e.g. a maintenance
+    * branch excluding master, or with excluded refs on the {@link ReportRange}, that is most of the history.
+    *
+    * What the uninteresting commits reach comes from the bitmaps of the pack when each one has a bitmap, as the refs of
+    * a repository packed by git gc do. Otherwise from a graph with the parents of every commit, built on first use
+    * with the headers of the commits only, and kept on the cache directory, or in memory by a {@link ReportServer}.
+    * Not used with include or exclude paths, the walk has to look at the trees of the commits then.
+    */
+   public GitParser setFastEnumeration(boolean fastEnumeration) {
+      this.fastEnumeration = fastEnumeration;
+      return this;
+   }
+
+   public boolean isInlineAssets() {
+      return inlineAssets;
+   }
+
+   /**
+    * Puts the stylesheets, scripts and images on each page, so a report is a single file loading in a single request.
+    * Otherwise they are written once on the styles and images folders next to the reports, see {@link ReportAssets}.
+    */
+   public GitParser setInlineAssets(boolean inlineAssets) {
+      this.inlineAssets = inlineAssets;
+      return this;
+   }
+
+   public int getCheckpointInterval() {
+      return checkpointInterval;
+   }
+
+   /**
+    * Writes a checkpoint of the run every this many milliseconds, and once each range is done, next to the report as
+    * &lt;report&gt;.checkpoint, or index.checkpoint on the report directory. It is removed when the run finishes.
+    * 0, the default, for no checkpoints. Not available with sinks, only the HTML reports can be resumed.
+    */
+   public GitParser setCheckpointInterval(int checkpointInterval) {
+      this.checkpointInterval = checkpointInterval;
+      return this;
+   }
+
+   public boolean isResume() {
+      return resume;
+   }
+
+   /**
+    * Goes on from the checkpoint left by a run that did not finish, keeping the rows already written. The ranges done
+    * are not walked again, neither are the commits written on the range in progress diffed again, unless the summary
+    * needs them. A checkpoint of another configuration, or from before a ref of the ranges moved, fails the run.
+    * With no checkpoint the run starts from the beginning.
+    */
+   public GitParser setResume(boolean resume) {
+      this.resume = resume;
+      return this;
+   }
+
+   public File getMetricsFile() {
+      return metricsFile;
+   }
+
+   /**
+    * Writes the timers and counters of each run to this file, as JSON.
+    */
+   public GitParser setMetricsFile(File metricsFile) {
+      this.metricsFile = metricsFile;
+      return this;
+   }
+
+   public boolean isRegisterMBean() {
+      return registerMBean;
+   }
+
+   /**
+    * Registers the metrics of each run on the platform MBean server,
+    * as org.redhat.gitparser:type=ReportMetrics,report=&lt;output file name&gt;.
+    */
+   public GitParser setRegisterMBean(boolean registerMBean) {
+      this.registerMBean = registerMBean;
+      return this;
+   }
+
+   /**
+    * The metrics of the last run, or the one still running.
+    */
+   public ReportMetrics getMetrics() {
+      return metrics;
+   }
+
+   public String getRestLocation() {
+      return restLocation;
+   }
+
+   public GitParser setRestLocation(String restLocation) {
+      this.restLocation = restLocation;
+      return this;
+   }
 
-      output.println("</tr></thead>");
+   private String makeALink(String text, String uri) {
+      return "<a href='" + uri + "'>" + text + "</a>";
+   }
 
-      output.println("<tbody>");
+   public static String[] extractJIRAs(String jira, String message) {
+      return new JiraKeyScanner(jira).scan(message).keys();
+   }
 
-      int numberOfCommits = 0;
-      while (commits.hasNext()) {
-         for (int i = 0; i < interestingFolder.size(); i++) {
-            // the method to cleanup a stringbuffer is cpu intensive. sorry for the extra garbage
-            // this piece of code is a piece of garbage anyways :) only intended for reporting!
-            interestingChanges[i] = new StringBuffer();
+   /**
+    * The message with each JIRA key replaced by its link.
+    */
+   public String prettyCommitMessage(String message) {
+      JiraKeyScanner.Matches matches = jiraScanner.scan(message);
+      StringBuilder builder = new StringBuilder(message.length() + matches.size() * (jiraBrowseURI.length() + 32));
+      int textStart = 0;
+      for (int i = 0; i < matches.size(); i++) {
+         String key = matches.key(i);
+         synchronized (totalJiras) {
+            totalJiras.add(key);
          }
+         builder.append(message, textStart, matches.start(i)).append(makeALink(key, jiraBrowseURI + key));
+         textStart = matches.end(i);
+      }
+      builder.append(message, textStart, message.length());
 
-         RevCommit commit = commits.next();
+      return builder.toString();
+   }
 
-         numberOfCommits++;
+   private static void copy(InputStream is, OutputStream os) throws IOException {
+      byte[] buffer = new byte[1024 * 4];
+      int c = is.read(buffer);
+      while (c >= 0) {
+         os.write(buffer, 0, c);
+         c = is.read(buffer);
+      }
+   }
 
-         output.print("<tr>");
-         output.println("<td>" + makeALink(numberOfCommits + "", githubURI + "commit/" + commit.getName()) + "</td>");
-         output.print("<td>" + commitCell(commit) + " </td>");
-         output.print("<td>" + dateFormat.format(commit.getAuthorIdent().getWhen()) + "</td>");
-         output.print("<td>" + commit.getAuthorIdent().getName() + "</td>");
-         output.print("<td>" + prettyCommitMessage(commit.getShortMessage()) + "</td>");
+   static String readString(String fileName) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (InputStream in = GitParser.class.getResourceAsStream(fileName)) {
+         copy(in, out);
+      }
 
-         StringBuffer bufferJIRA = new StringBuffer();
-         if (currentJiras != null) {
-            for (int i = 0; i < currentJiras.length; i++) {
+      return new String(out.toByteArray());
+   }
 
-               String jiraIteration = currentJiras[i];
-               JsonObject object = null;
-               if (restLocation != null) {
-                  object = restJIRA(jiraIteration);
-               }
-               // it could happen the object is returning null for security or something else
-               if (object != null) {
-                  String issuetype = getField(object, "issuetype");
-                  String status = getField(object, "status");
-                  String resolution = getField(object, "resolution");
-                  String priority = getField(object, "priority");
-                  bufferJIRA.append(makeALink(priority + "/" + issuetype + "/" + resolution + "/" + status, jiraBrowseURI + jiraIteration));
-               } else {
-                  bufferJIRA.append(makeALink(jiraIteration, jiraBrowseURI + jiraIteration));
-               }
+   private void copyAssets(File directory) throws Exception {
+      // the reports are written there even when the assets are inlined
+      directory.mkdirs();
+      if (!inlineAssets) {
+         ReportAssets.stage(directory);
+      }
+   }
 
-               if (i < currentJiras.length -1) {
-                  bufferJIRA.append(",");
-               }
-            }
+   public void parse(File outputFile, String from, String to) throws Exception {
+      copyAssets(outputFile.getAbsoluteFile().getParentFile());
+      try (ReportContext context = new ReportContext(this, 0)) {
+         run(context, Collections.singletonList(new ReportRange(from, to)), Collections.singletonList(outputFile), outputFile.getName(), true, pageSize,
+             new File(outputFile.getPath() + ".checkpoint"));
+      }
+   }
 
+   /**
+    * Writes one report per range on the directory, named after the range, plus an index.html linking all of them.
+    *
+    * The repository is opened once, a commit on more than one range is only diffed once, and the JIRAs of all
+    * ranges are fetched together. The sinks added through {@link #addSink(ReportSink)} are not used here.
+    */
+   public void parse(File outputDirectory, List<ReportRange> ranges) throws Exception {
+      try (ReportContext context = new ReportContext(this, 0)) {
+         parse(context, outputDirectory, ranges);
+      }
+   }
+
+   /**
+    * The reports of {@link #parse(File, List)} on an open context, as the {@link ReportRunner} does.
+    */
+   void parse(ReportContext context, File outputDirectory, List<ReportRange> ranges) throws Exception {
+      copyAssets(outputDirectory);
+      List<File> outputFiles = new ArrayList<>(ranges.size());
+      for (ReportRange range : ranges) {
+         outputFiles.add(new File(outputDirectory, range.getFileName()));
+      }
+      int[][] results = run(context, ranges, outputFiles, outputDirectory.getName(), false, pageSize, new File(outputDirectory, "index.checkpoint"));
+      writeIndex(new File(outputDirectory, "index.html"), ranges, outputFiles, results);
+   }
+
+   /**
+    * A single report on an open context, as the {@link ReportServer} does. The sinks are not used here.
+    */
+   void parse(ReportContext context, File outputFile, String from, String to) throws Exception {
+      try {
+         run(context, Collections.singletonList(new ReportRange(from, to)), Collections.singletonList(outputFile), outputFile.getName(), false, 0, null);
+      } finally {
+         // each request has its own output file name, their MBeans would pile up
+         if (registerMBean) {
+            unregisterMBean(outputFile.getName());
          }
-         output.println("<td>" + bufferJIRA.toString() + "</td>");
+      }
+   }
 
-         oldTreeIter.reset(reader, commit.getParent(0).getTree());
-         newTreeIter.reset(reader, commit.getTree());
+   /**
+    * @param checkpointFile where the checkpoints go, null for none
+    * @return the number of commits and JIRAs on each range
+    */
+   private int[][] run(ReportContext context, List<ReportRange> ranges, List<File> outputFiles, String name, boolean withSinks, int pageSize, File checkpointFile) throws Exception {
+      ReportMetrics metrics = new ReportMetrics();
+      this.metrics = metrics;
+      HashSet<String> totalJiras = new HashSet<>();
+      this.totalJiras = totalJiras;
+      if (registerMBean) {
+         registerMBean(metrics, name);
+      }
 
-         List<DiffEntry> diffList = git.diff().setOldTree(oldTreeIter).setNewTree(newTreeIter).call();
+      int[][] results = new int[ranges.size()][];
 
-         int addition = 0, deletion = 0, replacement = 0;
+      ReportCheckpoint checkpoint = null;
+      ReportCheckpoint resumed = null;
+      if (checkpointFile != null && (checkpointInterval > 0 || resume)) {
+         if (withSinks && !sinks.isEmpty()) {
+            throw new IllegalStateException("checkpoints only cover the HTML reports, not the sinks");
+         }
+         String fingerprint = ReportCheckpoint.fingerprint(this, context.getRepository(), ranges, pageSize);
+         resumed = resume ? ReportCheckpoint.load(checkpointFile) : null;
+         if (resumed != null) {
+            if (!resumed.getFingerprint().equals(fingerprint)) {
+               throw new IllegalStateException("the checkpoint " + checkpointFile + " is of another configuration, or a ref of the ranges moved since, remove it to start over");
+            }
+            File outputFile = outputFiles.get(resumed.getRangesDone() < ranges.size() ? resumed.getRangesDone() : 0);
+            if (resumed.getPosition() != null && !resumed.matchesOutput(outputFile, HtmlReport.chunkFile(outputFile, resumed.getPosition()))) {
+               System.out.println("The report is shorter than on the checkpoint " + checkpointFile + ", starting over");
+               resumed = null;
+            } else {
+               System.out.println("Resuming after " + resumed.getRangesDone() + " ranges and " + resumed.getCommits() + " commits");
+            }
+         }
+         checkpoint = resumed != null ? resumed : new ReportCheckpoint(fingerprint);
+      }
+      // the ranges before this one are done already
+      int firstRange = resumed != null ? resumed.getRangesDone() : 0;
+      for (int r = 0; r < firstRange; r++) {
+         results[r] = resumed.getResult(r);
+      }
+      if (resumed != null) {
+         synchronized (totalJiras) {
+            totalJiras.addAll(resumed.getTotalJiras());
+         }
+      }
 
-         for (DiffEntry entry : diffList) {
-            String path = entry.getNewPath();
-            if (path.equals("/dev/null")) {
-               // this could happen on deleting a whole file
-               path = entry.getOldPath();
+      boolean bounded = maxRecordsInMemory > 0;
+      File spillDirectory = bounded ? Files.createTempDirectory("git-report-spill").toFile() : null;
+      List<CommitSpill> spills = new ArrayList<>();
+
+      Repository repository = context.getRepository();
+      try (RevWalk walk = new RevWalk(repository)) {
+
+         long start = System.nanoTime();
+         walk.sort(RevSort.REVERSE, true);
+         walk.setRevFilter(RevFilter.NO_MERGES);
+         setPathFilter(walk);
+
+         List<RevCommit[]> bounds = new ArrayList<>(ranges.size());
+         List<List<RevCommit>> commitLists = new ArrayList<>(ranges.size());
+         HashSet<String> keys = new HashSet<>();
+         // on how many ranges each commit is still to be reported, when more than one, so its stats are kept until then
+         HashMap<String, Integer> pending = new HashMap<>();
+         JiraKeyScanner.Matches matches = new JiraKeyScanner.Matches();
+         // the commit graph and bitmaps don't know about paths, the walk filters the commits when there are any
+         RangeEnumerator enumerator = fastEnumeration && CommitDiffer.pathFilter(includePaths, excludePaths) == TreeFilter.ALL ? new RangeEnumerator(context.getCommitGraph()) : null;
+         long enumerationNanos = 0;
+         for (int r = 0; r < ranges.size(); r++) {
+            ReportRange range = ranges.get(r);
+            if (r < firstRange) {
+               bounds.add(null);
+               commitLists.add(null);
+               spills.add(null);
+               continue;
+            }
+            long enumerationStart = System.nanoTime();
+            if (bounded) {
+               CommitSpill spill = new CommitSpill(new File(spillDirectory, "commits-" + r));
+               spills.add(spill);
+               bounds.add(walkToSpill(repository, range, enumerator, spill));
+               metrics.commitsWalked.addAndGet(spill.size());
+               enumerationNanos += System.nanoTime() - enumerationStart;
+               continue;
+            }
+            walk.reset();
+            ObjectId fromID = repository.resolve(range.getFrom()); // ONE COMMIT BEFORE THE SELECTED AS WE NEED DIFFS
+            ObjectId toID = repository.resolve(range.getTo());
+
+            RevCommit fromCommit = walk.parseCommit(fromID);
+            RevCommit toCommit = walk.parseCommit(toID);
+            bounds.add(new RevCommit[] {fromCommit, toCommit});
+
+            List<RevCommit> enumerated = enumerate(walk, repository, range, enumerator, fromCommit, toCommit);
+            enumerationNanos += System.nanoTime() - enumerationStart;
+
+            List<RevCommit> commitList = new ArrayList<>(enumerated.size());
+            for (RevCommit commit : enumerated) {
+               // a previous range could have dropped its message, if it was uninteresting there
+               walk.parseBody(commit);
+               if (commit.getParentCount() > 0) {
+                  // the workers can't use the RevWalk, so the parent tree is parsed upfront
+                  walk.parseHeaders(commit.getParent(0));
+               }
+               commitList.add(commit);
+               Collections.addAll(keys, jiraScanner.scan(commit.getShortMessage(), matches).keys());
+               if (ranges.size() > 1) {
+                  Integer count = pending.get(commit.getName());
+                  pending.put(commit.getName(), count == null ? 1 : count + 1);
+               }
+            }
+            commitLists.add(commitList);
+            metrics.commitsWalked.addAndGet(commitList.size());
+         }
+         if (ranges.size() > 1) {
+            // and a later range could have dropped it again
+            for (List<RevCommit> commitList : commitLists) {
+               for (RevCommit commit : commitList != null ? commitList : Collections.<RevCommit>emptyList()) {
+                  walk.parseBody(commit);
+               }
+            }
+         }
+         metrics.add(ReportMetrics.Stage.ENUMERATE, enumerationNanos);
+         metrics.add(ReportMetrics.Stage.WALK, System.nanoTime() - start - enumerationNanos);
+
+         // the context could be shared with other reports, only what changes during this one is counted
+         JiraCache jiraCache = context.getJiraCache();
+         long jiraCacheHits = jiraCache != null ? jiraCache.getHits() : 0;
+         long jiraCacheMisses = jiraCache != null ? jiraCache.getMisses() : 0;
+
+         int batchedCommits = 0;
+         int reusedCommits = 0;
+         long bytesWritten = 0;
+         try (JiraResolver resolver = restLocation != null ? newResolver(context, jiraCache, metrics) : null;
+              DiffEngine diffEngine = new DiffEngine(this, newPathClassifier(), repository, metrics, parallelism, context.getDiffExecutor())) {
+
+            if (resolver != null) {
+               // the JIRAs are fetched in background while the commits are diffed
+               resolver.prefetch(keys);
             }
 
-            boolean interested = false;
-
-            FileHeader header = diffFormatter.toFileHeader(entry);
-
-            for (int i = 0; i < interestingFolder.size(); i++) {
-               if (path.contains(interestingFolder.get(i)) && isSource(path)) {
-                  interested = true;
-                  File file = new File(path);
-                  if (entry.getNewPath().equals("/dev/null")) {
-                     interestingChanges[i].append(file.getName() + " "); // deleted, there's no link
-                  } else {
-
-                     int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
-                     for (HunkHeader hunk : header.getHunks()) {
-                        EditList edits = hunk.toEditList();
-                        Iterator<Edit> editsIterator = edits.iterator();
-                        while (editsIterator.hasNext()) {
-                           Edit edit = editsIterator.next();
-                           switch (edit.getType()) {
-                              case INSERT:
-                              case REPLACE:
-                                 min = Math.min(min, edit.getBeginB() + 1); // the begin is always +1
-                                 max = Math.max(max, edit.getEndB());
-                                 break;
-                              case DELETE:
-                                 min = Math.min(min, edit.getBeginA() + 1); // the begin is always +1
-                                 max = Math.max(max, edit.getEndA());
-                                 break;
+            // stats of the commits still pending on a later range
+            HashMap<String, CommitStats> shared = new HashMap<>();
+
+            long lastCheckpoint = System.nanoTime();
+            for (int r = firstRange; r < ranges.size(); r++) {
+               ReportRange range = ranges.get(r);
+               List<RevCommit> commitList = bounded ? null : commitLists.get(r);
+               int rangeSize = bounded ? spills.get(r).size() : commitList.size();
+               File outputFile = outputFiles.get(r);
+               HashSet<String> rangeJiras = bounded ? null : new HashSet<String>();
+               SpillSet rangeJiraSpill = bounded ? new SpillSet(spillDirectory, "jiras-" + r, maxRecordsInMemory) : null;
+
+               // the commits written on this range by the run resumed, only diffed again for the summary
+               HtmlReport.Position position = resumed != null && r == firstRange ? resumed.getPosition() : null;
+               int written = position != null ? resumed.getCommits() : 0;
+
+               HtmlReport report = new HtmlReport(this, outputFile, pageSize, position);
+               report.setResolver(resolver);
+               List<ReportSink> runSinks = new ArrayList<>();
+               runSinks.add(report);
+               if (withSinks) {
+                  runSinks.addAll(sinks);
+               }
+
+               try {
+                  start = System.nanoTime();
+                  if (position == null) {
+                     for (ReportSink sink : runSinks) {
+                        sink.begin(this, range.getFrom(), bounds.get(r)[0], range.getTo(), bounds.get(r)[1]);
+                     }
+                  }
+                  metrics.time(ReportMetrics.Stage.RENDER, start);
+
+                  int numberOfCommits = 0;
+                  for (int batchStart = 0; batchStart < rangeSize; batchStart += BATCH_SIZE) {
+                     List<RevCommit> batch;
+                     if (bounded) {
+                        start = System.nanoTime();
+                        batch = readBatch(walk, spills.get(r), resolver, matches);
+                        metrics.time(ReportMetrics.Stage.WALK, start);
+                     } else {
+                        batch = commitList.subList(batchStart, Math.min(commitList.size(), batchStart + BATCH_SIZE));
+                     }
+                     if (numberOfCommits < written && !summary) {
+                        // already written, only their JIRAs are needed, as found on the messages
+                        int skipped = Math.min(batch.size(), written - numberOfCommits);
+                        for (RevCommit commit : batch.subList(0, skipped)) {
+                           String[] jiras = jiraScanner.scan(commit.getShortMessage(), matches).keys();
+                           if (bounded) {
+                              rangeJiraSpill.addAll(jiras);
+                           } else {
+                              Collections.addAll(rangeJiras, jiras);
+                           }
+                           Integer count = pending.remove(commit.getName());
+                           if (count != null && count > 1) {
+                              pending.put(commit.getName(), count - 1);
                            }
                         }
+                        numberOfCommits += skipped;
+                        batch = batch.subList(skipped, batch.size());
+                     }
+                     start = System.nanoTime();
+                     List<CommitStats> statsList = diffBatch(diffEngine, context, metrics, shared, batch);
+                     batchedCommits += batch.size();
+                     metrics.time(ReportMetrics.Stage.DIFF, start);
+                     for (int c = 0; c < batch.size(); c++) {
+                        CommitStats stats = statsList.get(c);
+                        String[] jiras = stats.getJiras();
+                        JiraIssue[] issues = null;
+                        if (resolver != null) {
+                           start = System.nanoTime();
+                           issues = new JiraIssue[jiras.length];
+                           for (int i = 0; i < jiras.length; i++) {
+                              issues[i] = resolver.get(jiras[i]);
+                           }
+                           metrics.time(ReportMetrics.Stage.JIRA, start);
+                        }
+                        if (bounded) {
+                           rangeJiraSpill.addAll(jiras);
+                        } else {
+                           Collections.addAll(rangeJiras, jiras);
+                        }
+                        numberOfCommits++;
+                        start = System.nanoTime();
+                        if (numberOfCommits <= written) {
+                           report.replay(batch.get(c), stats, issues);
+                        } else {
+                           for (int s = 0; s < runSinks.size(); s++) {
+                              runSinks.get(s).commit(numberOfCommits, batch.get(c), stats, issues);
+                           }
+                        }
+                        metrics.time(ReportMetrics.Stage.RENDER, start);
+
+                        Integer count = pending.remove(stats.getId());
+                        if (count != null && count > 1) {
+                           pending.put(stats.getId(), count - 1);
+                           shared.put(stats.getId(), stats);
+                        } else {
+                           shared.remove(stats.getId());
+                        }
                      }
 
-                     String fullHistory = makeALink("(+)", githubURI + "/commits/" + commit.getId().getName() + "/" + path);
-
-                     String linkText = makeALink(file.getName(), githubURI + "blob/" + commit.getId().getName() + "/" + path + "#L" + (min) + "-L" + (max));
-
-                     interestingChanges[i].append(linkText + fullHistory + " ");
+                     if (checkpoint != null && checkpointInterval > 0 && numberOfCommits > written &&
+                        System.nanoTime() - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(checkpointInterval)) {
+                        checkpoint(checkpoint, checkpointFile, context, numberOfCommits, report.position());
+                        lastCheckpoint = System.nanoTime();
+                     }
                   }
-               }
-            }
 
-            if (!interested && isSource(path)) {
-               for (HunkHeader hunk : header.getHunks()) {
-                  EditList edits = hunk.toEditList();
-                  Iterator<Edit> editsIterator = edits.iterator();
-
-                  if (!interested && path.endsWith(".java")) {
-
-                     while (editsIterator.hasNext()) {
-                        Edit edit = editsIterator.next();
-                        switch (edit.getType()) {
-                           case INSERT:
-                              addition += (edit.getEndB() - edit.getBeginB());
-                              break;
-                           case DELETE:
-                              deletion += (edit.getEndA() - edit.getBeginA());
-                              break;
-                           case REPLACE:
-                              replacement += (edit.getEndB() - edit.getBeginB());
-                              break;
-                        }
+                  start = System.nanoTime();
+                  Collection<String> jiraKeys = bounded ? rangeJiraSpill.sorted() : rangeJiras;
+                  for (ReportSink sink : runSinks) {
+                     sink.end(jiraKeys);
+                  }
+                  close(runSinks);
+                  metrics.time(ReportMetrics.Stage.RENDER, start);
+                  bytesWritten += outputFile.length() + report.getDataBytes();
+
+                  results[r] = new int[] {numberOfCommits, jiraKeys.size()};
+                  if (!bounded) {
+                     synchronized (totalJiras) {
+                        totalJiras.addAll(rangeJiras);
+                     }
+                  }
+                  System.out.println(numberOfCommits + " commits and " + jiraKeys.size() + " JIRAs written to " + outputFile);
+                  if (!report.getDegraded().isEmpty()) {
+                     System.out.println(report.getDegraded().size() + " JIRAs without details, the tracker was not available: " + report.getDegraded());
+                  }
+                  if (checkpoint != null) {
+                     checkpoint.rangeDone(results[r], rangeJiras);
+                     if (r < ranges.size() - 1) {
+                        checkpoint(checkpoint, checkpointFile, context, 0, null);
                      }
                   }
-                  //                  System.out.println("hunk::" + hunk);
-                  //output.println("hunk:: " + hunk);
-                  // System.out.println("At " + hunk.getNewStartLine(), hunk.ge)
+               } finally {
+                  close(runSinks);
+                  if (rangeJiraSpill != null) {
+                     rangeJiraSpill.close();
+                  }
                }
             }
+            // commits skipped through the checkpoint were neither diffed nor reused
+            reusedCommits = batchedCommits - diffEngine.getDiffedCommits();
+            metrics.commitsDiffed.addAndGet(diffEngine.getDiffedCommits());
          }
-         output.print("<td>" + addition + "</td><td>" + replacement + "</td><td>" + deletion + "</td><td>" + (addition + replacement - deletion) + "</td>");
 
-         for (int i = 0; i < interestingChanges.length; i++) {
-            output.print("<td>" + interestingChanges[i].toString() + "</td>");
+         if (checkpointFile != null) {
+            checkpointFile.delete();
+         }
+         metrics.bytesWritten.set(bytesWritten);
+         if (cacheDirectory != null || ranges.size() > 1) {
+            System.out.println("Commit stats: " + reusedCommits + " commits reused, " + (batchedCommits - reusedCommits) + " diffed");
+         }
+         if (jiraCache != null) {
+            jiraCache.save();
+            metrics.jiraCacheHits.set(jiraCache.getHits() - jiraCacheHits);
+            metrics.jiraCacheMisses.set(jiraCache.getMisses() - jiraCacheMisses);
+            System.out.println("JIRA cache: " + metrics.getJiraCacheHits() + " hits, " + metrics.getJiraCacheMisses() + " misses");
+         }
+         if (metrics.getRestRetries() > 0 || metrics.getJiraDegraded() > 0) {
+            System.out.println("JIRA requests: " + metrics.getRestRetries() + " retried, " + metrics.getJiraDegraded() + " given up");
+         }
+      } finally {
+         metrics.finish();
+         for (CommitSpill spill : spills) {
+            if (spill != null) {
+               spill.close();
+            }
          }
-         output.println("</tr>");
+         if (spillDirectory != null) {
+            spillDirectory.delete();
+         }
+      }
 
+      if (metricsFile != null) {
+         metrics.write(metricsFile);
+      }
+      System.out.println("Enumerate " + metrics.getEnumerateMillis() + " ms, walk " + metrics.getWalkMillis() + " ms, diff " + metrics.getDiffMillis() + " ms, JIRA " + metrics.getJiraMillis() +
+                            " ms, render " + metrics.getRenderMillis() + " ms, total " + metrics.getTotalMillis() + " ms");
+      if (metrics.getDiffsSkipped() > 0) {
+         System.out.println(metrics.getDiffsSkipped() + " files not diffed, binary" + (maxDiffBytes > 0 ? " or larger than " + maxDiffBytes + " bytes" : ""));
       }
+      return results;
+   }
 
-      output.println("</tbody></table>");
+   private JiraResolver newResolver(ReportContext context, JiraCache jiraCache, ReportMetrics metrics) {
+      JiraResolver resolver = new JiraResolver(restLocation, context.getClient()).setTimeouts(jiraConnectTimeout, jiraReadTimeout).
+         setLimiter(context.getJiraLimiter()).setCache(jiraCache).setMetrics(metrics).setQuiet(quiet);
+      if (maxRecordsInMemory > 0) {
+         // never fewer than a few batches, the keys of a batch are prefetched before the batch is written
+         resolver.setMaxLookups(Math.max(maxRecordsInMemory, 4 * BATCH_SIZE));
+      }
+      return resolver;
+   }
 
-      if (sampleJQL != null && !totalJiras.isEmpty()) {
-         output.println("<br><h2>");
-         output.print("<a href='" + sampleJQL + "(");
+   /**
+    * Saves the checkpoint, with the stats and JIRAs fetched so far, so a run resumed does not fetch them again.
+    */
+   private void checkpoint(ReportCheckpoint checkpoint, File checkpointFile, ReportContext context, int commits, HtmlReport.Position position) throws IOException {
+      if (context.getStatsStore() != null) {
+         context.getStatsStore().flush();
+      }
+      if (context.getJiraCache() != null) {
+         context.getJiraCache().save();
+      }
+      checkpoint.progress(commits, position);
+      checkpoint.save(checkpointFile);
+   }
 
-         Iterator<String> jiraIterator = totalJiras.iterator();
-         StringBuffer bufferJiras = new StringBuffer();
+   /**
+    * The commits of the range, the oldest first, through the enumerator when there's one and it can tell
+    * what the uninteresting commits reach, or else through the walk.
+    */
+   private static List<RevCommit> enumerate(RevWalk walk, Repository repository, ReportRange range, RangeEnumerator enumerator, RevCommit fromCommit, RevCommit toCommit) throws IOException {
+      List<RevCommit> uninteresting = new ArrayList<>(1 + range.getExcluded().size());
+      uninteresting.add(fromCommit);
+      for (String ref : range.getExcluded()) {
+         ObjectId excluded = repository.resolve(ref);
+         if (excluded == null) {
+            throw new IllegalArgumentException("unknown revision " + ref + " excluded from " + range);
+         }
+         uninteresting.add(walk.parseCommit(excluded));
+      }
 
-         do {
-            bufferJiras.append(jiraIterator.next());
-            if (jiraIterator.hasNext()) {
-               bufferJiras.append("%2C");
-            }
-         } while (jiraIterator.hasNext());
+      List<RevCommit> commits = enumerator != null ? enumerator.enumerate(walk, toCommit, uninteresting) : null;
+      if (commits == null) {
+         for (RevCommit commit : uninteresting) {
+            walk.markUninteresting(commit);
+         }
+         walk.markStart(toCommit);
+         commits = new ArrayList<>();
+         for (RevCommit commit : walk) {
+            commits.add(commit);
+         }
+      }
+      return commits;
+   }
 
-         output.print(bufferJiras.toString());
-         output.println(")'>" + totalJiras.size() + " JIRAS on this Report</a></h2>");
+   /**
+    * The walk of the bounded memory mode, writing the commits of the range to the spill with no message kept.
+    *
+    * @return the from and to commits of the range
+    */
+   private RevCommit[] walkToSpill(Repository repository, ReportRange range, RangeEnumerator enumerator, CommitSpill spill) throws IOException {
+      try (RevWalk walk = new RevWalk(repository)) {
+         walk.setRetainBody(false);
+         walk.sort(RevSort.REVERSE, true);
+         walk.setRevFilter(RevFilter.NO_MERGES);
+         setPathFilter(walk);
+         RevCommit fromCommit = walk.parseCommit(repository.resolve(range.getFrom()));
+         RevCommit toCommit = walk.parseCommit(repository.resolve(range.getTo()));
+         List<RevCommit> commits = enumerate(walk, repository, range, enumerator, fromCommit, toCommit);
+         // newest first, the spill is read back from the end
+         for (int i = commits.size() - 1; i >= 0; i--) {
+            spill.add(commits.get(i));
+         }
+         return new RevCommit[] {fromCommit, toCommit};
       }
+   }
 
-      output.println("<br>Generated with <a href='https://github.com/clebertsuconic/git-release-report'> git-release-report</a>");
+   /**
+    * Prunes the commits not changing any path of the report during the walk, so they are never diffed.
+    */
+   private void setPathFilter(RevWalk walk) {
+      TreeFilter pathFilter = CommitDiffer.pathFilter(includePaths, excludePaths);
+      if (pathFilter != TreeFilter.ALL) {
+         walk.setTreeFilter(AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF));
+         // the commits are diffed against their actual parent, not the previous commit on the report
+         walk.setRewriteParents(false);
+      }
+   }
 
-      output.println("</body></html>");
+   /**
+    * The next batch of the bounded memory mode, parsed on a walk only holding this batch.
+    * The JIRAs of the batch are fetched while it is diffed.
+    */
+   private List<RevCommit> readBatch(RevWalk walk, CommitSpill spill, JiraResolver resolver, JiraKeyScanner.Matches matches) throws IOException {
+      // the previous batch is written already
+      walk.dispose();
+      List<ObjectId> ids = spill.next(BATCH_SIZE);
+      List<RevCommit> batch = new ArrayList<>(ids.size());
+      HashSet<String> keys = new HashSet<>();
+      for (ObjectId id : ids) {
+         RevCommit commit = walk.parseCommit(id);
+         walk.parseBody(commit);
+         if (commit.getParentCount() > 0) {
+            walk.parseHeaders(commit.getParent(0));
+         }
+         Collections.addAll(keys, jiraScanner.scan(commit.getShortMessage(), matches).keys());
+         batch.add(commit);
+      }
+      if (resolver != null) {
+         resolver.prefetch(keys);
+      }
+      return batch;
+   }
+
+   private void writeIndex(File indexFile, List<ReportRange> ranges, List<File> outputFiles, int[][] results) throws IOException {
+      try (HtmlWriter out = HtmlWriter.open(indexFile, 8 * 1024)) {
+         out.append("<html>").newLine();
+         out.append("<head>").newLine();
+         out.append("    <meta charset=\"utf-8\">").newLine();
+         out.append("    <link type=\"text/css\" rel=\"stylesheet\" href=\"styles/framework.css\"/>").newLine();
+         out.append("</head>").newLine();
+         out.append("<body>").newLine();
+         out.append("<br/>").newLine();
+         out.append("<h4>Release reports</h4>").newLine();
+         out.append("<table id=\"gitreport\" class=\"display\">").newLine();
+         out.append("<thead><tr><th>Range</th><th>Commits</th><th>JIRAs</th></tr></thead>").newLine();
+         out.append("<tbody>").newLine();
+         for (int r = 0; r < ranges.size(); r++) {
+            out.append("<tr><td>").link(ranges.get(r).toString(), outputFiles.get(r).getName(), "").append("</td>");
+            out.append("<td>").append(results[r][0]).append("</td><td>").append(results[r][1]).append("</td></tr>").newLine();
+         }
+         out.append("</tbody></table>").newLine();
+         out.append("<br>Generated with <a href='https://github.com/clebertsuconic/git-release-report'> git-release-report</a>").newLine();
+         out.append("</body></html>").newLine();
+      }
+   }
+
+   /**
+    * Closes every sink, even if some of them fail.
+    */
+   private static void close(List<ReportSink> sinks) throws IOException {
+      IOException failure = null;
+      for (ReportSink sink : sinks) {
+         try {
+            sink.close();
+         } catch (IOException e) {
+            if (failure == null) {
+               failure = e;
+            } else {
+               failure.addSuppressed(e);
+            }
+         }
+      }
+      if (failure != null) {
+         throw failure;
+      }
+   }
+
+   private static ObjectName mbeanName(String report) throws Exception {
+      return new ObjectName("org.redhat.gitparser:type=ReportMetrics,report=" + ObjectName.quote(report));
+   }
+
+   /**
+    * Replaces the metrics of a previous run with the same output file name, if there was one.
+    */
+   private static void registerMBean(ReportMetrics metrics, String report) throws Exception {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = mbeanName(report);
+      synchronized (GitParser.class) {
+         if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+         }
+         server.registerMBean(metrics, name);
+      }
+   }
 
+   private static void unregisterMBean(String report) throws Exception {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = mbeanName(report);
+      synchronized (GitParser.class) {
+         if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+         }
+      }
    }
 
-   private boolean isSource(String path) {
-      for (int i = 0; i < sourceSuffix.length; i++) {
-         if (path.endsWith(sourceSuffix[i])) {
-            return true;
+   /**
+    * Diffs the commits not found on the shared stats or on the caches of the context, and records them on the caches.
+    */
+   private List<CommitStats> diffBatch(DiffEngine diffEngine, ReportContext context, ReportMetrics metrics, Map<String, CommitStats> shared, List<RevCommit> batch) throws Exception {
+      CommitStatsStore statsStore = context.getStatsStore();
+      Map<String, CommitStats> statsCache = context.getStatsCache();
+      List<CommitStats> result = new ArrayList<>(batch.size());
+      List<RevCommit> unseen = new ArrayList<>();
+      for (RevCommit commit : batch) {
+         CommitStats stats = shared.get(commit.getName());
+         if (stats == null && statsCache != null) {
+            stats = statsCache.get(commit.getName());
+         }
+         if (stats == null && statsStore != null) {
+            stats = statsStore.get(commit.getName());
+            if (stats != null) {
+               metrics.statsStoreHits.incrementAndGet();
+            }
+         }
+         result.add(stats);
+         if (stats == null) {
+            unseen.add(commit);
          }
       }
-      return false;
+
+      List<CommitStats> diffed = diffEngine.diff(unseen);
+      for (int i = 0, d = 0; i < result.size(); i++) {
+         if (result.get(i) == null) {
+            CommitStats stats = diffed.get(d++);
+            stats.setJiras(jiraScanner.scan(batch.get(i).getShortMessage()).keys());
+            if (statsStore != null) {
+               statsStore.put(stats);
+            }
+            if (statsCache != null) {
+               statsCache.put(stats.getId(), stats);
+            }
+            result.set(i, stats);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Compiled once per report, shared by all the threads diffing commits.
+    */
+   PathClassifier newPathClassifier() {
+      return new PathClassifier(interestingFolder, sourceSuffix, anchoredFolders);
    }
 
    public List<String> getInterestingFolder() {
@@ -470,6 +1241,9 @@ public class GitParser {
       return githubURI;
    }
 
+   /**
+    * The JIRAs of the last run, or the one still running.
+    */
    public HashSet<String> getTotalJiras() {
       return totalJiras;
    }
@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Writes the HTML report, one row per commit, as the rows are produced.
+ *
+ * When paged, the rows are not on the page: they are written as javascript files next to it, each one
+ * passing a JSON array of rows (an array of cell markup each) to the page. The page loads them one after the other,
+ * adding the rows to the DataTable with deferRender. Script tags are used instead of XMLHttpRequest so the report
+ * still opens from file://.
+ */
+
+class HtmlReport implements ReportSink {
+
+   /**
+    * Where the output files end after a number of rows, to go on writing from there, see {@link ReportCheckpoint}.
+    */
+   static final class Position {
+
+      private final long pageLength;
+      private final int chunks;
+      private final int rowsInChunk;
+      private final long chunkLength;
+      private final long dataBytes;
+
+      Position(long pageLength, int chunks, int rowsInChunk, long chunkLength, long dataBytes) {
+         this.pageLength = pageLength;
+         this.chunks = chunks;
+         this.rowsInChunk = rowsInChunk;
+         this.chunkLength = chunkLength;
+         this.dataBytes = dataBytes;
+      }
+
+      long getPageLength() {
+         return pageLength;
+      }
+
+      /**
+       * Number of data files complete, when paged.
+       */
+      int getChunks() {
+         return chunks;
+      }
+
+      /**
+       * Number of rows on the data file not complete yet, when paged.
+       */
+      int getRowsInChunk() {
+         return rowsInChunk;
+      }
+
+      long getChunkLength() {
+         return chunkLength;
+      }
+
+      long getDataBytes() {
+         return dataBytes;
+      }
+   }
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final GitParser parser;
+   private final File outputFile;
+   private final HtmlWriter out;
+   private final DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+   private final JiraKeyScanner.Matches matches = new JiraKeyScanner.Matches();
+   // null unless the parser asks for a summary
+   private final ReportSummary summary;
+
+   // rows per data file, 0 if the rows are on the page
+   private final int pageSize;
+   private final File dataDirectory;
+   // where the rows are written, the page itself or the current data file
+   private HtmlWriter rows;
+   private int cells;
+   private int rowsInChunk;
+   private int chunks;
+   private long dataBytes;
+   // null if the JIRAs are not fetched
+   private JiraResolver resolver;
+   // keys shown with no details because the tracker was not available
+   private final TreeSet<String> degraded = new TreeSet<>();
+
+   HtmlReport(GitParser parser, File outputFile) throws IOException {
+      this(parser, outputFile, parser.getPageSize());
+   }
+
+   /**
+    * @param pageSize rows per data file, 0 to keep all rows on the page
+    */
+   HtmlReport(GitParser parser, File outputFile, int pageSize) throws IOException {
+      this(parser, outputFile, pageSize, null);
+   }
+
+   /**
+    * @param resume where to go on writing rows on the files of a previous run, which already wrote the beginning of
+    *               the report, null to write a new report
+    */
+   HtmlReport(GitParser parser, File outputFile, int pageSize, Position resume) throws IOException {
+      this.parser = parser;
+      this.outputFile = outputFile;
+      this.out = resume != null ? HtmlWriter.open(outputFile, BUFFER_SIZE, resume.pageLength) : open(outputFile);
+      this.pageSize = pageSize;
+      this.summary = parser.isSummary() ? new ReportSummary(parser) : null;
+      if (pageSize > 0) {
+         dataDirectory = dataDirectory(outputFile);
+         dataDirectory.mkdirs();
+         if (resume != null) {
+            chunks = resume.chunks;
+            rowsInChunk = resume.rowsInChunk;
+            dataBytes = resume.dataBytes;
+            if (rowsInChunk > 0) {
+               rows = HtmlWriter.open(chunkFile(chunks), BUFFER_SIZE, resume.chunkLength);
+            }
+         }
+      } else {
+         dataDirectory = null;
+         rows = out;
+      }
+   }
+
+   private static File dataDirectory(File outputFile) {
+      String name = outputFile.getName();
+      int extension = name.lastIndexOf('.');
+      return new File(outputFile.getAbsoluteFile().getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + "-data");
+   }
+
+   /**
+    * The data file a report resumed at this position writes to, when paged.
+    */
+   static File chunkFile(File outputFile, Position position) {
+      return new File(dataDirectory(outputFile), "rows-" + position.chunks + ".js");
+   }
+
+   private static HtmlWriter open(File file) throws IOException {
+      return HtmlWriter.open(file, BUFFER_SIZE);
+   }
+
+   private File chunkFile(int chunk) {
+      return new File(dataDirectory, "rows-" + chunk + ".js");
+   }
+
+   private void startRow() throws IOException {
+      cells = 0;
+      if (pageSize == 0) {
+         rows.append("<tr>");
+         return;
+      }
+      if (rows == null) {
+         rows = open(chunkFile(chunks));
+         rows.append("gitReportRows([").newLine();
+      } else {
+         rows.append(',').newLine();
+      }
+      rows.append('[');
+   }
+
+   private void startCell() throws IOException {
+      if (pageSize == 0) {
+         rows.append("<td>");
+      } else {
+         if (cells > 0) {
+            rows.append(',');
+         }
+         rows.append('"').jsonString(true);
+      }
+      cells++;
+   }
+
+   private void endCell() throws IOException {
+      if (pageSize == 0) {
+         rows.append("</td>");
+      } else {
+         rows.jsonString(false).append('"');
+      }
+   }
+
+   private void endRow() throws IOException {
+      if (pageSize == 0) {
+         rows.append("</tr>").newLine();
+         return;
+      }
+      rows.append(']');
+      if (++rowsInChunk == pageSize) {
+         closeChunk();
+      }
+   }
+
+   private void closeChunk() throws IOException {
+      if (rows != null) {
+         rows.newLine().append("]);").newLine();
+         rows.close();
+         dataBytes += chunkFile(chunks).length();
+         chunks++;
+         rowsInChunk = 0;
+         rows = null;
+      }
+   }
+
+   @Override
+   public void begin(GitParser parser, String from, RevCommit fromCommit, String to, RevCommit toCommit) throws IOException {
+      String header = GitParser.readString(pageSize > 0 ? "header-paged.txt" : "header.txt");
+      out.append(parser.isInlineAssets() ? ReportAssets.inline(header) : header).newLine();
+
+      out.append("<body>").newLine();
+
+      out.append("<br/>").newLine();
+      out.append("<h4>Release report ").text(from).append('(').append(fromCommit.getName()).append(") and ").text(to).append('(').append(toCommit.getName()).append(")</h4>").newLine();
+      out.append("<br/>").newLine();
+
+      out.append("<table id=\"gitreport\" class=\"display\">").newLine();
+
+      out.append("<thead><tr><th>#</th><th>Commit</th><th>Date</th><th>Author</th><th>Short Message</th><th>Jira Status</th><th>Add</th><th>Rep</th><th>Del</th><th>Tot</th>");
+
+      for (String folder : parser.getInterestingFolder()) {
+         out.append("<th>").text(folder).append("</th>");
+      }
+
+      out.append("</tr></thead>").newLine();
+
+      out.append("<tbody>").newLine();
+   }
+
+   /**
+    * The JIRAs the resolver gave up on are listed at the end of the report.
+    */
+   void setResolver(JiraResolver resolver) {
+      this.resolver = resolver;
+   }
+
+   @Override
+   public void commit(int number, RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException {
+      String githubURI = parser.getGithubURI();
+      String jiraBrowseURI = parser.getJiraBrowseURI();
+
+      if (summary != null) {
+         summary.add(commit, stats, issues);
+      }
+      addDegraded(stats.getJiras(), issues);
+
+      startRow();
+      startCell();
+      rows.append("<a href='").text(githubURI).append("commit/").append(commit.getName()).append("'>").append(number).append("</a>");
+      endCell();
+      rows.newLine();
+      startCell();
+      rows.append("<a href='").text(githubURI).append("commit/").append(commit.getName()).append("'>").append(commit.getName(), 0, 7).append("</a> ");
+      endCell();
+      startCell();
+      rows.append(dateFormat.format(commit.getAuthorIdent().getWhen()));
+      endCell();
+      startCell();
+      rows.text(commit.getAuthorIdent().getName());
+      endCell();
+      startCell();
+      message(commit.getShortMessage());
+      endCell();
+
+      startCell();
+      String[] jiras = stats.getJiras();
+      for (int i = 0; i < jiras.length; i++) {
+         // it could happen the issue is returning null for security or something else
+         if (issues != null && issues[i] != null) {
+            JiraIssue issue = issues[i];
+            rows.append("<a href='").text(jiraBrowseURI).text(jiras[i]).append("'>");
+            rows.text(issue.getPriority()).append('/').text(issue.getIssuetype()).append('/').text(issue.getResolution()).append('/').text(issue.getStatus());
+            rows.append("</a>");
+         } else {
+            rows.link(jiras[i], jiraBrowseURI, jiras[i]);
+         }
+
+         if (i < jiras.length - 1) {
+            rows.append(',');
+         }
+      }
+      endCell();
+      rows.newLine();
+
+      startCell();
+      rows.append(stats.getAddition());
+      endCell();
+      startCell();
+      rows.append(stats.getReplacement());
+      endCell();
+      startCell();
+      rows.append(stats.getDeletion());
+      endCell();
+      startCell();
+      rows.append(stats.getTotal());
+      endCell();
+
+      for (int i = 0; i < parser.getInterestingFolder().size(); i++) {
+         startCell();
+         List<CommitStats.ChangedFile> files = stats.getInterestingChanges(i);
+         for (int f = 0; f < files.size(); f++) {
+            CommitStats.ChangedFile file = files.get(f);
+            String path = file.getPath();
+            int name = path.lastIndexOf('/') + 1;
+            if (file.isDeleted()) {
+               // deleted, there's no link
+               rows.text(path, name, path.length());
+            } else {
+               rows.append("<a href='").text(githubURI).append("blob/").append(commit.getName()).append('/').text(path);
+               if (file.hasLines()) {
+                  rows.append("#L").append(file.getRangeFirst(0)).append("-L").append(file.getRangeLast(0));
+               }
+               rows.append("'>").text(path, name, path.length()).append("</a>");
+               // the name links the first range, each other range has its own link
+               for (int r = 1; r < file.getRangeCount(); r++) {
+                  rows.append(" <a href='").text(githubURI).append("blob/").append(commit.getName()).append('/').text(path);
+                  rows.append("#L").append(file.getRangeFirst(r)).append("-L").append(file.getRangeLast(r)).append("'>L").append(file.getRangeFirst(r)).append("</a>");
+               }
+               rows.append("<a href='").text(githubURI).append("/commits/").append(commit.getName()).append('/').text(path).append("'>(+)</a>");
+               if (file.isMoved()) {
+                  rows.append(" (moved from ").text(file.getOldPath()).append(')');
+               }
+            }
+            rows.append(' ');
+         }
+         endCell();
+      }
+      endRow();
+   }
+
+   /**
+    * A commit written by the run resumed, only added to the summary.
+    */
+   void replay(RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException {
+      if (summary != null) {
+         summary.add(commit, stats, issues);
+      }
+      addDegraded(stats.getJiras(), issues);
+   }
+
+   private void addDegraded(String[] jiras, JiraIssue[] issues) {
+      if (resolver != null && issues != null) {
+         for (int i = 0; i < jiras.length; i++) {
+            if (issues[i] == null && resolver.isDegraded(jiras[i])) {
+               degraded.add(jiras[i]);
+            }
+         }
+      }
+   }
+
+   /**
+    * Writes out the rows so far, and returns where the files end.
+    */
+   Position position() throws IOException {
+      out.flush();
+      long chunkLength = 0;
+      if (pageSize > 0 && rows != null) {
+         rows.flush();
+         chunkLength = chunkFile(chunks).length();
+      }
+      return new Position(outputFile.length(), chunks, rowsInChunk, chunkLength, dataBytes);
+   }
+
+   /**
+    * Writes the message escaped, with each JIRA key replaced by its link.
+    */
+   private void message(String message) throws IOException {
+      parser.getJiraScanner().scan(message, matches);
+      int textStart = 0;
+      for (int i = 0; i < matches.size(); i++) {
+         rows.text(message, textStart, matches.start(i));
+         rows.append("<a href='").text(parser.getJiraBrowseURI()).text(message, matches.start(i), matches.end(i)).append("'>");
+         rows.text(message, matches.start(i), matches.end(i)).append("</a>");
+         textStart = matches.end(i);
+      }
+      rows.text(message, textStart, message.length());
+   }
+
+   @Override
+   public void end(Collection<String> totalJiras) throws IOException {
+      out.append("</tbody></table>").newLine();
+
+      if (pageSize > 0) {
+         closeChunk();
+         out.append("<script type=\"text/javascript\">").newLine();
+         out.append("   gitReportLoad(\"").jsonString(true).append(dataDirectory.getName()).append("/rows-").jsonString(false).append("\", ").append(chunks).append(");").newLine();
+         out.append("</script>").newLine();
+      }
+
+      if (summary != null) {
+         summary.finish();
+         summaryTable("Authors", "Author", summary.getAuthors(), true);
+         summaryTable("JIRAs", "Type/Status", summary.getJiraStatus(), true);
+         summaryTable("Interesting folders", "Folder", summary.getFolders(), false);
+      }
+
+      String sampleJQL = parser.getSampleJQL();
+      if (sampleJQL != null && !totalJiras.isEmpty()) {
+         out.append("<br><h2>").newLine();
+         out.append("<a href='").text(sampleJQL).append('(');
+
+         Iterator<String> jiraIterator = totalJiras.iterator();
+         while (jiraIterator.hasNext()) {
+            out.text(jiraIterator.next());
+            if (jiraIterator.hasNext()) {
+               out.append("%2C");
+            }
+         }
+
+         out.append(")'>").append(totalJiras.size()).append(" JIRAS on this Report</a></h2>").newLine();
+      }
+
+      if (!degraded.isEmpty()) {
+         out.append("<br><h4>").append(degraded.size()).append(" JIRAs without details, the tracker was not available</h4>").newLine();
+         Iterator<String> degradedIterator = degraded.iterator();
+         while (degradedIterator.hasNext()) {
+            String key = degradedIterator.next();
+            out.link(key, parser.getJiraBrowseURI(), key);
+            if (degradedIterator.hasNext()) {
+               out.append(", ");
+            }
+         }
+         out.newLine();
+      }
+
+      out.append("<br>Generated with <a href='https://github.com/clebertsuconic/git-release-report'> git-release-report</a>").newLine();
+
+      out.append("</body></html>").newLine();
+   }
+
+   private void summaryTable(String title, String name, ReportSummary.Table table, boolean sorted) throws IOException {
+      out.append("<br><h4>").text(title).append("</h4>").newLine();
+      out.append("<table class=\"display\"><thead><tr><th>").text(name).append("</th>");
+      String[] columns = table.getColumns();
+      for (String column : columns) {
+         out.append("<th>").text(column).append("</th>");
+      }
+      out.append("</tr></thead>").newLine();
+      out.append("<tbody>").newLine();
+      int[] rows = sorted ? table.sortedRows() : null;
+      for (int i = 0; i < table.size(); i++) {
+         int row = sorted ? rows[i] : i;
+         out.append("<tr><td>").text(table.getName(row)).append("</td>");
+         for (int column = 0; column < columns.length; column++) {
+            out.append("<td>").append(table.get(row, column)).append("</td>");
+         }
+         out.append("</tr>").newLine();
+      }
+      out.append("</tbody></table>").newLine();
+   }
+
+   /**
+    * Number of chars written so far on the page.
+    */
+   long getWritten() {
+      return out.getWritten();
+   }
+
+   /**
+    * Number of bytes on the data files, when paged.
+    */
+   long getDataBytes() {
+      return dataBytes;
+   }
+
+   int getChunks() {
+      return chunks;
+   }
+
+   /**
+    * The keys shown with no details because the tracker was not available, so far.
+    */
+   TreeSet<String> getDegraded() {
+      return degraded;
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (summary != null) {
+         summary.close();
+      }
+      try {
+         if (pageSize > 0 && rows != null) {
+            rows.close();
+         }
+      } finally {
+         out.close();
+      }
+   }
+}
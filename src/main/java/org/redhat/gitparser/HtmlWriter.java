@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered writer for markup, appending fragments and escaped text straight into one reused buffer.
+ *
+ * Nothing is allocated per call: text is copied or escaped char by char, numbers are written digit by digit.
+ */
+
+class HtmlWriter implements AutoCloseable {
+
+   private final Writer writer;
+   private final char[] buffer;
+   private int position;
+   private long written;
+   private boolean closed;
+   // everything appended is escaped as the content of a JSON string
+   private boolean jsonString;
+
+   HtmlWriter(Writer writer, int bufferSize) {
+      this.writer = writer;
+      this.buffer = new char[bufferSize];
+   }
+
+   /**
+    * Writes the file in UTF-8, through a FileChannel so there's no extra buffering on the way.
+    */
+   static HtmlWriter open(File file, int bufferSize) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      return new HtmlWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), bufferSize), bufferSize);
+   }
+
+   /**
+    * Opens the file to keep writing after its first bytes, dropping anything past them, as when resuming a report.
+    */
+   static HtmlWriter open(File file, int bufferSize, long keep) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      try {
+         channel.truncate(keep);
+         channel.position(keep);
+      } catch (IOException e) {
+         channel.close();
+         throw e;
+      }
+      return new HtmlWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), bufferSize), bufferSize);
+   }
+
+   private void ensure(int size) throws IOException {
+      if (position + size > buffer.length) {
+         flushBuffer();
+      }
+   }
+
+   private void flushBuffer() throws IOException {
+      writer.write(buffer, 0, position);
+      written += position;
+      position = 0;
+   }
+
+   /**
+    * Appends markup as is.
+    */
+   HtmlWriter append(String markup) throws IOException {
+      return append(markup, 0, markup.length());
+   }
+
+   HtmlWriter append(String markup, int start, int end) throws IOException {
+      if (jsonString) {
+         for (int i = start; i < end; i++) {
+            append(markup.charAt(i));
+         }
+         return this;
+      }
+      while (start < end) {
+         ensure(1);
+         int length = Math.min(end - start, buffer.length - position);
+         markup.getChars(start, start + length, buffer, position);
+         position += length;
+         start += length;
+      }
+      return this;
+   }
+
+   HtmlWriter append(char c) throws IOException {
+      if (jsonString) {
+         switch (c) {
+            case '"':
+            case '\\':
+               ensure(2);
+               buffer[position++] = '\\';
+               buffer[position++] = c;
+               return this;
+            case '\n':
+               ensure(2);
+               buffer[position++] = '\\';
+               buffer[position++] = 'n';
+               return this;
+            default:
+               if (c < ' ' || c == '\u2028' || c == '\u2029') {
+                  // the line separators are valid on JSON but not on a javascript string
+                  ensure(6);
+                  buffer[position++] = '\\';
+                  buffer[position++] = 'u';
+                  for (int shift = 12; shift >= 0; shift -= 4) {
+                     buffer[position++] = Character.forDigit((c >> shift) & 0xF, 16);
+                  }
+                  return this;
+               }
+         }
+      }
+      ensure(1);
+      buffer[position++] = c;
+      return this;
+   }
+
+   /**
+    * While set, markup and text are escaped to be the content of a JSON string, on top of their own escaping.
+    * The quotes around the string are not written.
+    */
+   HtmlWriter jsonString(boolean jsonString) {
+      this.jsonString = jsonString;
+      return this;
+   }
+
+   HtmlWriter append(long number) throws IOException {
+      if (number < 0) {
+         append('-');
+         if (number == Long.MIN_VALUE) {
+            return append("9223372036854775808");
+         }
+         number = -number;
+      }
+      int digits = 1;
+      for (long n = number / 10; n > 0; n /= 10) {
+         digits++;
+      }
+      ensure(digits);
+      for (int i = position + digits - 1; i >= position; i--) {
+         buffer[i] = (char) ('0' + number % 10);
+         number /= 10;
+      }
+      position += digits;
+      return this;
+   }
+
+   /**
+    * Appends text, escaping what would be taken as markup.
+    */
+   HtmlWriter text(String text) throws IOException {
+      return text(text, 0, text.length());
+   }
+
+   HtmlWriter text(String text, int start, int end) throws IOException {
+      for (int i = start; i < end; i++) {
+         char c = text.charAt(i);
+         switch (c) {
+            case '<':
+               append("&lt;");
+               break;
+            case '>':
+               append("&gt;");
+               break;
+            case '&':
+               append("&amp;");
+               break;
+            case '\'':
+               append("&#39;");
+               break;
+            case '"':
+               append("&quot;");
+               break;
+            default:
+               append(c);
+         }
+      }
+      return this;
+   }
+
+   /**
+    * Appends an &lt;a href='uri'&gt;text&lt;/a&gt;, the uri given in two parts to save the concatenation.
+    */
+   HtmlWriter link(String text, String uri, String uriSuffix) throws IOException {
+      append("<a href='").text(uri).text(uriSuffix).append("'>").text(text).append("</a>");
+      return this;
+   }
+
+   HtmlWriter newLine() throws IOException {
+      return append('\n');
+   }
+
+   /**
+    * Number of chars handed to the underlying writer so far.
+    */
+   long getWritten() {
+      return written + position;
+   }
+
+   void flush() throws IOException {
+      flushBuffer();
+      writer.flush();
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+      try {
+         flushBuffer();
+      } finally {
+         writer.close();
+      }
+   }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A JIRA cache persisted on disk, keeping only the fields of {@link JiraIssue}.
+ *
+ * Resolved or closed issues rarely change, so they are kept for {@link #CLOSED_TTL},
+ * while everything else expires after {@link #OPEN_TTL}.
+ *
+ * The file is a tab separated list of key, fetch time, issuetype, status, resolution and priority.
+ */
+
+public class JiraCache {
+
+   public static final long OPEN_TTL = TimeUnit.HOURS.toMillis(1);
+   public static final long CLOSED_TTL = TimeUnit.DAYS.toMillis(365);
+
+   static final class Entry {
+
+      final JiraIssue issue;
+      final long fetched;
+
+      Entry(JiraIssue issue, long fetched) {
+         this.issue = issue;
+         this.fetched = fetched;
+      }
+
+      boolean isClosed() {
+         String status = issue.getStatus().trim();
+         return status.equalsIgnoreCase("Closed") || status.equalsIgnoreCase("Resolved") || status.equalsIgnoreCase("Done");
+      }
+
+      boolean isFresh(long now) {
+         return now - fetched < (isClosed() ? CLOSED_TTL : OPEN_TTL);
+      }
+   }
+
+   private final File file;
+   private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+
+   /**
+    * @param name identifies the tracker, as the same key could exist on different trackers
+    */
+   public JiraCache(File directory, String name) throws IOException {
+      directory.mkdirs();
+      this.file = new File(directory, "jira-" + name.replaceAll("[^A-Za-z0-9.-]", "_") + ".cache");
+      load();
+   }
+
+   /**
+    * Kept in memory only, {@link #save()} does nothing.
+    */
+   public JiraCache() {
+      this.file = null;
+   }
+
+   private void load() throws IOException {
+      if (!file.exists()) {
+         return;
+      }
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+         String line;
+         while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6) {
+               // a line cut short by a crash, the issue will just be fetched again
+               continue;
+            }
+            try {
+               entries.put(fields[0], new Entry(new JiraIssue(fields[0], fields[2], fields[3], fields[4], fields[5]), Long.parseLong(fields[1])));
+            } catch (NumberFormatException ignored) {
+               // same as a broken line
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the issue if it is still fresh, counting a hit or a miss
+    */
+   public JiraIssue get(String key) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+         hits.incrementAndGet();
+         return entry.issue;
+      }
+      misses.incrementAndGet();
+      return null;
+   }
+
+   /**
+    * An expired entry, to be revalidated or used when the tracker can't be reached.
+    */
+   Entry getStale(String key) {
+      return entries.get(key);
+   }
+
+   public void put(JiraIssue issue) {
+      entries.put(issue.getKey(), new Entry(issue, System.currentTimeMillis()));
+   }
+
+   public long getHits() {
+      return hits.get();
+   }
+
+   public long getMisses() {
+      return misses.get();
+   }
+
+   public synchronized void save() throws IOException {
+      if (file == null) {
+         return;
+      }
+      File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+      try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+         for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            JiraIssue issue = entry.issue;
+            writer.write(issue.getKey() + "\t" + entry.fetched + "\t" + clean(issue.getIssuetype()) + "\t" + clean(issue.getStatus()) + "\t" +
+                            clean(issue.getResolution()) + "\t" + clean(issue.getPriority()));
+            writer.newLine();
+         }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   private static String clean(String field) {
+      return field.replace('\t', ' ').replace('\n', ' ');
+   }
+}
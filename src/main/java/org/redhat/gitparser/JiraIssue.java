@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.JsonObject;
+
+/**
+ * The fields of a JIRA the report shows on the Jira Status column.
+ */
+
+public class JiraIssue {
+
+   // the fields asked to the REST API, nothing else is used from the issue
+   static final String FIELDS = "issuetype,status,resolution,priority";
+
+   final String key;
+   final String issuetype;
+   final String status;
+   final String resolution;
+   final String priority;
+
+   public JiraIssue(String key, String issuetype, String status, String resolution, String priority) {
+      this.key = key;
+      this.issuetype = issuetype;
+      this.status = status;
+      this.resolution = resolution;
+      this.priority = priority;
+   }
+
+   public static JiraIssue fromJson(String key, JsonObject object) {
+      return new JiraIssue(key, getField(object, "issuetype"), getField(object, "status"), getField(object, "resolution"), getField(object, "priority"));
+   }
+
+   private static String getField(JsonObject object, String name) {
+
+      try {
+         return object.getJsonObject("fields").getJsonObject(name).getString("name");
+      } catch (Throwable e) {
+         return " ";
+      }
+   }
+
+   public String getKey() {
+      return key;
+   }
+
+   public String getIssuetype() {
+      return issuetype;
+   }
+
+   public String getStatus() {
+      return status;
+   }
+
+   public String getResolution() {
+      return resolution;
+   }
+
+   public String getPriority() {
+      return priority;
+   }
+
+   /**
+    * The text used on the report, priority/issuetype/resolution/status.
+    */
+   @Override
+   public String toString() {
+      return priority + "/" + issuetype + "/" + resolution + "/" + status;
+   }
+}
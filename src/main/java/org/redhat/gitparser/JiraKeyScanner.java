@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds JIRA keys (a project prefix followed by digits, e.g. ARTEMIS-123) on a message, in a single pass.
+ *
+ * Several project prefixes can be searched at once, e.g. ARTEMIS-, AMQ- and ENTMQBR-.
+ * A prefix only starts a key when it is not preceded by a letter or digit, so MQ- does not match inside AMQ-1.
+ *
+ * The scanner is immutable and can be shared between threads. The positions are written on a {@link Matches},
+ * which can be reused from one message to the next.
+ */
+
+public class JiraKeyScanner {
+
+   /**
+    * The keys found on one message, as start/end offsets on the message.
+    */
+   public static final class Matches {
+
+      private String message;
+      private int count;
+      private int[] start = new int[4];
+      private int[] end = new int[4];
+      // the next position of each prefix, only used while scanning
+      private int[] next = new int[0];
+
+      int[] reset(String message, int prefixes) {
+         this.message = message;
+         this.count = 0;
+         if (next.length < prefixes) {
+            next = new int[prefixes];
+         }
+         return next;
+      }
+
+      void add(int keyStart, int keyEnd) {
+         if (count == start.length) {
+            start = Arrays.copyOf(start, count * 2);
+            end = Arrays.copyOf(end, count * 2);
+         }
+         start[count] = keyStart;
+         end[count] = keyEnd;
+         count++;
+      }
+
+      public int size() {
+         return count;
+      }
+
+      public int start(int i) {
+         return start[i];
+      }
+
+      public int end(int i) {
+         return end[i];
+      }
+
+      public String key(int i) {
+         return message.substring(start[i], end[i]);
+      }
+
+      /**
+       * The distinct keys, in the order they first appear.
+       */
+      public String[] keys() {
+         String[] keys = new String[count];
+         int distinct = 0;
+         for (int i = 0; i < count; i++) {
+            boolean repeated = false;
+            for (int j = 0; j < i && !repeated; j++) {
+               repeated = end[j] - start[j] == end[i] - start[i] && message.regionMatches(start[j], message, start[i], end[i] - start[i]);
+            }
+            if (!repeated) {
+               keys[distinct++] = key(i);
+            }
+         }
+         return distinct == count ? keys : Arrays.copyOf(keys, distinct);
+      }
+   }
+
+   private final String[] prefixes;
+
+   public JiraKeyScanner(String... prefixes) {
+      for (String prefix : prefixes) {
+         if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("empty JIRA prefix");
+         }
+      }
+      this.prefixes = prefixes.clone();
+   }
+
+   public JiraKeyScanner(List<String> prefixes) {
+      this(prefixes.toArray(new String[prefixes.size()]));
+   }
+
+   public String[] getPrefixes() {
+      return prefixes.clone();
+   }
+
+   /**
+    * Resets the matches with every key found on the message.
+    *
+    * The next occurrence of each prefix is tracked with String.indexOf, so the message is
+    * walked once per prefix at most, and never char by char on this code.
+    */
+   public Matches scan(String message, Matches matches) {
+      int[] next = matches.reset(message, prefixes.length);
+      int length = message.length();
+      for (int p = 0; p < prefixes.length; p++) {
+         next[p] = message.indexOf(prefixes[p]);
+      }
+
+      while (true) {
+         int candidate = -1;
+         for (int p = 0; p < prefixes.length; p++) {
+            if (next[p] >= 0 && (candidate < 0 || next[p] < candidate)) {
+               candidate = next[p];
+            }
+         }
+         if (candidate < 0) {
+            return matches;
+         }
+
+         int keyEnd = -1;
+         if (candidate == 0 || !Character.isLetterOrDigit(message.charAt(candidate - 1))) {
+            for (int p = 0; p < prefixes.length; p++) {
+               if (next[p] == candidate) {
+                  int digits = candidate + prefixes[p].length();
+                  while (digits < length && message.charAt(digits) >= '0' && message.charAt(digits) <= '9') {
+                     digits++;
+                  }
+                  if (digits > candidate + prefixes[p].length() && digits > keyEnd) {
+                     keyEnd = digits;
+                  }
+               }
+            }
+         }
+
+         int from = candidate + 1;
+         if (keyEnd > 0) {
+            matches.add(candidate, keyEnd);
+            from = keyEnd;
+         }
+         for (int p = 0; p < prefixes.length; p++) {
+            if (next[p] >= 0 && next[p] < from) {
+               next[p] = message.indexOf(prefixes[p], from);
+            }
+         }
+      }
+   }
+
+   public Matches scan(String message) {
+      return scan(message, new Matches());
+   }
+}
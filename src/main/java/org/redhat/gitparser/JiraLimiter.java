@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+/**
+ * The rate limit and circuit breaker of one tracker.
+ *
+ * Shared by every resolver calling the same tracker, e.g. the concurrent reports of a {@link ReportServer} or the
+ * profiles of a {@link ReportRunner}, so together they keep to the rate and stop together when it keeps failing.
+ */
+
+final class JiraLimiter {
+
+   // failures in a row opening the breaker, and how long it stays open, unless set
+   static final int BREAKER_FAILURES = 5;
+   static final long BREAKER_OPEN_MILLIS = 30000;
+
+   final TokenBucket bucket;
+   final CircuitBreaker breaker;
+
+   /**
+    * @param perSecond requests per second, 0 for no limit
+    * @param burst     requests that can go at once after a quiet period
+    */
+   JiraLimiter(double perSecond, int burst) {
+      this(new TokenBucket(perSecond, burst), new CircuitBreaker(BREAKER_FAILURES, BREAKER_OPEN_MILLIS));
+   }
+
+   JiraLimiter(TokenBucket bucket, CircuitBreaker breaker) {
+      this.bucket = bucket;
+      this.breaker = breaker;
+   }
+}
@@ -0,0 +1,528 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Fetches JIRAs from the REST API asynchronously.
+ *
+ * Every key is requested at most once: concurrent or later lookups of the same key
+ * wait on the first request. The number of requests in flight is bounded by the concurrency.
+ *
+ * Requests have connect and read timeouts, and are spaced out by a {@link TokenBucket} that slows down when the
+ * tracker throttles. Throttled, failed or timed out requests are retried with a backoff, or after the Retry-After
+ * of the tracker. A {@link CircuitBreaker} stops calling a tracker that keeps failing: the lookups left are then
+ * degraded, they complete at once with no issue, and {@link #getDegraded()} tells which keys they were.
+ */
+
+public class JiraResolver implements AutoCloseable {
+
+   private static final class Lookup {
+
+      final CountDownLatch done = new CountDownLatch(1);
+      volatile JiraIssue issue;
+   }
+
+   /**
+    * The request was not sent, the circuit breaker is open.
+    */
+   private static final class CircuitOpenException extends IOException {
+
+      private static final long serialVersionUID = 1L;
+
+      CircuitOpenException() {
+         super("circuit breaker open");
+      }
+   }
+
+   private final String restLocation;
+   private final OkHttpClient baseClient;
+   private final boolean ownClient;
+   private final ConcurrentHashMap<String, Lookup> lookups = new ConcurrentHashMap<>();
+   private final Set<String> degraded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+   private final ScheduledThreadPoolExecutor scheduler;
+   private volatile OkHttpClient client;
+   private volatile TokenBucket bucket = new TokenBucket(0, 1);
+   private volatile CircuitBreaker breaker = new CircuitBreaker(JiraLimiter.BREAKER_FAILURES, JiraLimiter.BREAKER_OPEN_MILLIS);
+   private int retries = 3;
+   private long backoffMillis = 500;
+   // a Retry-After longer than this is not waited, the circuit breaker opens
+   private long maxDelayMillis = 60000;
+   // lookups kept once done, to answer the same key again, 0 for all of them
+   private int maxLookups;
+   private JiraCache cache;
+   private ReportMetrics metrics;
+   private boolean quiet;
+
+   /**
+    * Checks the circuit breaker and then waits for the rate limit, on the dispatcher thread about to send the request.
+    * A request refused by the breaker takes no token, and the trial request of a half open breaker is let through
+    * before it waits. The wait holds a dispatcher slot of the tracker, which costs nothing while the rate is what
+    * limits the requests: the slots of the tracker are the most it can have at once, the other trackers of a shared
+    * client still have theirs.
+    */
+   private final Interceptor gate = new Interceptor() {
+      @Override
+      public Response intercept(Chain chain) throws IOException {
+         if (!breaker.allow()) {
+            throw new CircuitOpenException();
+         }
+         long wait = bucket.reserve();
+         if (wait > 0) {
+            try {
+               TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new InterruptedIOException();
+            }
+         }
+         return chain.proceed(chain.request());
+      }
+   };
+
+   /**
+    * @param restLocation the issue endpoint, e.g. https://issues.apache.org/jira/rest/api/2/issue/
+    */
+   public JiraResolver(String restLocation, int concurrency) {
+      this(restLocation, newClient(concurrency), true);
+   }
+
+   /**
+    * The requests go through the dispatcher and connections of the client, with the timeouts of this resolver.
+    */
+   public JiraResolver(String restLocation, OkHttpClient client) {
+      this(restLocation, client, false);
+   }
+
+   private JiraResolver(String restLocation, OkHttpClient client, boolean ownClient) {
+      this.restLocation = restLocation;
+      this.baseClient = client;
+      this.ownClient = ownClient;
+      this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jira-retries");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      setTimeouts(10000, 30000);
+   }
+
+   static OkHttpClient newClient(int concurrency) {
+      return newClient(concurrency, concurrency);
+   }
+
+   /**
+    * @param concurrency the most requests at the same time to one tracker
+    * @param maxRequests the most requests at the same time to all trackers
+    */
+   static OkHttpClient newClient(int concurrency, int maxRequests) {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(maxRequests);
+      dispatcher.setMaxRequestsPerHost(concurrency);
+      return new OkHttpClient.Builder().dispatcher(dispatcher).build();
+   }
+
+   /**
+    * 10 seconds to connect and 30 seconds between two reads of a response, unless set.
+    */
+   public JiraResolver setTimeouts(long connectMillis, long readMillis) {
+      client = baseClient.newBuilder().addInterceptor(gate).
+         connectTimeout(connectMillis, TimeUnit.MILLISECONDS).
+         readTimeout(readMillis, TimeUnit.MILLISECONDS).
+         writeTimeout(readMillis, TimeUnit.MILLISECONDS).build();
+      return this;
+   }
+
+   /**
+    * Spaces out the requests, with no limit unless set. The rate is halved each time the tracker throttles,
+    * and grows back on the following successes.
+    *
+    * @param perSecond requests per second, 0 for no limit
+    * @param burst     requests that can go at once after a quiet period
+    */
+   public JiraResolver setRateLimit(double perSecond, int burst) {
+      bucket = new TokenBucket(perSecond, burst);
+      return this;
+   }
+
+   /**
+    * Shares the rate limit and circuit breaker of the tracker with other resolvers, instead of ones of its own.
+    */
+   JiraResolver setLimiter(JiraLimiter limiter) {
+      bucket = limiter.bucket;
+      breaker = limiter.breaker;
+      return this;
+   }
+
+   /**
+    * Number of retries of a request throttled, failed with a 5xx or with no response at all, 3 unless set.
+    * Without a Retry-After the retries wait the backoff, doubled on each one.
+    */
+   public JiraResolver setRetries(int retries, long backoffMillis) {
+      this.retries = retries;
+      this.backoffMillis = backoffMillis;
+      return this;
+   }
+
+   /**
+    * A Retry-After longer than this is not waited, 60 seconds unless set: the circuit breaker opens instead.
+    */
+   public JiraResolver setMaxDelay(long maxDelayMillis) {
+      this.maxDelayMillis = maxDelayMillis;
+      return this;
+   }
+
+   /**
+    * Requests are refused for the open time after this many failures in a row, 5 failures and 30 seconds unless set.
+    *
+    * @param failures failures in a row opening the breaker, 0 to never open it
+    */
+   public JiraResolver setCircuitBreaker(int failures, long openMillis) {
+      breaker = new CircuitBreaker(failures, openMillis);
+      return this;
+   }
+
+   /**
+    * Keeps at most about this many lookups, dropping the ones done when there are more, 0 (the default) to keep all.
+    * A key dropped and asked for again is looked up again, from the cache if there's one.
+    */
+   public JiraResolver setMaxLookups(int maxLookups) {
+      this.maxLookups = maxLookups;
+      return this;
+   }
+
+   public JiraCache getCache() {
+      return cache;
+   }
+
+   /**
+    * Issues found fresh on the cache are not requested, and every issue retrieved is stored on it.
+    */
+   public JiraResolver setCache(JiraCache cache) {
+      this.cache = cache;
+      return this;
+   }
+
+   public ReportMetrics getMetrics() {
+      return metrics;
+   }
+
+   /**
+    * Counts the REST calls and their latency.
+    */
+   public JiraResolver setMetrics(ReportMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+   }
+
+   public boolean isQuiet() {
+      return quiet;
+   }
+
+   /**
+    * When set, nothing is printed for each JIRA fetched.
+    */
+   public JiraResolver setQuiet(boolean quiet) {
+      this.quiet = quiet;
+      return this;
+   }
+
+   /**
+    * The keys given up on because the tracker was not available, either throttling, failing or behind the open
+    * circuit breaker, and with nothing on the cache. Keys the tracker answered for, even with a 404, are not here.
+    */
+   public SortedSet<String> getDegraded() {
+      return new TreeSet<>(degraded);
+   }
+
+   public boolean isDegraded(String key) {
+      return degraded.contains(key);
+   }
+
+   /**
+    * Starts fetching all the keys, without waiting for any of them.
+    */
+   public void prefetch(Collection<String> keys) {
+      for (String key : keys) {
+         lookup(key);
+      }
+   }
+
+   /**
+    * Waits for the JIRA, fetching it if nobody asked for it before.
+    *
+    * @return null if the JIRA could not be retrieved (security, network, or anything else)
+    */
+   public JiraIssue get(String key) throws InterruptedException {
+      Lookup lookup = lookup(key);
+      lookup.done.await();
+      return lookup.issue;
+   }
+
+   private Lookup lookup(String key) {
+      Lookup lookup = lookups.get(key);
+      if (lookup == null) {
+         Lookup newLookup = new Lookup();
+         lookup = lookups.putIfAbsent(key, newLookup);
+         if (lookup == null) {
+            lookup = newLookup;
+            if (maxLookups > 0 && lookups.size() > maxLookups) {
+               evict();
+            }
+            JiraIssue cached = cache != null ? cache.get(key) : null;
+            if (cached != null) {
+               newLookup.issue = cached;
+               newLookup.done.countDown();
+            } else {
+               fetch(key, newLookup);
+            }
+         }
+      }
+      return lookup;
+   }
+
+   /**
+    * Drops the lookups done, down to half the maximum, the ones still running are kept so their keys are not fetched twice.
+    */
+   private void evict() {
+      Iterator<Lookup> iterator = lookups.values().iterator();
+      while (iterator.hasNext() && lookups.size() > maxLookups / 2) {
+         if (iterator.next().done.getCount() == 0) {
+            iterator.remove();
+         }
+      }
+   }
+
+   private void fetch(String key, Lookup lookup) {
+      if (!quiet) {
+         System.out.println("Inspecting " + key);
+      }
+      // an expired entry is still used if the tracker says it is unchanged, or if the tracker is not available
+      JiraCache.Entry stale = cache != null ? cache.getStale(key) : null;
+      send(key, lookup, stale, 0);
+   }
+
+   private void send(final String key, final Lookup lookup, final JiraCache.Entry stale, final int attempt) {
+      Request.Builder request = new Request.Builder().url(restLocation + key + "?fields=" + JiraIssue.FIELDS);
+      if (stale != null) {
+         request.header("If-Modified-Since", httpDate(stale.fetched));
+      }
+
+      client.newCall(request.build()).enqueue(new Callback() {
+         @Override
+         public void onFailure(Call call, IOException e) {
+            if (e instanceof CircuitOpenException) {
+               degrade(key, lookup, stale);
+               return;
+            }
+            if (metrics != null) {
+               metrics.restFailure();
+            }
+            breaker.failure();
+            retry(key, lookup, stale, attempt, -1, e.toString());
+         }
+
+         @Override
+         public void onResponse(Call call, Response response) {
+            if (metrics != null) {
+               metrics.restCall(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+            }
+            try (ResponseBody body = response.body()) {
+               int code = response.code();
+               if (code == 429 || code >= 500) {
+                  long retryAfter = retryAfter(response.header("Retry-After"));
+                  if (retryAfter > maxDelayMillis) {
+                     // as good as not available, the other lookups are not held that long either
+                     breaker.trip();
+                  } else {
+                     if (code == 429 || code == 503) {
+                        bucket.throttled(TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryAfter)));
+                     }
+                     breaker.failure();
+                  }
+                  retry(key, lookup, stale, attempt, retryAfter, "HTTP " + code);
+                  return;
+               }
+
+               JiraIssue issue = null;
+               if (response.isSuccessful()) {
+                  try (JsonReader reader = Json.createReader(body.byteStream())) {
+                     JsonObject object = reader.readObject();
+                     issue = JiraIssue.fromJson(key, object);
+                  }
+                  if (cache != null) {
+                     cache.put(issue);
+                  }
+               } else if (stale != null) {
+                  issue = stale.issue;
+                  if (code == 304) {
+                     cache.put(stale.issue);
+                  }
+               } else {
+                  System.err.println("Could not retrieve " + key + ": HTTP " + code);
+               }
+               breaker.success();
+               bucket.succeeded();
+               complete(lookup, issue);
+            } catch (RuntimeException e) {
+               if (e.getCause() instanceof IOException) {
+                  // the body timed out or was cut, as wrapped by the JSON reader
+                  if (metrics != null) {
+                     metrics.restFailure();
+                  }
+                  breaker.failure();
+                  retry(key, lookup, stale, attempt, -1, e.getCause().toString());
+               } else {
+                  System.err.println("Could not parse " + key + ": " + e);
+                  complete(lookup, stale != null ? stale.issue : null);
+               }
+            }
+         }
+      });
+   }
+
+   /**
+    * Sends the request again after the Retry-After, or the backoff if there's none, or degrades the lookup.
+    *
+    * @param retryAfterMillis -1 if the tracker did not say
+    */
+   private void retry(final String key, final Lookup lookup, final JiraCache.Entry stale, final int attempt, long retryAfterMillis, String reason) {
+      if (attempt >= retries || retryAfterMillis > maxDelayMillis) {
+         System.err.println("Could not retrieve " + key + " after " + (attempt + 1) + (attempt == 0 ? " attempt: " : " attempts: ") + reason);
+         degrade(key, lookup, stale);
+         return;
+      }
+      long delay = retryAfterMillis >= 0 ? retryAfterMillis : backoff(attempt);
+      if (metrics != null) {
+         metrics.restRetry();
+      }
+      if (!quiet) {
+         System.out.println("Retrying " + key + " in " + delay + " ms: " + reason);
+      }
+      try {
+         scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+               send(key, lookup, stale, attempt + 1);
+            }
+         }, delay, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+         // closed
+         degrade(key, lookup, stale);
+      }
+   }
+
+   /**
+    * The backoff doubled on each attempt, with some jitter so the lookups failing together are not retried together.
+    */
+   private long backoff(int attempt) {
+      long delay = Math.min(maxDelayMillis, backoffMillis << Math.min(attempt, 20));
+      return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+   }
+
+   /**
+    * The lookup completes with the expired entry if there's one, or else with no issue, recording the key.
+    */
+   private void degrade(String key, Lookup lookup, JiraCache.Entry stale) {
+      if (stale != null) {
+         complete(lookup, stale.issue);
+         return;
+      }
+      if (degraded.add(key) && metrics != null) {
+         metrics.jiraDegraded();
+      }
+      complete(lookup, null);
+   }
+
+   private static void complete(Lookup lookup, JiraIssue issue) {
+      lookup.issue = issue;
+      lookup.done.countDown();
+   }
+
+   /**
+    * Milliseconds to wait as given by a Retry-After, either seconds or an HTTP date, -1 if none.
+    */
+   static long retryAfter(String header) {
+      if (header == null) {
+         return -1;
+      }
+      header = header.trim();
+      try {
+         return Math.max(0, Long.parseLong(header) * 1000);
+      } catch (NumberFormatException e) {
+         try {
+            return Math.max(0, httpDateFormat().parse(header).getTime() - System.currentTimeMillis());
+         } catch (ParseException e2) {
+            return -1;
+         }
+      }
+   }
+
+   private static SimpleDateFormat httpDateFormat() {
+      SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return format;
+   }
+
+   private static String httpDate(long time) {
+      return httpDateFormat().format(new Date(time));
+   }
+
+   @Override
+   public void close() {
+      scheduler.shutdownNow();
+      if (ownClient) {
+         client.dispatcher().executorService().shutdown();
+         client.connectionPool().evictAll();
+      }
+   }
+}
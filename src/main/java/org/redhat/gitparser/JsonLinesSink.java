@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Writes one JSON object per commit and per line, e.g.
+ *
+ * <pre>
+ * {"number":1,"sha":"...","date":"2017-11-20T14:02:11Z","author":"...","message":"ARTEMIS-1 ...",
+ *  "jiras":[{"key":"ARTEMIS-1","status":"Closed","resolution":"Fixed","priority":"Major","issuetype":"Bug"}],
+ *  "addition":10,"replacement":2,"deletion":1,"total":11,
+ *  "folders":{"test":[{"path":"tests/MyTest.java","deleted":false,"min":10,"max":20}]}}
+ * </pre>
+ *
+ * The JIRA fields are only there when the JIRA was resolved. A renamed file has a "from" with its old path, and no min or max
+ * when it was moved as is. Each line is written as the commit is reported.
+ *
+ * With {@link GitParser#setSummary(boolean)}, the rows of the {@link ReportSummary} follow the commits,
+ * e.g. {"summary":"author","name":"...","commits":10,"add":100,"rep":20,"del":5}.
+ */
+
+public class JsonLinesSink implements ReportSink {
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final File file;
+   private final DateFormat dateFormat;
+   private GitParser parser;
+   private HtmlWriter out;
+   private ReportSummary summary;
+
+   public JsonLinesSink(File file) {
+      this.file = file;
+      dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+      dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   @Override
+   public void begin(GitParser parser, String from, RevCommit fromCommit, String to, RevCommit toCommit) throws IOException {
+      this.parser = parser;
+      this.summary = parser.isSummary() ? new ReportSummary(parser) : null;
+      out = HtmlWriter.open(file, BUFFER_SIZE);
+   }
+
+   private HtmlWriter string(String value) throws IOException {
+      if (value == null) {
+         return out.append("null");
+      }
+      return out.append('"').jsonString(true).append(value).jsonString(false).append('"');
+   }
+
+   private HtmlWriter name(String name) throws IOException {
+      return string(name).append(':');
+   }
+
+   @Override
+   public void commit(int number, RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException {
+      if (summary != null) {
+         summary.add(commit, stats, issues);
+      }
+      out.append('{');
+      name("number").append(number).append(',');
+      name("sha").append('"').append(commit.getName()).append("\",");
+      name("date").append('"').append(dateFormat.format(commit.getAuthorIdent().getWhen())).append("\",");
+      name("author");
+      string(commit.getAuthorIdent().getName()).append(',');
+      name("message");
+      string(commit.getShortMessage()).append(',');
+
+      name("jiras").append('[');
+      String[] jiras = stats.getJiras();
+      for (int i = 0; i < jiras.length; i++) {
+         if (i > 0) {
+            out.append(',');
+         }
+         out.append('{');
+         name("key");
+         string(jiras[i]);
+         JiraIssue issue = issues != null ? issues[i] : null;
+         if (issue != null) {
+            out.append(',');
+            name("status");
+            string(issue.getStatus()).append(',');
+            name("resolution");
+            string(issue.getResolution()).append(',');
+            name("priority");
+            string(issue.getPriority()).append(',');
+            name("issuetype");
+            string(issue.getIssuetype());
+         }
+         out.append('}');
+      }
+      out.append("],");
+
+      name("addition").append(stats.getAddition()).append(',');
+      name("replacement").append(stats.getReplacement()).append(',');
+      name("deletion").append(stats.getDeletion()).append(',');
+      name("total").append(stats.getTotal()).append(',');
+
+      name("folders").append('{');
+      List<String> folders = parser.getInterestingFolder();
+      for (int i = 0; i < folders.size(); i++) {
+         if (i > 0) {
+            out.append(',');
+         }
+         name(folders.get(i)).append('[');
+         List<CommitStats.ChangedFile> files = stats.getInterestingChanges(i);
+         for (int f = 0; f < files.size(); f++) {
+            CommitStats.ChangedFile changed = files.get(f);
+            if (f > 0) {
+               out.append(',');
+            }
+            out.append('{');
+            name("path");
+            string(changed.getPath()).append(',');
+            if (changed.isMoved()) {
+               name("from");
+               string(changed.getOldPath()).append(',');
+            }
+            name("deleted").append(changed.isDeleted() ? "true" : "false");
+            if (!changed.isDeleted() && changed.hasLines()) {
+               out.append(',');
+               name("min").append(changed.getMin()).append(',');
+               name("max").append(changed.getMax()).append(',');
+               name("ranges").append('[');
+               for (int r = 0; r < changed.getRangeCount(); r++) {
+                  if (r > 0) {
+                     out.append(',');
+                  }
+                  out.append('[').append(changed.getRangeFirst(r)).append(',').append(changed.getRangeLast(r)).append(']');
+               }
+               out.append(']');
+            }
+            out.append('}');
+         }
+         out.append(']');
+      }
+      out.append("}}").newLine();
+   }
+
+   @Override
+   public void end(Collection<String> totalJiras) throws IOException {
+      if (summary != null) {
+         summary.finish();
+         summary("author", summary.getAuthors());
+         summary("jiraStatus", summary.getJiraStatus());
+         summary("folder", summary.getFolders());
+      }
+   }
+
+   private void summary(String type, ReportSummary.Table table) throws IOException {
+      String[] columns = table.getColumns();
+      for (int row = 0; row < table.size(); row++) {
+         out.append('{');
+         name("summary");
+         string(type).append(',');
+         name("name");
+         string(table.getName(row));
+         for (int column = 0; column < columns.length; column++) {
+            out.append(',');
+            name(columns[column].toLowerCase()).append(table.get(row, column));
+         }
+         out.append('}').newLine();
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (summary != null) {
+         summary.close();
+      }
+      if (out != null) {
+         out.close();
+         out = null;
+      }
+   }
+}
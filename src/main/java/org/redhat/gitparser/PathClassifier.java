@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Matches a path against all interesting folders and source suffixes in a single pass.
+ *
+ * Folders and suffixes are compiled into one Aho-Corasick automaton, with the transitions
+ * fully resolved upfront so each char of the path costs one table lookup.
+ * A suffix only counts when its match ends on the last char of the path.
+ *
+ * When anchored, a folder only matches at the start of a path segment, so <i>test</i> matches
+ * <i>test/</i> or <i>module/tests/</i> but not <i>latest/</i>.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+
+public class PathClassifier {
+
+   private final int folders;
+   private final int[] patternLength;
+   private final boolean anchored;
+
+   // chars used by the patterns have their own column, any other char is on column 0
+   private final int[] asciiColumn = new int[128];
+   private final HashMap<Character, Integer> otherColumn = new HashMap<>();
+   private final int width;
+
+   // transitions, width entries per state
+   private final int[] delta;
+   // patterns ending at each state, including the ones from the failure states
+   private final int[][] output;
+
+   public PathClassifier(List<String> folders, String[] suffixes, boolean anchored) {
+      this.folders = folders.size();
+      this.anchored = anchored;
+
+      List<String> patterns = new ArrayList<>(folders);
+      if (suffixes != null) {
+         for (String suffix : suffixes) {
+            patterns.add(suffix);
+         }
+      }
+      patternLength = new int[patterns.size()];
+
+      int columns = 1;
+      for (String pattern : patterns) {
+         for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c < 128) {
+               if (asciiColumn[c] == 0) {
+                  asciiColumn[c] = columns++;
+               }
+            } else if (!otherColumn.containsKey(c)) {
+               otherColumn.put(c, columns++);
+            }
+         }
+      }
+      width = columns;
+
+      // the trie
+      List<int[]> trie = new ArrayList<>();
+      List<List<Integer>> ends = new ArrayList<>();
+      trie.add(newRow());
+      ends.add(new ArrayList<Integer>());
+      for (int p = 0; p < patterns.size(); p++) {
+         String pattern = patterns.get(p);
+         patternLength[p] = pattern.length();
+         int state = 0;
+         for (int i = 0; i < pattern.length(); i++) {
+            int column = column(pattern.charAt(i));
+            if (trie.get(state)[column] < 0) {
+               trie.get(state)[column] = trie.size();
+               trie.add(newRow());
+               ends.add(new ArrayList<Integer>());
+            }
+            state = trie.get(state)[column];
+         }
+         ends.get(state).add(p);
+      }
+
+      // failure links, resolved into a full transition table breadth first
+      int states = trie.size();
+      delta = new int[states * width];
+      output = new int[states][];
+      int[] fail = new int[states];
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+      output[0] = toArray(ends.get(0));
+      for (int column = 0; column < width; column++) {
+         int next = trie.get(0)[column];
+         if (next < 0) {
+            delta[column] = 0;
+         } else {
+            delta[column] = next;
+            fail[next] = 0;
+            queue.add(next);
+         }
+      }
+
+      while (!queue.isEmpty()) {
+         int state = queue.poll();
+         List<Integer> stateOutput = new ArrayList<>(ends.get(state));
+         for (int p : output[fail[state]]) {
+            stateOutput.add(p);
+         }
+         output[state] = toArray(stateOutput);
+
+         for (int column = 0; column < width; column++) {
+            int next = trie.get(state)[column];
+            if (next < 0) {
+               delta[state * width + column] = delta[fail[state] * width + column];
+            } else {
+               delta[state * width + column] = next;
+               fail[next] = delta[fail[state] * width + column];
+               queue.add(next);
+            }
+         }
+      }
+   }
+
+   private int[] newRow() {
+      int[] row = new int[width];
+      for (int i = 0; i < width; i++) {
+         row[i] = -1;
+      }
+      return row;
+   }
+
+   private static int[] toArray(List<Integer> list) {
+      int[] array = new int[list.size()];
+      for (int i = 0; i < array.length; i++) {
+         array[i] = list.get(i);
+      }
+      return array;
+   }
+
+   private int column(char c) {
+      if (c < 128) {
+         return asciiColumn[c];
+      }
+      Integer column = otherColumn.get(c);
+      return column == null ? 0 : column;
+   }
+
+   /**
+    * @param matches cleared, then set with the index of every interesting folder found on the path
+    * @return true if the path ends with one of the source suffixes
+    */
+   public boolean classify(String path, BitSet matches) {
+      matches.clear();
+      boolean source = false;
+      int state = 0;
+      int last = path.length() - 1;
+      for (int i = 0; i <= last; i++) {
+         state = delta[state * width + column(path.charAt(i))];
+         int[] found = output[state];
+         for (int f = 0; f < found.length; f++) {
+            int pattern = found[f];
+            if (pattern < folders) {
+               int start = i - patternLength[pattern] + 1;
+               if (!anchored || start == 0 || path.charAt(start - 1) == '/') {
+                  matches.set(pattern);
+               }
+            } else if (i == last) {
+               source = true;
+            }
+         }
+      }
+      return source;
+   }
+
+   public boolean isAnchored() {
+      return anchored;
+   }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.ObjectIdSet;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.DateRevQueue;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Lists the commits of a range as the RevWalk of the report does, without walking the history behind its uninteresting end.
+ *
+ * A RevWalk goes on parsing uninteresting commits until it is sure none of the pending ones is on the range, which on a
+ * range between two long-lived branches is most of the history. Here what is reachable from the uninteresting commits is
+ * known upfront, from the bitmaps of the pack when every one of them has a bitmap, which is the case for the refs
+ * of a repository packed by git gc, or else from the {@link CommitGraph}. Only the commits of the range are parsed then,
+ * ordered as the RevWalk does: by commit time, the newest first, through a DateRevQueue, and reversed at the end.
+ *
+ * The RevWalk has its uninteresting commits on the same queue, so commits with the same commit time, e.g. a rebased series,
+ * could be listed on another order here, though never before their parents. And with clock skew a RevWalk can list
+ * a commit also reachable from an uninteresting one, this never does.
+ */
+
+class RangeEnumerator {
+
+   // null to only use the bitmaps
+   private final CommitGraph graph;
+
+   RangeEnumerator(CommitGraph graph) {
+      this.graph = graph;
+   }
+
+   /**
+    * @return the commits reachable from to and not from any of the uninteresting commits, with no merges, the oldest first,
+    * or null when there are no bitmaps for the uninteresting commits and no graph
+    */
+   List<RevCommit> enumerate(RevWalk walk, RevCommit to, List<RevCommit> uninteresting) throws IOException {
+      ObjectIdSet reachable = bitmaps(walk.getObjectReader(), uninteresting);
+      if (reachable == null) {
+         if (graph == null) {
+            return null;
+         }
+         reachable = graph.reachable(walk.getObjectReader(), uninteresting);
+      }
+
+      List<RevCommit> commits = new ArrayList<>();
+      List<RevCommit> seenCommits = new ArrayList<>();
+      RevFlag seen = walk.newFlag("seen");
+      try {
+         DateRevQueue queue = new DateRevQueue();
+         if (!reachable.contains(to)) {
+            walk.parseHeaders(to);
+            to.add(seen);
+            seenCommits.add(to);
+            queue.add(to);
+         }
+         RevCommit commit;
+         while ((commit = queue.next()) != null) {
+            for (RevCommit parent : commit.getParents()) {
+               if (!parent.has(seen) && !reachable.contains(parent)) {
+                  walk.parseHeaders(parent);
+                  parent.add(seen);
+                  seenCommits.add(parent);
+                  queue.add(parent);
+               }
+            }
+            if (commit.getParentCount() <= 1) {
+               commits.add(commit);
+            }
+         }
+      } finally {
+         // the flag stays on the commits otherwise
+         for (RevCommit commit : seenCommits) {
+            commit.remove(seen);
+         }
+         walk.disposeFlag(seen);
+      }
+      Collections.reverse(commits);
+      return commits;
+   }
+
+   /**
+    * What is reachable from the uninteresting commits according to the bitmaps, null unless all of them have one.
+    */
+   private static ObjectIdSet bitmaps(ObjectReader reader, List<RevCommit> uninteresting) throws IOException {
+      BitmapIndex index = reader.getBitmapIndex();
+      if (index == null) {
+         return null;
+      }
+      final BitmapIndex.BitmapBuilder builder = index.newBitmapBuilder();
+      for (RevCommit commit : uninteresting) {
+         BitmapIndex.Bitmap bitmap = index.getBitmap(commit);
+         if (bitmap == null) {
+            return null;
+         }
+         builder.or(bitmap);
+      }
+      return new ObjectIdSet() {
+         @Override
+         public boolean contains(AnyObjectId commit) {
+            return builder.contains(commit);
+         }
+      };
+   }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * The static resources of the report: the stylesheets and scripts on the styles folder, and the images.
+ *
+ * Each resource is read once per JVM, with its SHA-1 and its gzip encoding. {@link #stage(File)} writes them next to the
+ * reports, skipping the files already there with the same content, so many reports sharing an output directory only
+ * write them the first time. A file staged by this JVM is not even read again unless its size or date changed.
+ *
+ * {@link #inline(String)} puts the resources on the page itself instead, so the report is a single file and loads
+ * in a single request. The resources are already minified, the images go as data URIs.
+ */
+
+final class ReportAssets {
+
+   static final String STYLES = "styles";
+   static final String IMAGES = "images";
+
+   static final String[] STYLE_NAMES = {"framework.css", "jquery.dataTables.min.css", "jquery.dataTables.min.js", "jquery.min.js"};
+   static final String[] IMAGE_NAMES = {"sort_both.png", "sort_asc.png", "sort_desc.png"};
+
+   private static final Pattern LINK = Pattern.compile("<link[^>]*href=\"styles/([^\"]+)\"[^>]*>");
+   private static final Pattern SCRIPT = Pattern.compile("<script[^>]*src=\"styles/([^\"]+)\"[^>]*></script>");
+   private static final Pattern IMAGE = Pattern.compile("url\\(\"\\.\\./images/([^\"]+)\"\\)");
+
+   static final class Asset {
+
+      private final String directory;
+      private final String name;
+      private final ByteString content;
+      private final ByteString sha1;
+      private ByteString gzip;
+
+      private Asset(String directory, String name, ByteString content) {
+         this.directory = directory;
+         this.name = name;
+         this.content = content;
+         this.sha1 = content.sha1();
+      }
+
+      String getDirectory() {
+         return directory;
+      }
+
+      String getName() {
+         return name;
+      }
+
+      ByteString getContent() {
+         return content;
+      }
+
+      ByteString getSha1() {
+         return sha1;
+      }
+
+      String getContentType() {
+         return name.endsWith(".css") ? "text/css" : name.endsWith(".js") ? "application/javascript" : "image/png";
+      }
+
+      /**
+       * The content gzip encoded, compressed on the first call only.
+       */
+      synchronized ByteString getGzip() throws IOException {
+         if (gzip == null) {
+            Buffer buffer = new Buffer();
+            try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+               sink.write(content);
+            }
+            gzip = buffer.readByteString();
+         }
+         return gzip;
+      }
+   }
+
+   private static List<Asset> assets;
+   // the files written or checked by this JVM, with their size and date at the time
+   private static final Map<File, Long> staged = new ConcurrentHashMap<>();
+   // the headers with their resources inlined, by header
+   private static final Map<String, String> inlined = new ConcurrentHashMap<>();
+
+   private ReportAssets() {
+   }
+
+   static ByteString read(String name) throws IOException {
+      try (InputStream in = ReportAssets.class.getResourceAsStream(name)) {
+         if (in == null) {
+            throw new IOException("no resource " + name);
+         }
+         return Okio.buffer(Okio.source(in)).readByteString();
+      }
+   }
+
+   static synchronized List<Asset> assets() throws IOException {
+      if (assets == null) {
+         List<Asset> list = new ArrayList<>(STYLE_NAMES.length + IMAGE_NAMES.length);
+         for (String name : STYLE_NAMES) {
+            list.add(new Asset(STYLES, name, read(name)));
+         }
+         for (String name : IMAGE_NAMES) {
+            list.add(new Asset(IMAGES, name, read(name)));
+         }
+         assets = Collections.unmodifiableList(list);
+      }
+      return assets;
+   }
+
+   /**
+    * @return the resource on the given folder, null if there's none with this name
+    */
+   static Asset get(String directory, String name) throws IOException {
+      for (Asset asset : assets()) {
+         if (asset.directory.equals(directory) && asset.name.equals(name)) {
+            return asset;
+         }
+      }
+      return null;
+   }
+
+   private static long stamp(File file) {
+      return file.length() * 31 + file.lastModified();
+   }
+
+   /**
+    * Writes the resources on the styles and images folders of the directory, unless they are already there.
+    *
+    * A file is replaced through a temporary file and a rename, so reports written at the same time on one
+    * directory never see a partial file.
+    *
+    * @return the number of files written
+    */
+   static int stage(File directory) throws IOException {
+      int written = 0;
+      for (Asset asset : assets()) {
+         File file = new File(new File(directory, asset.directory), asset.name).getAbsoluteFile();
+         Long stamp = staged.get(file);
+         if (stamp != null && file.exists() && stamp == stamp(file)) {
+            continue;
+         }
+         if (!sameContent(file, asset)) {
+            file.getParentFile().mkdirs();
+            File temporary = File.createTempFile(asset.name, ".tmp", file.getParentFile());
+            try {
+               Files.write(temporary.toPath(), asset.content.toByteArray());
+               Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+               temporary.delete();
+            }
+            written++;
+         }
+         staged.put(file, stamp(file));
+      }
+      return written;
+   }
+
+   private static boolean sameContent(File file, Asset asset) throws IOException {
+      if (!file.isFile() || file.length() != asset.content.size()) {
+         return false;
+      }
+      return ByteString.of(Files.readAllBytes(file.toPath())).sha1().equals(asset.sha1);
+   }
+
+   /**
+    * The header with each stylesheet link and script of the styles folder replaced by the resource itself.
+    */
+   static String inline(String header) throws IOException {
+      String result = inlined.get(header);
+      if (result == null) {
+         StringBuffer buffer = new StringBuffer(header.length() + 256 * 1024);
+         Matcher link = LINK.matcher(header);
+         while (link.find()) {
+            link.appendReplacement(buffer, Matcher.quoteReplacement("<style>" + css(link.group(1)) + "</style>"));
+         }
+         link.appendTail(buffer);
+
+         String linked = buffer.toString();
+         buffer.setLength(0);
+         Matcher script = SCRIPT.matcher(linked);
+         while (script.find()) {
+            // the script can't close the tag it is on
+            String content = read(script.group(1)).utf8().replace("</", "<\\/");
+            script.appendReplacement(buffer, Matcher.quoteReplacement("<script type=\"text/javascript\">" + content + "</script>"));
+         }
+         script.appendTail(buffer);
+         result = buffer.toString();
+         inlined.put(header, result);
+      }
+      return result;
+   }
+
+   /**
+    * The stylesheet with the images next to it as data URIs.
+    */
+   private static String css(String name) throws IOException {
+      String css = read(name).utf8();
+      StringBuffer buffer = new StringBuffer(css.length() + 4 * 1024);
+      Matcher image = IMAGE.matcher(css);
+      while (image.find()) {
+         String dataURI = "url(\"data:image/png;base64," + read(image.group(1)).base64() + "\")";
+         image.appendReplacement(buffer, Matcher.quoteReplacement(dataURI));
+      }
+      image.appendTail(buffer);
+      return buffer.toString();
+   }
+}
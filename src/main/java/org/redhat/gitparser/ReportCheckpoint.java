@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * How far a run got, so a run that died can go on from there instead of starting over, see {@link GitParser#setResume(boolean)}.
+ *
+ * Holds the commits and JIRAs of each range already written, the JIRAs of those ranges, and on the range being
+ * written the number of commits on it so far with the length of its output files at that point. Everything after that
+ * length is dropped on resume, so a row cut short by the crash is written again.
+ *
+ * The fingerprint is a hash of the settings changing the output and of the commits the range ends point to, a checkpoint
+ * only resumes a run with the same fingerprint. The file is replaced through a rename, it is never seen half written.
+ */
+
+final class ReportCheckpoint {
+
+   private static final int MAGIC = 0x47524301;
+
+   private final String fingerprint;
+   // commits and JIRAs of each range done
+   private final List<int[]> results = new ArrayList<>();
+   // the JIRAs of the ranges done
+   private final List<String> totalJiras = new ArrayList<>();
+   // on the range in progress
+   private int commits;
+   private HtmlReport.Position position;
+
+   ReportCheckpoint(String fingerprint) {
+      this.fingerprint = fingerprint;
+   }
+
+   /**
+    * A hash of everything on the parser that changes the reports, and of the commits of the ranges.
+    */
+   static String fingerprint(GitParser parser, Repository repository, List<ReportRange> ranges, int pageSize) throws IOException {
+      StringBuilder configuration = new StringBuilder();
+      configuration.append("stats:").append(CommitStatsStore.configurationKey(parser)).append('\n');
+      configuration.append("repository:").append(repository.getDirectory().getCanonicalPath()).append('\n');
+      configuration.append("github:").append(parser.getGithubURI()).append('\n');
+      configuration.append("browse:").append(parser.getJiraBrowseURI()).append('\n');
+      configuration.append("rest:").append(parser.getRestLocation()).append('\n');
+      configuration.append("jql:").append(parser.getSampleJQL()).append('\n');
+      configuration.append("pageSize:").append(pageSize).append('\n');
+      // the rows written are skipped by count, the commits must come in the same order
+      configuration.append("fastEnumeration:").append(parser.isFastEnumeration()).append('\n');
+      configuration.append("maxRecordsInMemory:").append(parser.getMaxRecordsInMemory()).append('\n');
+      configuration.append("summary:").append(parser.isSummary()).append('\n');
+      configuration.append("inline:").append(parser.isInlineAssets()).append('\n');
+      for (ReportRange range : ranges) {
+         configuration.append("range:").append(range).append('\n');
+         configuration.append(resolve(repository, range.getFrom())).append(' ').append(resolve(repository, range.getTo()));
+         for (String excluded : range.getExcluded()) {
+            configuration.append(" ^").append(resolve(repository, excluded));
+         }
+         configuration.append('\n');
+      }
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-1");
+         return ObjectId.fromRaw(digest.digest(configuration.toString().getBytes(StandardCharsets.UTF_8))).name();
+      } catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private static String resolve(Repository repository, String revision) throws IOException {
+      ObjectId id = repository.resolve(revision);
+      return id == null ? "unknown" : id.name();
+   }
+
+   /**
+    * @return the checkpoint on the file, null if there's none or it can't be read
+    */
+   static ReportCheckpoint load(File file) throws IOException {
+      if (!file.exists()) {
+         return null;
+      }
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+         if (input.readInt() != MAGIC) {
+            return null;
+         }
+         ReportCheckpoint checkpoint = new ReportCheckpoint(input.readUTF());
+         int ranges = input.readInt();
+         for (int r = 0; r < ranges; r++) {
+            checkpoint.results.add(new int[] {input.readInt(), input.readInt()});
+         }
+         int jiras = input.readInt();
+         for (int i = 0; i < jiras; i++) {
+            checkpoint.totalJiras.add(input.readUTF());
+         }
+         checkpoint.commits = input.readInt();
+         if (checkpoint.commits > 0) {
+            checkpoint.position = new HtmlReport.Position(input.readLong(), input.readInt(), input.readInt(), input.readLong(), input.readLong());
+         }
+         return checkpoint;
+      } catch (EOFException e) {
+         return null;
+      }
+   }
+
+   void save(File file) throws IOException {
+      File temporary = new File(file.getPath() + ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+         output.writeInt(MAGIC);
+         output.writeUTF(fingerprint);
+         output.writeInt(results.size());
+         for (int[] result : results) {
+            output.writeInt(result[0]);
+            output.writeInt(result[1]);
+         }
+         output.writeInt(totalJiras.size());
+         for (String jira : totalJiras) {
+            output.writeUTF(jira);
+         }
+         output.writeInt(commits);
+         if (commits > 0) {
+            output.writeLong(position.getPageLength());
+            output.writeInt(position.getChunks());
+            output.writeInt(position.getRowsInChunk());
+            output.writeLong(position.getChunkLength());
+            output.writeLong(position.getDataBytes());
+         }
+      }
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   String getFingerprint() {
+      return fingerprint;
+   }
+
+   /**
+    * Number of ranges already written, the run goes on from the next one.
+    */
+   int getRangesDone() {
+      return results.size();
+   }
+
+   int[] getResult(int range) {
+      return results.get(range);
+   }
+
+   List<String> getTotalJiras() {
+      return totalJiras;
+   }
+
+   /**
+    * Number of commits already written on the range in progress.
+    */
+   int getCommits() {
+      return commits;
+   }
+
+   /**
+    * Where the output files of the range in progress end, null when no commit is written yet.
+    */
+   HtmlReport.Position getPosition() {
+      return position;
+   }
+
+   void progress(int commits, HtmlReport.Position position) {
+      this.commits = commits;
+      this.position = commits > 0 ? position : null;
+   }
+
+   void rangeDone(int[] result, Collection<String> jiras) {
+      results.add(result);
+      if (jiras != null) {
+         totalJiras.addAll(jiras);
+      }
+      commits = 0;
+      position = null;
+   }
+
+   /**
+    * The output files of the range in progress are still at least as long as when the checkpoint was written,
+    * they could be shorter if the machine went down before they were on disk.
+    */
+   boolean matchesOutput(File outputFile, File chunkFile) {
+      if (position == null) {
+         return true;
+      }
+      if (!outputFile.isFile() || outputFile.length() < position.getPageLength()) {
+         return false;
+      }
+      return position.getRowsInChunk() == 0 || chunkFile.isFile() && chunkFile.length() >= position.getChunkLength();
+   }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import okhttp3.OkHttpClient;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * What a report uses besides the settings of its {@link GitParser}: the repository, the caches and the HTTP client.
+ *
+ * A one-shot report opens its own context and closes it at the end. A {@link ReportServer} keeps one open
+ * between requests, so the repository, its pack indexes and the caches stay warm.
+ * Everything here can be used by concurrent reports.
+ */
+
+class ReportContext implements AutoCloseable {
+
+   private final Git git;
+   private final CommitStatsStore statsStore;
+   private final Map<String, CommitStats> statsCache;
+   private final JiraCache jiraCache;
+   private final OkHttpClient client;
+   private final JiraLimiter jiraLimiter;
+   private final CommitGraph commitGraph;
+   private final ExecutorService diffExecutor;
+   // the client and JIRA cache are only closed and saved here when they are not shared
+   private final boolean ownClient;
+   private final boolean ownJiraCache;
+
+   /**
+    * @param statsCacheSize the number of commit stats kept in memory between reports, 0 for none
+    */
+   ReportContext(GitParser parser, int statsCacheSize) throws IOException {
+      this(parser, statsCacheSize, null, null, null, null);
+   }
+
+   /**
+    * With resources shared between the contexts of different parsers, as a {@link ReportRunner} does,
+    * which are left open on close.
+    *
+    * @param client null for one of its own, when the JIRAs are resolved
+    * @param jiraCache null for one of its own, when the JIRAs are resolved and cached
+    * @param jiraLimiter null for one of its own, with the rate limit of the parser, when the JIRAs are resolved
+    * @param diffExecutor null for each report to diff on threads of its own
+    */
+   ReportContext(GitParser parser, int statsCacheSize, OkHttpClient client, JiraCache jiraCache, JiraLimiter jiraLimiter,
+                 ExecutorService diffExecutor) throws IOException {
+      this.diffExecutor = diffExecutor;
+      git = Git.open(parser.getFolder());
+      CommitStatsStore store = null;
+      try {
+         store = parser.getCacheDirectory() != null ? new CommitStatsStore(parser.getCacheDirectory(), parser) : null;
+         statsStore = store;
+         statsCache = statsCacheSize > 0 ? newStatsCache(statsCacheSize) : null;
+         if (parser.isFastEnumeration()) {
+            commitGraph = parser.getCacheDirectory() != null ? new CommitGraph(parser.getCacheDirectory()) : new CommitGraph();
+         } else {
+            commitGraph = null;
+         }
+
+         if (parser.getRestLocation() == null) {
+            this.jiraCache = null;
+            this.client = null;
+            this.jiraLimiter = null;
+         } else {
+            if (jiraCache != null) {
+               this.jiraCache = jiraCache;
+            } else if (parser.getCacheDirectory() != null) {
+               this.jiraCache = new JiraCache(parser.getCacheDirectory(), new URL(parser.getRestLocation()).getHost());
+            } else {
+               // a one-shot report has nothing to keep in memory
+               this.jiraCache = statsCacheSize > 0 ? new JiraCache() : null;
+            }
+            this.client = client != null ? client : JiraResolver.newClient(parser.getJiraConcurrency());
+            this.jiraLimiter = jiraLimiter != null ? jiraLimiter : new JiraLimiter(parser.getJiraRateLimit(), parser.getJiraConcurrency());
+         }
+         ownClient = client == null;
+         ownJiraCache = jiraCache == null;
+      } catch (IOException | RuntimeException e) {
+         // e.g. on a failed reload of a server, nothing stays open; a JIRA cache of its own holds no file until saved
+         if (store != null) {
+            try {
+               store.close();
+            } catch (IOException closeFailure) {
+               e.addSuppressed(closeFailure);
+            }
+         }
+         git.close();
+         throw e;
+      }
+   }
+
+   private static Map<String, CommitStats> newStatsCache(final int size) {
+      return Collections.synchronizedMap(new LinkedHashMap<String, CommitStats>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, CommitStats> eldest) {
+            return size() > size;
+         }
+      });
+   }
+
+   Repository getRepository() {
+      return git.getRepository();
+   }
+
+   /**
+    * null when the parser has no cache directory
+    */
+   CommitStatsStore getStatsStore() {
+      return statsStore;
+   }
+
+   /**
+    * The most recent commit stats, null on a one-shot report
+    */
+   Map<String, CommitStats> getStatsCache() {
+      return statsCache;
+   }
+
+   /**
+    * null unless the parser uses the fast enumeration
+    */
+   CommitGraph getCommitGraph() {
+      return commitGraph;
+   }
+
+   /**
+    * null unless shared with other contexts, see {@link DiffEngine}
+    */
+   ExecutorService getDiffExecutor() {
+      return diffExecutor;
+   }
+
+   /**
+    * null when the JIRAs are not resolved, or not cached
+    */
+   JiraCache getJiraCache() {
+      return jiraCache;
+   }
+
+   /**
+    * null when the JIRAs are not resolved
+    */
+   OkHttpClient getClient() {
+      return client;
+   }
+
+   /**
+    * The rate limit and circuit breaker of the tracker, for every report of this context, null when the JIRAs are not resolved
+    */
+   JiraLimiter getJiraLimiter() {
+      return jiraLimiter;
+   }
+
+   /**
+    * Picks up refs created or moved since the repository was opened, e.g. after a fetch.
+    */
+   void reload() {
+      git.getRepository().getRefDatabase().refresh();
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         if (jiraCache != null && ownJiraCache) {
+            jiraCache.save();
+         }
+         if (statsStore != null) {
+            statsStore.close();
+         }
+      } finally {
+         if (client != null && ownClient) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+         }
+         git.close();
+      }
+   }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters of one report run.
+ *
+ * Counters are updated by the threads diffing commits and by the REST callbacks, so all of them are atomic.
+ * The numbers can be followed through JMX while the report runs, and are written as JSON at the end.
+ */
+
+public class ReportMetrics implements ReportMetricsMBean {
+
+   public enum Stage {
+      // listing the commits of the ranges, the rest of the walk is parsing them
+      ENUMERATE, WALK, DIFF, JIRA, RENDER
+   }
+
+   // upper bounds of the REST latency buckets in milliseconds, the last bucket has no bound
+   private static final long[] LATENCY_BOUNDS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+   final AtomicLong commitsWalked = new AtomicLong();
+   final AtomicLong commitsDiffed = new AtomicLong();
+   final AtomicLong diffEntries = new AtomicLong();
+   final AtomicLong blobsLoaded = new AtomicLong();
+   final AtomicLong editsCounted = new AtomicLong();
+   final AtomicLong renamesDetected = new AtomicLong();
+   final AtomicLong diffsSkipped = new AtomicLong();
+   final AtomicLong statsStoreHits = new AtomicLong();
+   final AtomicLong restCalls = new AtomicLong();
+   final AtomicLong restFailures = new AtomicLong();
+   final AtomicLong restRetries = new AtomicLong();
+   final AtomicLong jiraDegraded = new AtomicLong();
+   private final AtomicLong restLatencyTotal = new AtomicLong();
+   private final AtomicLongArray restLatency = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+   final AtomicLong jiraCacheHits = new AtomicLong();
+   final AtomicLong jiraCacheMisses = new AtomicLong();
+   final AtomicLong bytesWritten = new AtomicLong();
+   private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+   private final long started = System.nanoTime();
+   private volatile long finished;
+
+   /**
+    * Adds the time since start, as given by System.nanoTime(), to the stage.
+    */
+   public void time(Stage stage, long start) {
+      stageNanos.addAndGet(stage.ordinal(), System.nanoTime() - start);
+   }
+
+   public void add(Stage stage, long nanos) {
+      stageNanos.addAndGet(stage.ordinal(), nanos);
+   }
+
+   /**
+    * A REST call answered by the tracker, whatever the response code.
+    */
+   public void restCall(long latencyMillis) {
+      restCalls.incrementAndGet();
+      restLatencyTotal.addAndGet(latencyMillis);
+      int bucket = 0;
+      while (bucket < LATENCY_BOUNDS.length && latencyMillis >= LATENCY_BOUNDS[bucket]) {
+         bucket++;
+      }
+      restLatency.incrementAndGet(bucket);
+   }
+
+   /**
+    * A REST call that got no response at all.
+    */
+   public void restFailure() {
+      restFailures.incrementAndGet();
+   }
+
+   /**
+    * A REST call sent again, after a throttle, a 5xx or no response.
+    */
+   public void restRetry() {
+      restRetries.incrementAndGet();
+   }
+
+   /**
+    * A JIRA given up on because the tracker was not available.
+    */
+   public void jiraDegraded() {
+      jiraDegraded.incrementAndGet();
+   }
+
+   void finish() {
+      finished = System.nanoTime();
+   }
+
+   @Override
+   public long getCommitsWalked() {
+      return commitsWalked.get();
+   }
+
+   @Override
+   public long getCommitsDiffed() {
+      return commitsDiffed.get();
+   }
+
+   @Override
+   public long getDiffEntries() {
+      return diffEntries.get();
+   }
+
+   @Override
+   public long getBlobsLoaded() {
+      return blobsLoaded.get();
+   }
+
+   @Override
+   public long getEditsCounted() {
+      return editsCounted.get();
+   }
+
+   @Override
+   public long getRenamesDetected() {
+      return renamesDetected.get();
+   }
+
+   @Override
+   public long getDiffsSkipped() {
+      return diffsSkipped.get();
+   }
+
+   @Override
+   public long getStatsStoreHits() {
+      return statsStoreHits.get();
+   }
+
+   @Override
+   public long getRestCalls() {
+      return restCalls.get();
+   }
+
+   @Override
+   public long getRestFailures() {
+      return restFailures.get();
+   }
+
+   @Override
+   public long getRestRetries() {
+      return restRetries.get();
+   }
+
+   @Override
+   public long getJiraDegraded() {
+      return jiraDegraded.get();
+   }
+
+   @Override
+   public long[] getRestLatencyHistogram() {
+      long[] histogram = new long[restLatency.length()];
+      for (int i = 0; i < histogram.length; i++) {
+         histogram[i] = restLatency.get(i);
+      }
+      return histogram;
+   }
+
+   @Override
+   public long[] getRestLatencyBounds() {
+      return LATENCY_BOUNDS.clone();
+   }
+
+   @Override
+   public long getJiraCacheHits() {
+      return jiraCacheHits.get();
+   }
+
+   @Override
+   public long getJiraCacheMisses() {
+      return jiraCacheMisses.get();
+   }
+
+   @Override
+   public long getBytesWritten() {
+      return bytesWritten.get();
+   }
+
+   public long getMillis(Stage stage) {
+      return TimeUnit.NANOSECONDS.toMillis(stageNanos.get(stage.ordinal()));
+   }
+
+   @Override
+   public long getEnumerateMillis() {
+      return getMillis(Stage.ENUMERATE);
+   }
+
+   @Override
+   public long getWalkMillis() {
+      return getMillis(Stage.WALK);
+   }
+
+   @Override
+   public long getDiffMillis() {
+      return getMillis(Stage.DIFF);
+   }
+
+   @Override
+   public long getJiraMillis() {
+      return getMillis(Stage.JIRA);
+   }
+
+   @Override
+   public long getRenderMillis() {
+      return getMillis(Stage.RENDER);
+   }
+
+   @Override
+   public long getTotalMillis() {
+      long end = finished != 0 ? finished : System.nanoTime();
+      return TimeUnit.NANOSECONDS.toMillis(end - started);
+   }
+
+   public JsonObject toJson() {
+      JsonObjectBuilder stages = Json.createObjectBuilder();
+      for (Stage stage : Stage.values()) {
+         stages.add(stage.name().toLowerCase(), getMillis(stage));
+      }
+      stages.add("total", getTotalMillis());
+
+      JsonArrayBuilder histogram = Json.createArrayBuilder();
+      long[] counts = getRestLatencyHistogram();
+      for (int i = 0; i < counts.length; i++) {
+         JsonObjectBuilder bucket = Json.createObjectBuilder();
+         if (i < LATENCY_BOUNDS.length) {
+            bucket.add("lessThanMillis", LATENCY_BOUNDS[i]);
+         }
+         histogram.add(bucket.add("calls", counts[i]));
+      }
+
+      long calls = restCalls.get();
+      return Json.createObjectBuilder().
+         add("stagesMillis", stages).
+         add("commitsWalked", commitsWalked.get()).
+         add("commitsDiffed", commitsDiffed.get()).
+         add("diffEntries", diffEntries.get()).
+         add("blobsLoaded", blobsLoaded.get()).
+         add("editsCounted", editsCounted.get()).
+         add("renamesDetected", renamesDetected.get()).
+         add("diffsSkipped", diffsSkipped.get()).
+         add("statsStoreHits", statsStoreHits.get()).
+         add("rest", Json.createObjectBuilder().
+            add("calls", calls).
+            add("failures", restFailures.get()).
+            add("retries", restRetries.get()).
+            add("degraded", jiraDegraded.get()).
+            add("meanLatencyMillis", calls == 0 ? 0 : restLatencyTotal.get() / calls).
+            add("latencyHistogram", histogram)).
+         add("jiraCache", Json.createObjectBuilder().
+            add("hits", jiraCacheHits.get()).
+            add("misses", jiraCacheMisses.get())).
+         add("bytesWritten", bytesWritten.get()).
+         build();
+   }
+
+   public void write(File file) throws IOException {
+      try (OutputStream out = new FileOutputStream(file);
+           JsonWriter writer = Json.createWriterFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true)).createWriter(out)) {
+         writer.writeObject(toJson());
+      }
+   }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+/**
+ * The {@link ReportMetrics} as exposed through JMX.
+ */
+
+public interface ReportMetricsMBean {
+
+   long getCommitsWalked();
+
+   /**
+    * Commits walked but not diffed were found on the commit stats store, or on a previous range.
+    */
+   long getCommitsDiffed();
+
+   long getDiffEntries();
+
+   long getBlobsLoaded();
+
+   long getEditsCounted();
+
+   /**
+    * Renamed or copied files, only when detecting renames.
+    */
+   long getRenamesDetected();
+
+   /**
+    * Files with no edit list, either binary or larger than {@link GitParser#setMaxDiffBytes(int)}.
+    */
+   long getDiffsSkipped();
+
+   long getStatsStoreHits();
+
+   long getRestCalls();
+
+   long getRestFailures();
+
+   long getRestRetries();
+
+   /**
+    * JIRAs shown with no details because the tracker was throttling, failing or behind the open circuit breaker.
+    */
+   long getJiraDegraded();
+
+   /**
+    * Number of REST calls per latency bucket, the upper bounds given by {@link #getRestLatencyBounds()}.
+    */
+   long[] getRestLatencyHistogram();
+
+   long[] getRestLatencyBounds();
+
+   long getJiraCacheHits();
+
+   long getJiraCacheMisses();
+
+   long getBytesWritten();
+
+   /**
+    * Listing the commits of the ranges, part of the walk but not counted on {@link #getWalkMillis()}.
+    */
+   long getEnumerateMillis();
+
+   long getWalkMillis();
+
+   long getDiffMillis();
+
+   long getJiraMillis();
+
+   long getRenderMillis();
+
+   long getTotalMillis();
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The settings of a project, as JSON, so a new project needs no code. For example:
+ *
+ * <pre>
+ * {
+ *    "name": "artemis",
+ *    "jira": ["ARTEMIS-"],
+ *    "jiraBrowseURI": "https://issues.apache.org/jira/browse/",
+ *    "restLocation": "https://issues.apache.org/jira/rest/api/2/issue/",
+ *    "sampleJQL": "https://issues.apache.org/jira/issues/?jql=project%20%3D%20ARTEMIS%20AND%20key%20in%20",
+ *    "githubURI": "https://github.com/apache/activemq-artemis/",
+ *    "sourceSuffix": [".java", ".md"],
+ *    "interestingFolders": ["test", "docs/"],
+ *    "repository": "activemq-artemis",
+ *    "output": "reports/artemis",
+ *    "ranges": ["2.16.0..2.17.0"]
+ * }
+ * </pre>
+ *
+ * The first JIRA prefix is the project's, the others are looked for as well. restLocation and sampleJQL are optional,
+ * so is anchoredFolders. repository, output and ranges are only needed by the {@link ReportRunner}, relative paths
+ * are resolved against the directory of the profile file. A file can also hold an array of profiles.
+ *
+ * The profiles of the projects shipped with the report are on the classpath, see {@link #builtin(String)}.
+ */
+
+public class ReportProfile {
+
+   private final String name;
+   private final List<String> jira;
+   private final String jiraBrowseURI;
+   private final String githubURI;
+   private final String restLocation;
+   private final String sampleJQL;
+   private final List<String> sourceSuffix;
+   private final List<String> interestingFolders;
+   private final boolean anchoredFolders;
+   private final File repository;
+   private final File output;
+   private final List<ReportRange> ranges;
+
+   private ReportProfile(JsonObject object, File baseDirectory) {
+      name = required(object, "name");
+      jira = strings(object, "jira");
+      if (jira.isEmpty()) {
+         throw new IllegalArgumentException("no JIRA prefix on profile " + name);
+      }
+      jiraBrowseURI = required(object, "jiraBrowseURI");
+      githubURI = required(object, "githubURI");
+      restLocation = object.getString("restLocation", null);
+      sampleJQL = object.getString("sampleJQL", null);
+      sourceSuffix = strings(object, "sourceSuffix");
+      if (sourceSuffix.isEmpty()) {
+         throw new IllegalArgumentException("no source suffix on profile " + name);
+      }
+      interestingFolders = strings(object, "interestingFolders");
+      anchoredFolders = object.getBoolean("anchoredFolders", false);
+      repository = file(baseDirectory, object.getString("repository", null));
+      output = file(baseDirectory, object.getString("output", null));
+      List<ReportRange> ranges = new ArrayList<>();
+      for (String range : strings(object, "ranges")) {
+         ranges.add(ReportRange.parse(range));
+      }
+      this.ranges = Collections.unmodifiableList(ranges);
+   }
+
+   private static String required(JsonObject object, String key) {
+      if (!object.containsKey(key)) {
+         throw new IllegalArgumentException("missing " + key + " on profile " + object.getString("name", ""));
+      }
+      return object.getString(key);
+   }
+
+   /**
+    * A single string is taken as a list of one.
+    */
+   private static List<String> strings(JsonObject object, String key) {
+      JsonValue value = object.get(key);
+      List<String> strings = new ArrayList<>();
+      if (value instanceof JsonString) {
+         strings.add(((JsonString) value).getString());
+      } else if (value instanceof JsonArray) {
+         for (JsonString string : ((JsonArray) value).getValuesAs(JsonString.class)) {
+            strings.add(string.getString());
+         }
+      }
+      return Collections.unmodifiableList(strings);
+   }
+
+   private static File file(File baseDirectory, String path) {
+      if (path == null) {
+         return null;
+      }
+      File file = new File(path);
+      return file.isAbsolute() || baseDirectory == null ? file : new File(baseDirectory, path);
+   }
+
+   /**
+    * @return the profiles on the file, a single object or an array of them
+    */
+   public static List<ReportProfile> load(File file) throws IOException {
+      try (InputStream in = new FileInputStream(file)) {
+         return read(in, file.getAbsoluteFile().getParentFile());
+      }
+   }
+
+   /**
+    * A profile shipped with the report, e.g. artemis or wildfly, with no repository, output or ranges.
+    */
+   public static ReportProfile builtin(String name) throws IOException {
+      try (InputStream in = ReportProfile.class.getResourceAsStream("profiles/" + name + ".json")) {
+         if (in == null) {
+            throw new IllegalArgumentException("no profile " + name);
+         }
+         return read(in, null).get(0);
+      }
+   }
+
+   static List<ReportProfile> read(InputStream in, File baseDirectory) {
+      List<ReportProfile> profiles = new ArrayList<>();
+      try (JsonReader reader = Json.createReader(in)) {
+         JsonStructure structure = reader.read();
+         if (structure instanceof JsonArray) {
+            for (JsonObject object : ((JsonArray) structure).getValuesAs(JsonObject.class)) {
+               profiles.add(new ReportProfile(object, baseDirectory));
+            }
+         } else {
+            profiles.add(new ReportProfile((JsonObject) structure, baseDirectory));
+         }
+      }
+      return profiles;
+   }
+
+   /**
+    * A parser with the settings of the profile, diffing on as many threads as there are processors.
+    */
+   public GitParser newParser(File repository) {
+      GitParser parser = new GitParser(repository, jira.get(0), jiraBrowseURI, githubURI).
+         setParallelism(Runtime.getRuntime().availableProcessors()).
+         setAnchoredFolders(anchoredFolders);
+      for (int i = 1; i < jira.size(); i++) {
+         parser.addJiraPrefix(jira.get(i));
+      }
+      parser.setSourceSuffix(sourceSuffix.toArray(new String[sourceSuffix.size()]));
+      if (restLocation != null) {
+         parser.setRestLocation(restLocation);
+      }
+      if (sampleJQL != null) {
+         parser.setSampleJQL(sampleJQL);
+      }
+      for (String folder : interestingFolders) {
+         parser.addInterestingfolder(folder);
+      }
+      return parser;
+   }
+
+   /**
+    * A parser on the repository of the profile.
+    */
+   public GitParser newParser() {
+      if (repository == null) {
+         throw new IllegalStateException("no repository on profile " + name);
+      }
+      return newParser(repository);
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   public List<String> getJira() {
+      return jira;
+   }
+
+   public String getJiraBrowseURI() {
+      return jiraBrowseURI;
+   }
+
+   public String getGithubURI() {
+      return githubURI;
+   }
+
+   /**
+    * null when the JIRAs are not resolved
+    */
+   public String getRestLocation() {
+      return restLocation;
+   }
+
+   public String getSampleJQL() {
+      return sampleJQL;
+   }
+
+   public List<String> getSourceSuffix() {
+      return sourceSuffix;
+   }
+
+   public List<String> getInterestingFolders() {
+      return interestingFolders;
+   }
+
+   public boolean isAnchoredFolders() {
+      return anchoredFolders;
+   }
+
+   public File getRepository() {
+      return repository;
+   }
+
+   public File getOutput() {
+      return output;
+   }
+
+   public List<ReportRange> getRanges() {
+      return ranges;
+   }
+
+   @Override
+   public String toString() {
+      return name;
+   }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A range of commits to report, from (exclusive) to (inclusive), each one a tag, branch or commit id.
+ *
+ * Other refs can be excluded as well, as with ^ref on git log, e.g. the commits of a backport branch.
+ */
+
+public class ReportRange {
+
+   private final String from;
+   private final String to;
+   private final List<String> excluded;
+
+   public ReportRange(String from, String to) {
+      this(from, to, Collections.<String>emptyList());
+   }
+
+   /**
+    * @param excluded refs whose commits are left out of the range, besides the ones of from
+    */
+   public ReportRange(String from, String to, List<String> excluded) {
+      this.from = from;
+      this.to = to;
+      this.excluded = Collections.unmodifiableList(new ArrayList<>(excluded));
+   }
+
+   /**
+    * @param range as on git log, e.g. 2.16.0..2.17.0, optionally followed by refs to exclude, e.g. 2.16.0..2.17.0 ^2.16.x
+    */
+   public static ReportRange parse(String range) {
+      String[] parts = range.trim().split("\\s+");
+      int separator = parts[0].indexOf("..");
+      if (separator <= 0 || separator + 2 >= parts[0].length()) {
+         throw new IllegalArgumentException("invalid range " + range + ", expected from..to");
+      }
+      List<String> excluded = new ArrayList<>();
+      for (int i = 1; i < parts.length; i++) {
+         if (parts[i].length() < 2 || parts[i].charAt(0) != '^') {
+            throw new IllegalArgumentException("invalid range " + range + ", expected ^ref after from..to");
+         }
+         excluded.add(parts[i].substring(1));
+      }
+      return new ReportRange(parts[0].substring(0, separator), parts[0].substring(separator + 2), excluded);
+   }
+
+   public String getFrom() {
+      return from;
+   }
+
+   public String getTo() {
+      return to;
+   }
+
+   public List<String> getExcluded() {
+      return excluded;
+   }
+
+   /**
+    * The name of the report for this range, e.g. 2.16.0..2.17.0.html.
+    */
+   public String getFileName() {
+      StringBuilder name = new StringBuilder();
+      String range = toString();
+      for (int i = 0; i < range.length(); i++) {
+         char c = range.charAt(i);
+         name.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' ? c : '_');
+      }
+      return name.append(".html").toString();
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder range = new StringBuilder(from).append("..").append(to);
+      for (String ref : excluded) {
+         range.append(" ^").append(ref);
+      }
+      return range.toString();
+   }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs the reports of many {@link ReportProfile}s at once on a single JVM, e.g. every product of a release.
+ *
+ * The profiles run concurrently, but all of them diff on one bounded pool of threads, and all JIRAs are fetched
+ * through one HTTP client, so one connection pool. Profiles pointing at the same tracker share its JIRA cache,
+ * so an issue referenced by several projects is fetched once, and its rate limit and circuit breaker, so together
+ * they do not call it faster than one profile would. The commit stats and commit graph are kept per profile,
+ * under the cache directory.
+ */
+
+public class ReportRunner implements AutoCloseable {
+
+   private final int threads;
+   private final ExecutorService diffExecutor;
+   private final OkHttpClient client;
+   // one per tracker, by host
+   private final Map<String, JiraCache> jiraCaches = new HashMap<>();
+   private final Map<String, JiraLimiter> jiraLimiters = new HashMap<>();
+   private int concurrency = 4;
+   private File cacheDirectory;
+   private boolean quiet = true;
+   private boolean resume;
+
+   /**
+    * @param threads the threads diffing commits, for all profiles
+    * @param jiraConcurrency the most JIRAs fetched at the same time from one tracker
+    */
+   public ReportRunner(int threads, int jiraConcurrency) {
+      this.threads = Math.max(1, threads);
+      this.diffExecutor = DiffEngine.newExecutor(this.threads);
+      this.client = JiraResolver.newClient(jiraConcurrency, jiraConcurrency * 4);
+   }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+
+   /**
+    * The number of profiles running at the same time, 4 by default.
+    */
+   public ReportRunner setConcurrency(int concurrency) {
+      this.concurrency = Math.max(1, concurrency);
+      return this;
+   }
+
+   public File getCacheDirectory() {
+      return cacheDirectory;
+   }
+
+   /**
+    * Where the JIRA caches are kept between runs, one per tracker, and the commit stats of each profile, on a directory
+    * named after it. Nothing is kept between runs if not set.
+    */
+   public ReportRunner setCacheDirectory(File cacheDirectory) {
+      this.cacheDirectory = cacheDirectory;
+      return this;
+   }
+
+   public boolean isQuiet() {
+      return quiet;
+   }
+
+   /**
+    * No output for each JIRA fetched, the default, as the lines of all profiles would be mixed.
+    */
+   public ReportRunner setQuiet(boolean quiet) {
+      this.quiet = quiet;
+      return this;
+   }
+
+   public boolean isResume() {
+      return resume;
+   }
+
+   /**
+    * Each profile goes on from the checkpoint its last run left, if it did not finish. The profiles are always
+    * checkpointed, see {@link GitParser#setCheckpointInterval(int)}.
+    */
+   public ReportRunner setResume(boolean resume) {
+      this.resume = resume;
+      return this;
+   }
+
+   private synchronized JiraCache jiraCache(String restLocation) throws IOException {
+      String host = new URL(restLocation).getHost();
+      JiraCache jiraCache = jiraCaches.get(host);
+      if (jiraCache == null) {
+         jiraCache = cacheDirectory != null ? new JiraCache(cacheDirectory, host) : new JiraCache();
+         jiraCaches.put(host, jiraCache);
+      }
+      return jiraCache;
+   }
+
+   /**
+    * With the rate limit of the first profile calling the tracker.
+    */
+   private synchronized JiraLimiter jiraLimiter(GitParser parser) throws IOException {
+      String host = new URL(parser.getRestLocation()).getHost();
+      JiraLimiter jiraLimiter = jiraLimiters.get(host);
+      if (jiraLimiter == null) {
+         jiraLimiter = new JiraLimiter(parser.getJiraRateLimit(), parser.getJiraConcurrency());
+         jiraLimiters.put(host, jiraLimiter);
+      }
+      return jiraLimiter;
+   }
+
+   /**
+    * Writes the reports of every range of a profile on its output directory, with an index, as {@link GitParser#parse(File, List)}.
+    */
+   public void run(ReportProfile profile) throws Exception {
+      if (profile.getOutput() == null || profile.getRanges().isEmpty()) {
+         throw new IllegalArgumentException("no output or no ranges on profile " + profile);
+      }
+      GitParser parser = profile.newParser().setParallelism(threads).setQuiet(quiet).
+         setCheckpointInterval(ArtemisParser.CHECKPOINT_INTERVAL).setResume(resume);
+      if (cacheDirectory != null) {
+         parser.setCacheDirectory(new File(cacheDirectory, profile.getName()));
+      }
+      JiraCache jiraCache = profile.getRestLocation() != null ? jiraCache(profile.getRestLocation()) : null;
+      JiraLimiter jiraLimiter = profile.getRestLocation() != null ? jiraLimiter(parser) : null;
+      try (ReportContext context = new ReportContext(parser, 0, client, jiraCache, jiraLimiter, diffExecutor)) {
+         parser.parse(context, profile.getOutput(), profile.getRanges());
+      }
+   }
+
+   /**
+    * Runs all the profiles, {@link #getConcurrency()} at a time, until every one is done or failed.
+    *
+    * @return the failure of each profile that failed, by name
+    */
+   public Map<String, Exception> run(List<ReportProfile> profiles) throws InterruptedException {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, profiles.size())));
+      try {
+         List<Future<Void>> futures = new ArrayList<>(profiles.size());
+         for (final ReportProfile profile : profiles) {
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  run(profile);
+                  return null;
+               }
+            }));
+         }
+         Map<String, Exception> failures = new LinkedHashMap<>();
+         for (int i = 0; i < profiles.size(); i++) {
+            try {
+               futures.get(i).get();
+            } catch (ExecutionException e) {
+               failures.put(profiles.get(i).getName(), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+         }
+         return failures;
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         synchronized (this) {
+            for (JiraCache jiraCache : jiraCaches.values()) {
+               jiraCache.save();
+            }
+         }
+      } finally {
+         diffExecutor.shutdownNow();
+         try {
+            diffExecutor.awaitTermination(1, TimeUnit.MINUTES);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         client.dispatcher().executorService().shutdown();
+         client.connectionPool().evictAll();
+      }
+   }
+
+   public static void main(String arg[]) {
+      if (arg.length == 0) {
+         System.err.println("use ReportRunner [--threads <n>] [--concurrency <n>] [--cache <directory>] [--resume] <profile.json>...");
+         System.exit(-1);
+      }
+      try {
+         int threads = Runtime.getRuntime().availableProcessors();
+         int concurrency = 4;
+         File cacheDirectory = null;
+         boolean resume = false;
+         List<ReportProfile> profiles = new ArrayList<>();
+         for (int i = 0; i < arg.length; i++) {
+            if (arg[i].equals("--threads")) {
+               threads = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("--concurrency")) {
+               concurrency = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("--cache")) {
+               cacheDirectory = new File(arg[++i]);
+            } else if (arg[i].equals("--resume")) {
+               resume = true;
+            } else {
+               profiles.addAll(ReportProfile.load(new File(arg[i])));
+            }
+         }
+
+         Map<String, Exception> failures;
+         try (ReportRunner runner = new ReportRunner(threads, 8).setConcurrency(concurrency).setCacheDirectory(cacheDirectory).setResume(resume)) {
+            failures = runner.run(profiles);
+         }
+         for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+            System.err.println("profile " + failure.getKey() + " failed");
+            failure.getValue().printStackTrace();
+         }
+         System.exit(failures.isEmpty() ? 0 : -1);
+      } catch (Exception e) {
+         e.printStackTrace();
+         System.exit(-1);
+      }
+   }
+}
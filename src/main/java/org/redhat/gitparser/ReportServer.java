@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import okio.ByteString;
+
+/**
+ * Serves reports over HTTP from a long running process, keeping the repository and the caches warm between requests.
+ *
+ * <ul>
+ * <li>GET /report?from=X&amp;to=Y returns the report, adding &amp;reload=true picks up new refs first</li>
+ * <li>GET /reload picks up refs created or moved since the repository was opened, e.g. after a fetch</li>
+ * <li>GET /styles/... and /images/... are the resources used by the report</li>
+ * </ul>
+ *
+ * Requests are served concurrently, by the number of threads given. Each report uses the settings of the
+ * {@link GitParser}, except for the sinks and the page size: reports are always served as a single page.
+ */
+
+public class ReportServer implements AutoCloseable {
+
+   // number of commit stats kept in memory between reports
+   private static final int STATS_CACHE_SIZE = 100000;
+
+   private final GitParser parser;
+   private final ReportContext context;
+   private final HttpServer server;
+   private final ExecutorService executor;
+   private final File workDirectory;
+   private final AtomicInteger reports = new AtomicInteger();
+
+   public ReportServer(GitParser parser, InetSocketAddress address, int threads) throws IOException {
+      this.parser = parser;
+      this.context = new ReportContext(parser, STATS_CACHE_SIZE);
+      try {
+         this.workDirectory = Files.createTempDirectory("git-report-server").toFile();
+         this.server = HttpServer.create(address, 0);
+      } catch (IOException e) {
+         context.close();
+         throw e;
+      }
+      this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         final AtomicInteger count = new AtomicInteger(0);
+
+         @Override
+         public Thread newThread(Runnable r) {
+            return new Thread(r, "git-report-server-" + count.incrementAndGet());
+         }
+      });
+      server.setExecutor(executor);
+
+      server.createContext("/report", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            report(exchange);
+         }
+      });
+      server.createContext("/reload", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            context.reload();
+            send(exchange, 200, "reloaded");
+         }
+      });
+      server.createContext("/styles/", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            resource(exchange, ReportAssets.STYLES);
+         }
+      });
+      server.createContext("/images/", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            resource(exchange, ReportAssets.IMAGES);
+         }
+      });
+   }
+
+   public void start() {
+      server.start();
+   }
+
+   public int getPort() {
+      return server.getAddress().getPort();
+   }
+
+   private void report(HttpExchange exchange) throws IOException {
+      try {
+         Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+         String from = query.get("from");
+         String to = query.get("to");
+         if (from == null || to == null) {
+            send(exchange, 400, "use /report?from=X&to=Y");
+            return;
+         }
+         if (Boolean.parseBoolean(query.get("reload"))) {
+            context.reload();
+         }
+         if (context.getRepository().resolve(from) == null || context.getRepository().resolve(to) == null) {
+            send(exchange, 404, "unknown revision on " + from + ".." + to);
+            return;
+         }
+
+         File outputFile = new File(workDirectory, "report-" + reports.incrementAndGet() + ".html");
+         try {
+            parser.parse(context, outputFile, from, to);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, outputFile.length());
+            try (OutputStream out = exchange.getResponseBody()) {
+               Files.copy(outputFile.toPath(), out);
+            }
+         } finally {
+            outputFile.delete();
+         }
+      } catch (Exception e) {
+         e.printStackTrace();
+         send(exchange, 500, String.valueOf(e));
+      } finally {
+         exchange.close();
+      }
+   }
+
+   /**
+    * Sends the resource gzip encoded when the client accepts it, with its SHA-1 as ETag, so a browser holding
+    * the same version gets a 304 and no body.
+    */
+   private static void resource(HttpExchange exchange, String directory) throws IOException {
+      try {
+         String path = exchange.getRequestURI().getPath();
+         ReportAssets.Asset asset = ReportAssets.get(directory, path.substring(path.lastIndexOf('/') + 1));
+         if (asset == null) {
+            send(exchange, 404, "not found");
+            return;
+         }
+         String etag = '"' + asset.getSha1().hex() + '"';
+         exchange.getResponseHeaders().set("ETag", etag);
+         if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+         }
+         exchange.getResponseHeaders().set("Content-Type", asset.getContentType());
+         String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+         ByteString body = asset.getContent();
+         if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            body = asset.getGzip();
+         }
+         exchange.sendResponseHeaders(200, body.size());
+         try (OutputStream out = exchange.getResponseBody()) {
+            body.write(out);
+         }
+      } finally {
+         exchange.close();
+      }
+   }
+
+   private static Map<String, String> query(String rawQuery) throws IOException {
+      Map<String, String> query = new HashMap<>();
+      if (rawQuery != null) {
+         for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+               query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+         }
+      }
+      return query;
+   }
+
+   private static void send(HttpExchange exchange, int code, String message) throws IOException {
+      byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      exchange.sendResponseHeaders(code, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+         out.write(body);
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      server.stop(0);
+      executor.shutdown();
+      try {
+         executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      context.close();
+      workDirectory.delete();
+   }
+}
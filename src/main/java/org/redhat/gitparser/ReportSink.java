@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Receives the report as it is produced, one commit at a time and in the order of the walk.
+ *
+ * All the sinks of a {@link GitParser} are fed on the same pass over the repository.
+ * A sink is opened on {@link #begin}, so the same sink can be used on more than one run,
+ * and {@link #close()} may be called more than once.
+ */
+
+public interface ReportSink extends AutoCloseable {
+
+   void begin(GitParser parser, String from, RevCommit fromCommit, String to, RevCommit toCommit) throws IOException;
+
+   /**
+    * @param issues the resolved JIRAs, on the same order as {@link CommitStats#getJiras()}, null when not available.
+    *               Any of them could be null as well.
+    */
+   void commit(int number, RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException;
+
+   /**
+    * @param totalJiras every JIRA found on the range
+    */
+   void end(Collection<String> totalJiras) throws IOException;
+
+   @Override
+   void close() throws IOException;
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Totals of a report, added up as the commits are reported: churn per author, commits per JIRA issue type and status,
+ * and files changed per interesting folder.
+ *
+ * Each total is a {@link Table}, a row per name and a column per counter. Names are only looked up once per commit,
+ * the counters themselves are long arrays, so a range of 100k commits costs a few hash lookups per commit.
+ *
+ * With {@link GitParser#setMaxRecordsInMemory(int)} the distinct JIRAs and files are counted through a {@link SpillSet}
+ * each, so only the counts are ready after {@link #finish()}.
+ */
+
+public class ReportSummary implements AutoCloseable {
+
+   /**
+    * Counters of a few columns, one row per name, the rows on the order they were first seen.
+    */
+   public static final class Table {
+
+      private final String[] columns;
+      private final HashMap<String, Integer> rows = new HashMap<>();
+      private String[] names = new String[16];
+      // row * columns.length + column
+      private long[] values;
+      private int size;
+
+      Table(String... columns) {
+         this.columns = columns;
+         this.values = new long[names.length * columns.length];
+      }
+
+      /**
+       * The row of the name, added if new.
+       */
+      int row(String name) {
+         Integer row = rows.get(name);
+         return row != null ? row : newRow(name);
+      }
+
+      /**
+       * A new row, even if the name is already there, for rows looked up by their position.
+       * The name keeps its first row.
+       */
+      int newRow(String name) {
+         if (!rows.containsKey(name)) {
+            rows.put(name, size);
+         }
+         if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2 * columns.length);
+         }
+         names[size] = name;
+         return size++;
+      }
+
+      void add(int row, int column, long value) {
+         values[row * columns.length + column] += value;
+      }
+
+      public String[] getColumns() {
+         return columns.clone();
+      }
+
+      public int size() {
+         return size;
+      }
+
+      public String getName(int row) {
+         return names[row];
+      }
+
+      public long get(int row, int column) {
+         return values[row * columns.length + column];
+      }
+
+      /**
+       * The value of the name, 0 if the name is not there.
+       */
+      public long get(String name, int column) {
+         Integer row = rows.get(name);
+         return row == null ? 0 : get(row, column);
+      }
+
+      /**
+       * The rows by the first column, largest first.
+       */
+      public int[] sortedRows() {
+         Integer[] sorted = new Integer[size];
+         for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+         }
+         Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+               long difference = get(b, 0) - get(a, 0);
+               return difference != 0 ? (difference > 0 ? 1 : -1) : a - b;
+            }
+         });
+         int[] result = new int[size];
+         for (int i = 0; i < size; i++) {
+            result[i] = sorted[i];
+         }
+         return result;
+      }
+   }
+
+   public static final int COMMITS = 0;
+   // authors
+   public static final int ADDITION = 1;
+   public static final int REPLACEMENT = 2;
+   public static final int DELETION = 3;
+   // JIRA issue type and status
+   public static final int JIRAS = 1;
+   // interesting folders, FILES is the number of distinct files
+   public static final int CHANGES = 1;
+   public static final int FILES = 2;
+
+   // the name used for the commits with no JIRA, and for the JIRAs that were not resolved
+   static final String NO_JIRA = "No JIRA";
+   static final String UNKNOWN = "Unknown";
+
+   private final Table authors = new Table("Commits", "Add", "Rep", "Del");
+   private final Table jiraStatus = new Table("Commits", "JIRAs");
+   private final Table folders = new Table("Commits", "Changes", "Files");
+   private final HashSet<String> seenJiras = new HashSet<>();
+   private final List<HashSet<String>> folderFiles;
+   private final HashSet<String> commitStatus = new HashSet<>();
+   // bounded memory only, the JIRAs with the name of their row, and the files of each folder
+   private final File spillDirectory;
+   private final SpillSet jiraSpill;
+   private final List<SpillSet> fileSpills;
+   private boolean finished;
+
+   public ReportSummary(GitParser parser) throws IOException {
+      List<String> interestingFolder = parser.getInterestingFolder();
+      folderFiles = new ArrayList<>(interestingFolder.size());
+      // a row per folder as configured, the row of a folder is its position even if two of them have the same name
+      for (String folder : interestingFolder) {
+         folders.newRow(folder);
+         folderFiles.add(new HashSet<String>());
+      }
+      int maxRecordsInMemory = parser.getMaxRecordsInMemory();
+      if (maxRecordsInMemory > 0) {
+         spillDirectory = Files.createTempDirectory("git-report-summary").toFile();
+         jiraSpill = new SpillSet(spillDirectory, "jiras", maxRecordsInMemory);
+         fileSpills = new ArrayList<>(interestingFolder.size());
+         for (int folder = 0; folder < interestingFolder.size(); folder++) {
+            fileSpills.add(new SpillSet(spillDirectory, "files-" + folder, maxRecordsInMemory));
+         }
+      } else {
+         spillDirectory = null;
+         jiraSpill = null;
+         fileSpills = null;
+      }
+   }
+
+   /**
+    * @param issues the resolved JIRAs of the commit, as given to a {@link ReportSink}, null when not resolved
+    */
+   public void add(RevCommit commit, CommitStats stats, JiraIssue[] issues) throws IOException {
+      int author = authors.row(commit.getAuthorIdent().getName());
+      authors.add(author, COMMITS, 1);
+      authors.add(author, ADDITION, stats.getAddition());
+      authors.add(author, REPLACEMENT, stats.getReplacement());
+      authors.add(author, DELETION, stats.getDeletion());
+
+      String[] jiras = stats.getJiras();
+      if (jiras.length == 0) {
+         jiraStatus.add(jiraStatus.row(NO_JIRA), COMMITS, 1);
+      } else {
+         // a commit counts once per status, even with several JIRAs on it
+         commitStatus.clear();
+         for (int i = 0; i < jiras.length; i++) {
+            JiraIssue issue = issues != null ? issues[i] : null;
+            String name = issue != null ? issue.getIssuetype() + "/" + issue.getStatus() : UNKNOWN;
+            int row = jiraStatus.row(name);
+            if (commitStatus.add(name)) {
+               jiraStatus.add(row, COMMITS, 1);
+            }
+            if (jiraSpill != null) {
+               jiraSpill.add(jiras[i] + '\t' + name);
+            } else if (seenJiras.add(jiras[i])) {
+               jiraStatus.add(row, JIRAS, 1);
+            }
+         }
+      }
+
+      for (int folder = 0; folder < folderFiles.size(); folder++) {
+         List<CommitStats.ChangedFile> files = stats.getInterestingChanges(folder);
+         if (!files.isEmpty()) {
+            folders.add(folder, COMMITS, 1);
+            folders.add(folder, CHANGES, files.size());
+            for (int f = 0; f < files.size(); f++) {
+               if (fileSpills != null) {
+                  fileSpills.get(folder).add(files.get(f).getPath());
+               } else if (folderFiles.get(folder).add(files.get(f).getPath())) {
+                  folders.add(folder, FILES, 1);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Counts the distinct JIRAs and files spilled, once all commits are added. Nothing to do unless bounded.
+    */
+   public void finish() throws IOException {
+      if (jiraSpill == null || finished) {
+         return;
+      }
+      finished = true;
+      // sorted by key, a JIRA counts once on the row it was first sorted with
+      String lastJira = null;
+      for (String entry : jiraSpill.sorted()) {
+         int tab = entry.indexOf('\t');
+         String jira = entry.substring(0, tab);
+         if (!jira.equals(lastJira)) {
+            jiraStatus.add(jiraStatus.row(entry.substring(tab + 1)), JIRAS, 1);
+            lastJira = jira;
+         }
+      }
+      for (int folder = 0; folder < fileSpills.size(); folder++) {
+         folders.add(folder, FILES, fileSpills.get(folder).sorted().size());
+      }
+   }
+
+   @Override
+   public void close() {
+      if (spillDirectory != null) {
+         jiraSpill.close();
+         for (SpillSet spill : fileSpills) {
+            spill.close();
+         }
+         spillDirectory.delete();
+      }
+   }
+
+   /**
+    * Commits, Add, Rep and Del per author.
+    */
+   public Table getAuthors() {
+      return authors;
+   }
+
+   /**
+    * Commits and distinct JIRAs per issuetype/status, Unknown for the JIRAs not resolved and No JIRA for the commits with none.
+    */
+   public Table getJiraStatus() {
+      return jiraStatus;
+   }
+
+   /**
+    * Commits, changed files and distinct files per interesting folder, on the same order as the folders.
+    */
+   public Table getFolders() {
+      return folders;
+   }
+}
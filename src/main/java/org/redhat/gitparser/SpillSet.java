@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A set of strings that goes to disk once it holds more than a number of entries, read back sorted.
+ *
+ * Entries are added to a HashSet, written as a sorted run file each time it is full. {@link #sorted()} merges the runs
+ * into a single file, dropping the duplicates, which is then streamed. Only the HashSet and one entry per run
+ * are in memory at any time. When the entries never filled the HashSet nothing is written at all.
+ */
+
+class SpillSet implements AutoCloseable {
+
+   private final File directory;
+   private final String name;
+   private final int maxInMemory;
+   private final HashSet<String> buffer = new HashSet<>();
+   private final List<File> runs = new ArrayList<>();
+   private File merged;
+   private int mergedSize;
+   private Collection<String> sorted;
+
+   SpillSet(File directory, String name, int maxInMemory) {
+      this.directory = directory;
+      this.name = name;
+      this.maxInMemory = maxInMemory;
+   }
+
+   void add(String value) throws IOException {
+      if (sorted != null) {
+         throw new IllegalStateException("already sorted");
+      }
+      if (buffer.add(value) && buffer.size() >= maxInMemory) {
+         spill();
+      }
+   }
+
+   void addAll(String[] values) throws IOException {
+      for (String value : values) {
+         add(value);
+      }
+   }
+
+   private void spill() throws IOException {
+      List<String> values = new ArrayList<>(buffer);
+      Collections.sort(values);
+      File run = new File(directory, name + "-" + runs.size() + ".run");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+         out.writeInt(values.size());
+         for (String value : values) {
+            out.writeUTF(value);
+         }
+      }
+      runs.add(run);
+      buffer.clear();
+   }
+
+   /**
+    * A run file being merged, and its current entry.
+    */
+   private static final class Run {
+
+      final DataInputStream in;
+      int remaining;
+      String head;
+
+      Run(File file) throws IOException {
+         in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+         remaining = in.readInt();
+      }
+
+      boolean next() throws IOException {
+         if (remaining == 0) {
+            in.close();
+            return false;
+         }
+         remaining--;
+         head = in.readUTF();
+         return true;
+      }
+   }
+
+   /**
+    * The distinct entries, sorted. No more entries can be added after this. When on disk, the iterators
+    * read the file as they go and close it at the end, they have to be read to the end.
+    */
+   Collection<String> sorted() throws IOException {
+      if (sorted != null) {
+         return sorted;
+      }
+      if (runs.isEmpty()) {
+         List<String> values = new ArrayList<>(buffer);
+         Collections.sort(values);
+         buffer.clear();
+         sorted = Collections.unmodifiableList(values);
+         return sorted;
+      }
+      if (!buffer.isEmpty()) {
+         spill();
+      }
+
+      merged = new File(directory, name + ".sorted");
+      PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), new Comparator<Run>() {
+         @Override
+         public int compare(Run a, Run b) {
+            return a.head.compareTo(b.head);
+         }
+      });
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged)))) {
+         for (File file : runs) {
+            Run run = new Run(file);
+            if (run.next()) {
+               queue.add(run);
+            }
+         }
+         String last = null;
+         while (!queue.isEmpty()) {
+            Run run = queue.poll();
+            if (!run.head.equals(last)) {
+               out.writeUTF(run.head);
+               last = run.head;
+               mergedSize++;
+            }
+            if (run.next()) {
+               queue.add(run);
+            }
+         }
+      } finally {
+         for (Run run : queue) {
+            run.in.close();
+         }
+         for (File file : runs) {
+            file.delete();
+         }
+         runs.clear();
+      }
+
+      sorted = new AbstractCollection<String>() {
+         @Override
+         public Iterator<String> iterator() {
+            return new MergedIterator();
+         }
+
+         @Override
+         public int size() {
+            return mergedSize;
+         }
+      };
+      return sorted;
+   }
+
+   private final class MergedIterator implements Iterator<String> {
+
+      private DataInputStream in;
+      private int read;
+
+      @Override
+      public boolean hasNext() {
+         return read < mergedSize;
+      }
+
+      @Override
+      public String next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         try {
+            if (in == null) {
+               in = new DataInputStream(new BufferedInputStream(new FileInputStream(merged)));
+            }
+            String value = in.readUTF();
+            if (++read == mergedSize) {
+               in.close();
+            }
+            return value;
+         } catch (IOException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   @Override
+   public void close() {
+      for (File file : runs) {
+         file.delete();
+      }
+      if (merged != null) {
+         merged.delete();
+      }
+   }
+}
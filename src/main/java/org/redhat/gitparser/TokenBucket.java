@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.redhat.gitparser;
+
+/**
+ * Spaces out the requests to a tracker, adapting the rate to how the tracker answers.
+ *
+ * The rate is halved each time the tracker throttles, down to {@link #MIN_RATE}, and grows back a little on each
+ * success, up to the rate given. A throttle can also hold every request for a while, as asked by a Retry-After.
+ * With no rate given only the holds apply.
+ */
+
+final class TokenBucket {
+
+   // requests per second never go below this, however often the tracker throttles
+   static final double MIN_RATE = 0.5;
+
+   private final double maxRate;
+   private final double burst;
+   private double rate;
+   private double tokens;
+   private long last;
+   private long heldUntil;
+
+   /**
+    * @param maxRate requests per second, 0 for no limit
+    * @param burst   requests that can go at once after a quiet period
+    */
+   TokenBucket(double maxRate, int burst) {
+      this.maxRate = maxRate;
+      this.burst = Math.max(1, burst);
+      this.rate = maxRate;
+      this.tokens = this.burst;
+      this.last = System.nanoTime();
+      this.heldUntil = last;
+   }
+
+   /**
+    * Takes a token, and returns how long to wait before using it, in nanoseconds.
+    *
+    * Tokens not there yet are owed, so the requests waiting go out in the order they asked.
+    */
+   synchronized long reserve() {
+      long now = System.nanoTime();
+      long wait = Math.max(0, heldUntil - now);
+      if (maxRate <= 0) {
+         return wait;
+      }
+      tokens = Math.min(burst, tokens + (now - last) * rate / 1e9);
+      last = now;
+      tokens--;
+      if (tokens < 0) {
+         wait = Math.max(wait, (long) (-tokens / rate * 1e9));
+      }
+      return wait;
+   }
+
+   /**
+    * The tracker answered 429 or 503, holding every request for the given time.
+    */
+   synchronized void throttled(long holdNanos) {
+      if (maxRate > 0) {
+         rate = Math.max(Math.min(MIN_RATE, maxRate), rate / 2);
+      }
+      long now = System.nanoTime();
+      if (now + holdNanos - heldUntil > 0) {
+         heldUntil = now + holdNanos;
+      }
+   }
+
+   synchronized void succeeded() {
+      if (maxRate > 0) {
+         rate = Math.min(maxRate, rate + maxRate / 20);
+      }
+   }
+
+   /**
+    * Requests per second allowed now, 0 for no limit.
+    */
+   synchronized double getRate() {
+      return rate;
+   }
+}
@@ -18,8 +18,6 @@
 package org.redhat.gitparser;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 
 /**
  * @author Clebert Suconic
@@ -30,19 +28,14 @@ public class WildflyParser {
    public static void main(String arg[]) {
       try {
          if (arg.length < 4) {
-            System.err.println("use Parser <repository> <reportOutput> <from> <to>");
+            System.err.println("use Parser <repository> <reportOutput> <from> <to> [--resume]");
             System.exit(-1);
          }
 
-         GitParser parser = new GitParser(new File(arg[0]), "WFLY-", "https://issues.jboss.org/browse/", "https://github.com/wildfly/wildfly/").
-            setSourceSuffix(".java", ".md", ".c", ".sh", ".groovy", ".adoc").
-            setSampleJQL("https://issues.jboss.org/issues/?jql=project%20%3D%20WildFly%20AND%20KEY%20IN");
-         parser.addInterestingfolder("test").addInterestingfolder("docs/");
-
+         GitParser parser = ReportProfile.builtin("wildfly").newParser(new File(arg[0])).
+            setCheckpointInterval(ArtemisParser.CHECKPOINT_INTERVAL).setResume(arg.length > 4 && arg[4].equals("--resume"));
          File file = new File(arg[1]);
 
-         parser.setRestLocation("https://issues.jboss.org/rest/api/2/issue/");
-
          parser.parse(file, arg[2], arg[3]);
 
       } catch (Exception e) {
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchParseTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void overlappingRanges() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      try (Git git = Git.open(repository);
+           RevWalk walk = new RevWalk(git.getRepository())) {
+         git.tag().setName("middle").setObjectId(walk.parseCommit(git.getRepository().resolve("end~10"))).call();
+      }
+
+      File directory = temporaryFolder.newFolder("batch");
+      GitParser parser = ParallelParseTest.newParser(repository).setParallelism(2);
+      parser.parse(directory, Arrays.asList(ReportRange.parse("start..middle"), ReportRange.parse("middle..end"), ReportRange.parse("start..end")));
+
+      // every commit is diffed once, even if reported twice
+      Assert.assertEquals(40, parser.getMetrics().getCommitsWalked());
+      Assert.assertEquals(20, parser.getMetrics().getCommitsDiffed());
+
+      for (String range : new String[] {"start..middle", "middle..end", "start..end"}) {
+         ReportRange reportRange = ReportRange.parse(range);
+         File single = new File(temporaryFolder.newFolder(), "report.html");
+         ParallelParseTest.newParser(repository).parse(single, reportRange.getFrom(), reportRange.getTo());
+
+         File batch = new File(directory, reportRange.getFileName());
+         Assert.assertEquals(range, new String(Files.readAllBytes(single.toPath())), new String(Files.readAllBytes(batch.toPath())));
+      }
+
+      String index = new String(Files.readAllBytes(new File(directory, "index.html").toPath()));
+      Assert.assertTrue(index, index.contains("<a href='start..middle.html'>start..middle</a></td><td>10</td><td>5</td>"));
+      Assert.assertTrue(index, index.contains("<a href='start..end.html'>start..end</a></td><td>20</td><td>5</td>"));
+      Assert.assertTrue(new File(directory, "styles/jquery.min.js").exists());
+   }
+}
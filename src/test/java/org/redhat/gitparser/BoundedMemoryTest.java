@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockWebServer;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BoundedMemoryTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void spillSet() throws Exception {
+      File directory = temporaryFolder.newFolder("spill");
+      try (SpillSet set = new SpillSet(directory, "keys", 10)) {
+         for (int i = 0; i < 1000; i++) {
+            set.add("key-" + (i * 7 % 100));
+         }
+         // runs of 10 entries each, merged into one file
+         Assert.assertTrue(directory.list().length > 1);
+
+         List<String> sorted = new ArrayList<>(set.sorted());
+         Assert.assertEquals(100, set.sorted().size());
+         Assert.assertEquals(100, sorted.size());
+         for (int i = 1; i < sorted.size(); i++) {
+            Assert.assertTrue(sorted.get(i - 1).compareTo(sorted.get(i)) < 0);
+         }
+         Assert.assertEquals(Arrays.asList(new File(directory, "keys.sorted").getName()), Arrays.asList(directory.list()));
+      }
+      Assert.assertEquals(0, directory.list().length);
+   }
+
+   @Test
+   public void spillSetInMemory() throws Exception {
+      File directory = temporaryFolder.newFolder("spill");
+      try (SpillSet set = new SpillSet(directory, "keys", 10)) {
+         set.addAll(new String[] {"b", "a", "b"});
+         Assert.assertEquals(Arrays.asList("a", "b"), new ArrayList<>(set.sorted()));
+         Assert.assertEquals(0, directory.list().length);
+      }
+   }
+
+   @Test
+   public void boundedMatchesInMemory() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 40);
+
+      File inMemory = new File(temporaryFolder.newFolder("inMemory"), "report.html");
+      ParallelParseTest.newParser(repository).parse(inMemory, "start", "end");
+
+      File bounded = new File(temporaryFolder.newFolder("bounded"), "report.html");
+      GitParser parser = ParallelParseTest.newParser(repository).setMaxRecordsInMemory(2).setParallelism(2);
+      parser.parse(bounded, "start", "end");
+
+      Assert.assertEquals(new String(Files.readAllBytes(inMemory.toPath())), new String(Files.readAllBytes(bounded.toPath())));
+      Assert.assertEquals(40, parser.getMetrics().getCommitsWalked());
+      Assert.assertTrue(parser.getTotalJiras().isEmpty());
+   }
+
+   @Test
+   public void boundedSampleJQL() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 10);
+      File output = new File(temporaryFolder.newFolder("bounded"), "report.html");
+      ParallelParseTest.newParser(repository).setSampleJQL("https://issues.apache.org/jira/issues/?jql=key%20in%20").setMaxRecordsInMemory(2).
+         parse(output, "start", "end");
+
+      String html = new String(Files.readAllBytes(output.toPath()));
+      Assert.assertTrue(html, html.contains("(ARTEMIS-100%2CARTEMIS-101%2CARTEMIS-102%2CARTEMIS-103%2CARTEMIS-104)'>5 JIRAS on this Report"));
+   }
+
+   @Test
+   public void boundedBatch() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      try (Git git = Git.open(repository);
+           RevWalk walk = new RevWalk(git.getRepository())) {
+         git.tag().setName("middle").setObjectId(walk.parseCommit(git.getRepository().resolve("end~10"))).call();
+      }
+      List<ReportRange> ranges = Arrays.asList(ReportRange.parse("start..middle"), ReportRange.parse("start..end"));
+
+      File inMemory = temporaryFolder.newFolder("inMemory");
+      ParallelParseTest.newParser(repository).parse(inMemory, ranges);
+      File bounded = temporaryFolder.newFolder("bounded");
+      GitParser parser = ParallelParseTest.newParser(repository).setMaxRecordsInMemory(2);
+      parser.parse(bounded, ranges);
+
+      // no stats shared between the ranges
+      Assert.assertEquals(30, parser.getMetrics().getCommitsDiffed());
+      for (ReportRange range : ranges) {
+         Assert.assertEquals(new String(Files.readAllBytes(new File(inMemory, range.getFileName()).toPath())),
+                             new String(Files.readAllBytes(new File(bounded, range.getFileName()).toPath())));
+      }
+   }
+
+   @Test
+   public void boundedStatsStore() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 30);
+      File cache = temporaryFolder.newFolder("cache");
+
+      // stored in memory first, then read back through the offsets
+      ParallelParseTest.newParser(repository).setCacheDirectory(cache).parse(new File(temporaryFolder.newFolder("previous"), "report.html"), "start", "end~10");
+      File bounded = new File(temporaryFolder.newFolder("bounded"), "report.html");
+      GitParser parser = ParallelParseTest.newParser(repository).setCacheDirectory(cache).setMaxRecordsInMemory(2);
+      parser.parse(bounded, "start", "end");
+      Assert.assertEquals(10, parser.getMetrics().getCommitsDiffed());
+
+      File inMemory = new File(temporaryFolder.newFolder("inMemory"), "report.html");
+      ParallelParseTest.newParser(repository).parse(inMemory, "start", "end");
+      Assert.assertEquals(new String(Files.readAllBytes(inMemory.toPath())), new String(Files.readAllBytes(bounded.toPath())));
+
+      try (CommitStatsStore memoryStore = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+           CommitStatsStore indexedStore = new CommitStatsStore(cache, ParallelParseTest.newParser(repository).setMaxRecordsInMemory(2))) {
+         Assert.assertEquals(30, indexedStore.size());
+         String id;
+         try (Git git = Git.open(repository)) {
+            id = git.getRepository().resolve("end^{commit}").name();
+         }
+         Assert.assertEquals(memoryStore.get(id).getTotal(), indexedStore.get(id).getTotal());
+         Assert.assertNull(indexedStore.get("0000000000000000000000000000000000000000"));
+
+         // written and read back before the output is flushed
+         CommitStats stats = new CommitStats("1111111111111111111111111111111111111111", 2);
+         stats.addition = 7;
+         indexedStore.put(stats);
+         Assert.assertEquals(7, indexedStore.get(stats.getId()).getAddition());
+         Assert.assertEquals(31, indexedStore.size());
+      }
+   }
+
+   @Test
+   public void boundedSummary() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 40);
+      File inMemory = temporaryFolder.newFolder("inMemory");
+      File bounded = temporaryFolder.newFolder("bounded");
+
+      try (MockWebServer server = new MockWebServer()) {
+         server.setDispatcher(new JiraResolverTest.JiraDispatcher());
+         server.start();
+         String restLocation = server.url("/rest/api/2/issue/").toString();
+
+         ParallelParseTest.newParser(repository).setQuiet(true).setSummary(true).setRestLocation(restLocation).
+            addSink(new JsonLinesSink(new File(inMemory, "report.jsonl"))).parse(new File(inMemory, "report.html"), "start", "end");
+         ParallelParseTest.newParser(repository).setQuiet(true).setSummary(true).setRestLocation(restLocation).setMaxRecordsInMemory(2).
+            addSink(new JsonLinesSink(new File(bounded, "report.jsonl"))).parse(new File(bounded, "report.html"), "start", "end");
+      }
+
+      for (String name : new String[] {"report.html", "report.jsonl"}) {
+         Assert.assertEquals(new String(Files.readAllBytes(new File(inMemory, name).toPath())), new String(Files.readAllBytes(new File(bounded, name).toPath())));
+      }
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+   // the loose object of a file on the last commit, moved away to make the run fail there
+   private File brokenObject;
+   private File movedObject;
+
+   @Before
+   public void createRepository() throws Exception {
+      repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 300);
+      try (Git git = Git.open(repository)) {
+         ObjectId blob = git.getRepository().resolve("end:src/main/Main.java");
+         brokenObject = new File(repository, ".git/objects/" + blob.name().substring(0, 2) + "/" + blob.name().substring(2));
+      }
+      Assert.assertTrue(brokenObject.exists());
+      movedObject = new File(temporaryFolder.getRoot(), "object");
+   }
+
+   private void breakRepository() {
+      Assert.assertTrue(brokenObject.renameTo(movedObject));
+   }
+
+   private void fixRepository() {
+      Assert.assertTrue(movedObject.renameTo(brokenObject));
+   }
+
+   private GitParser newParser() {
+      // a checkpoint after every batch of commits
+      return ParallelParseTest.newParser(repository).setQuiet(true).setCheckpointInterval(1);
+   }
+
+   private static void assertSameFiles(File expected, File actual) throws Exception {
+      String[] names = expected.list();
+      Arrays.sort(names);
+      String[] actualNames = actual.list();
+      Arrays.sort(actualNames);
+      Assert.assertArrayEquals(names, actualNames);
+      for (String name : names) {
+         File file = new File(expected, name);
+         if (file.isDirectory()) {
+            assertSameFiles(file, new File(actual, name));
+         } else {
+            Assert.assertEquals(name, new String(Files.readAllBytes(file.toPath())), new String(Files.readAllBytes(new File(actual, name).toPath())));
+         }
+      }
+   }
+
+   /**
+    * Fails the run on the last commit, after the checkpoint of the first batch, and resumes it.
+    */
+   private void resume(GitParser parser, GitParser resumed) throws Exception {
+      File expected = new File(temporaryFolder.newFolder("expected"), "report.html");
+      newParser().setPageSize(parser.getPageSize()).setSummary(parser.isSummary()).parse(expected, "start", "end");
+
+      File output = new File(temporaryFolder.newFolder("output"), "report.html");
+      File checkpoint = new File(output.getPath() + ".checkpoint");
+      breakRepository();
+      try {
+         parser.parse(output, "start", "end");
+         Assert.fail("the object of the last commit is missing");
+      } catch (Exception expectedFailure) {
+      }
+      fixRepository();
+      Assert.assertTrue(checkpoint.exists());
+      Assert.assertEquals(256, ReportCheckpoint.load(checkpoint).getCommits());
+
+      resumed.setResume(true).parse(output, "start", "end");
+      Assert.assertFalse(checkpoint.exists());
+      // the commits written are only diffed again for the summary
+      Assert.assertEquals(resumed.isSummary() ? 300 : 44, resumed.getMetrics().getCommitsDiffed());
+      // with no cache directory nothing comes from the stats store
+      Assert.assertEquals(0, resumed.getMetrics().getStatsStoreHits());
+      assertSameFiles(expected.getParentFile(), output.getParentFile());
+   }
+
+   @Test
+   public void resumeSinglePage() throws Exception {
+      resume(newParser(), newParser());
+   }
+
+   @Test
+   public void resumePagedWithSummary() throws Exception {
+      // 2 data files complete and 56 rows on the third at the checkpoint
+      resume(newParser().setPageSize(100).setSummary(true), newParser().setPageSize(100).setSummary(true));
+   }
+
+   @Test
+   public void resumeRanges() throws Exception {
+      List<ReportRange> ranges = Arrays.asList(ReportRange.parse("start..end~100"), ReportRange.parse("end~100..end"));
+      File expected = temporaryFolder.newFolder("expected");
+      newParser().parse(expected, ranges);
+
+      File output = temporaryFolder.newFolder("output");
+      breakRepository();
+      try {
+         newParser().parse(output, ranges);
+         Assert.fail("the object of the last commit is missing");
+      } catch (Exception expectedFailure) {
+      }
+      fixRepository();
+      ReportCheckpoint checkpoint = ReportCheckpoint.load(new File(output, "index.checkpoint"));
+      Assert.assertEquals(1, checkpoint.getRangesDone());
+      Assert.assertEquals(Arrays.asList(200, 5), Arrays.asList(checkpoint.getResult(0)[0], checkpoint.getResult(0)[1]));
+
+      GitParser resumed = newParser().setResume(true);
+      resumed.parse(output, ranges);
+      Assert.assertEquals(100, resumed.getMetrics().getCommitsWalked());
+      assertSameFiles(expected, output);
+      Assert.assertEquals(5, resumed.getTotalJiras().size());
+   }
+
+   @Test
+   public void resumeAnotherRange() throws Exception {
+      File output = new File(temporaryFolder.newFolder("output"), "report.html");
+      breakRepository();
+      try {
+         newParser().parse(output, "start", "end");
+         Assert.fail("the object of the last commit is missing");
+      } catch (Exception expectedFailure) {
+      }
+      fixRepository();
+
+      // the end of the range moved
+      try (Git git = Git.open(repository)) {
+         git.tag().setName("end").setObjectId(git.getRepository().parseCommit(git.getRepository().resolve("end~1"))).setForceUpdate(true).call();
+      }
+      try {
+         newParser().setResume(true).parse(output, "start", "end");
+         Assert.fail("the checkpoint is of another range");
+      } catch (IllegalStateException e) {
+      }
+
+      // with no resume the run starts over
+      newParser().parse(output, "start", "end");
+      Assert.assertFalse(new File(output.getPath() + ".checkpoint").exists());
+   }
+
+   @Test
+   public void resumeAnotherMemoryBound() throws Exception {
+      File output = new File(temporaryFolder.newFolder("output"), "report.html");
+      breakRepository();
+      try {
+         newParser().setMaxRecordsInMemory(100).parse(output, "start", "end");
+         Assert.fail("the object of the last commit is missing");
+      } catch (Exception expectedFailure) {
+      }
+      fixRepository();
+
+      try {
+         newParser().setResume(true).parse(output, "start", "end");
+         Assert.fail("the checkpoint is of another memory bound");
+      } catch (IllegalStateException e) {
+      }
+   }
+
+   @Test
+   public void resumeAnotherEnumeration() throws Exception {
+      File output = new File(temporaryFolder.newFolder("output"), "report.html");
+      breakRepository();
+      try {
+         newParser().parse(output, "start", "end");
+         Assert.fail("the object of the last commit is missing");
+      } catch (Exception expectedFailure) {
+      }
+      fixRepository();
+
+      // the commits with the same time could come in another order
+      try {
+         newParser().setFastEnumeration(true).setResume(true).parse(output, "start", "end");
+         Assert.fail("the checkpoint is of another enumeration");
+      } catch (IllegalStateException e) {
+      }
+   }
+}
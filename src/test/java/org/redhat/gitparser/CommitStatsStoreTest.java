@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommitStatsStoreTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void incrementalReport() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 30);
+      File cache = temporaryFolder.newFolder("cache");
+
+      // the previous report, 10 commits shorter
+      ParallelParseTest.newParser(repository).setCacheDirectory(cache).parse(new File(temporaryFolder.newFolder("previous"), "report.html"), "start", "end~10");
+
+      CommitStatsStore store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      Assert.assertEquals(20, store.size());
+      store.close();
+
+      File incremental = new File(temporaryFolder.newFolder("incremental"), "report.html");
+      ParallelParseTest.newParser(repository).setCacheDirectory(cache).parse(incremental, "start", "end");
+
+      File full = new File(temporaryFolder.newFolder("full"), "report.html");
+      ParallelParseTest.newParser(repository).parse(full, "start", "end");
+
+      Assert.assertEquals(new String(Files.readAllBytes(full.toPath())), new String(Files.readAllBytes(incremental.toPath())));
+
+      store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      Assert.assertEquals(30, store.size());
+      store.close();
+
+      // a different configuration can't reuse the stats
+      GitParser otherParser = ParallelParseTest.newParser(repository).addInterestingfolder("examples/");
+      store = new CommitStatsStore(cache, otherParser);
+      Assert.assertEquals(0, store.size());
+      store.close();
+   }
+
+   @Test
+   public void truncatedRecord() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 5);
+      File cache = temporaryFolder.newFolder("cache");
+      ParallelParseTest.newParser(repository).setCacheDirectory(cache).parse(new File(temporaryFolder.newFolder("out"), "report.html"), "start", "end");
+
+      File[] files = cache.listFiles();
+      Assert.assertEquals(1, files.length);
+      try (RandomAccessFile file = new RandomAccessFile(files[0], "rw")) {
+         file.setLength(file.length() - 3);
+      }
+
+      CommitStatsStore store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      Assert.assertEquals(4, store.size());
+      store.close();
+
+      // the broken record is replaced
+      ParallelParseTest.newParser(repository).setCacheDirectory(cache).parse(new File(temporaryFolder.newFolder("again"), "report.html"), "start", "end");
+      store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      Assert.assertEquals(5, store.size());
+      store.close();
+   }
+
+   @Test
+   public void manyRanges() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 1);
+      File cache = temporaryFolder.newFolder("cache");
+
+      // more ranges and JIRAs than a short can count, as on a generated file
+      int count = 40000;
+      int[] ranges = new int[count * 2];
+      String[] jiras = new String[count];
+      for (int i = 0; i < count; i++) {
+         ranges[i * 2] = i * 20 + 1;
+         ranges[i * 2 + 1] = i * 20 + 2;
+         jiras[i] = "ARTEMIS-" + i;
+      }
+      CommitStats stats = new CommitStats("0123456789012345678901234567890123456789", 2);
+      stats.setJiras(jiras);
+      stats.interestingChanges.get(0).add(new CommitStats.ChangedFile("src/test/Generated.java", null, false, ranges));
+
+      CommitStatsStore store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      store.put(stats);
+      store.close();
+
+      store = new CommitStatsStore(cache, ParallelParseTest.newParser(repository));
+      CommitStats loaded = store.get(stats.getId());
+      store.close();
+      Assert.assertEquals(count, loaded.getJiras().length);
+      CommitStats.ChangedFile file = loaded.getInterestingChanges(0).get(0);
+      Assert.assertEquals(count, file.getRangeCount());
+      Assert.assertEquals((count - 1) * 20 + 2, file.getRangeLast(count - 1));
+   }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiffSettingsTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+
+   /**
+    * On top of the usual commits, indents every line of a source file, and adds a large file and a binary one.
+    */
+   @Before
+   public void createRepository() throws Exception {
+      repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 2);
+      try (Git git = Git.open(repository)) {
+         File main = new File(repository, "src/main/Main.java");
+         List<String> lines = Files.readAllLines(main.toPath());
+         for (int i = 0; i < lines.size(); i++) {
+            lines.set(i, "   " + lines.get(i));
+         }
+         Files.write(main.toPath(), lines);
+
+         ParallelParseTest.writeFile(new File(repository, "src/main/Big.java"), 2000, 0);
+
+         byte[] binary = new byte[100];
+         binary[10] = 1;
+         Files.write(new File(repository, "src/main/Data.java").toPath(), binary);
+
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("ARTEMIS-200 reformat").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("reformat").call();
+      }
+   }
+
+   @Test
+   public void defaults() throws Exception {
+      CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository), "reformat");
+      Assert.assertEquals(22, stats.getReplacement());
+      Assert.assertEquals(2000, stats.getAddition());
+   }
+
+   @Test
+   public void ignoreWhitespace() throws Exception {
+      CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository).setIgnoreWhitespace(true), "reformat");
+      Assert.assertEquals(0, stats.getReplacement());
+      Assert.assertEquals(2000, stats.getAddition());
+   }
+
+   @Test
+   public void algorithms() throws Exception {
+      for (DiffAlgorithm.SupportedAlgorithm algorithm : DiffAlgorithm.SupportedAlgorithm.values()) {
+         CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository).setDiffAlgorithm(algorithm), "reformat");
+         Assert.assertEquals(algorithm.toString(), 22, stats.getReplacement());
+      }
+   }
+
+   @Test
+   public void maxDiffBytes() throws Exception {
+      File output = new File(temporaryFolder.newFolder("report"), "report.html");
+      GitParser parser = ParallelParseTest.newParser(repository).setMaxDiffBytes(10000);
+      parser.parse(output, "end", "reformat");
+      // the binary file, and the large one counted by its lines
+      Assert.assertEquals(2, parser.getMetrics().getDiffsSkipped());
+
+      CommitStats stats = ParallelParseTest.diff(parser, "reformat");
+      Assert.assertEquals(22, stats.getReplacement());
+      Assert.assertEquals(2000, stats.getAddition());
+
+      parser = ParallelParseTest.newParser(repository);
+      parser.parse(output, "end", "reformat");
+      Assert.assertEquals(1, parser.getMetrics().getDiffsSkipped());
+   }
+
+   @Test
+   public void maxDiffBytesBinary() throws Exception {
+      File big = new File(repository, "src/main/Big.java");
+      try (Git git = Git.open(repository)) {
+         byte[] binary = new byte[20000];
+         binary[10] = 1;
+         Files.write(big.toPath(), binary);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("ARTEMIS-201 binary").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("binary").call();
+
+         ParallelParseTest.writeFile(big, 2000, 0);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("ARTEMIS-202 text").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("text").call();
+      }
+
+      // a binary side is not counted, whichever way the large file changes
+      GitParser parser = ParallelParseTest.newParser(repository).setMaxDiffBytes(10000);
+      CommitStats stats = ParallelParseTest.diff(parser, "binary");
+      Assert.assertEquals(0, stats.getAddition());
+      Assert.assertEquals(0, stats.getDeletion());
+      stats = ParallelParseTest.diff(parser, "text");
+      Assert.assertEquals(0, stats.getAddition());
+      Assert.assertEquals(0, stats.getDeletion());
+   }
+}
@@ -51,4 +51,29 @@ public class JiraReplaceTest {
       String output = parser.prettyCommitMessage("ARTEMIS-123");
       Assert.assertEquals("<a href='" + parser.getJiraBrowseURI() + "ARTEMIS-123'>ARTEMIS-123</a>", output);
    }
+
+   @Test
+   public void multipleProjects() {
+      JiraKeyScanner scanner = new JiraKeyScanner("ARTEMIS-", "AMQ-", "ENTMQBR-");
+      JiraKeyScanner.Matches matches = scanner.scan("ENTMQBR-12 [ARTEMIS-110] backport of AMQ-7 and ARTEMIS-110, not XAMQ-3 or AMQ-");
+
+      Assert.assertEquals(4, matches.size());
+      Assert.assertEquals("ENTMQBR-12", matches.key(0));
+      Assert.assertEquals("ARTEMIS-110", matches.key(1));
+      Assert.assertEquals(12, matches.start(1));
+      Assert.assertEquals(23, matches.end(1));
+      Assert.assertEquals("AMQ-7", matches.key(2));
+      Assert.assertEquals("ARTEMIS-110", matches.key(3));
+
+      Assert.assertArrayEquals(new String[] {"ENTMQBR-12", "ARTEMIS-110", "AMQ-7"}, matches.keys());
+   }
+
+   @Test
+   public void replaceMultipleProjects() {
+      GitParser parser = new GitParser(new File("../"),"ARTEMIS-", "https://issues.apache.org/jira/browse/", "https://github.com/apache/activemq-artemis/").
+         addJiraPrefix("AMQ-");
+      String output = parser.prettyCommitMessage("ARTEMIS-12 AMQ-1");
+      Assert.assertEquals("<a href='" + parser.getJiraBrowseURI() + "ARTEMIS-12'>ARTEMIS-12</a> <a href='" + parser.getJiraBrowseURI() + "AMQ-1'>AMQ-1</a>", output);
+      Assert.assertEquals(2, parser.getTotalJiras().size());
+   }
 }
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JiraResilienceTest {
+
+   /**
+    * A tracker answering the first requests of each key with a fault, then with the issue.
+    */
+   static class FaultyDispatcher extends Dispatcher {
+
+      final ConcurrentHashMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+      final AtomicInteger total = new AtomicInteger();
+      // faults per key before the issue is served, -1 for always
+      volatile int faults = 1;
+      volatile MockResponse fault = new MockResponse().setResponseCode(503);
+      // latency before each fault
+      volatile long delayMillis;
+      // keys always served with no fault
+      volatile String healthy = "";
+
+      int requests(String key) {
+         AtomicInteger count = requests.get(key);
+         return count == null ? 0 : count.get();
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         total.incrementAndGet();
+         String path = request.getRequestUrl().encodedPath();
+         String key = path.substring(path.lastIndexOf('/') + 1);
+         requests.putIfAbsent(key, new AtomicInteger());
+         int count = requests.get(key).incrementAndGet();
+         if (!key.equals(healthy) && (faults < 0 || count <= faults)) {
+            Thread.sleep(delayMillis);
+            return fault;
+         }
+         return new MockResponse().setBody(JiraResolverTest.JiraDispatcher.issueJson("Open"));
+      }
+   }
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   MockWebServer server;
+   FaultyDispatcher dispatcher;
+
+   @Before
+   public void startServer() throws Exception {
+      server = new MockWebServer();
+      dispatcher = new FaultyDispatcher();
+      server.setDispatcher(dispatcher);
+      server.start();
+   }
+
+   @After
+   public void stopServer() throws Exception {
+      server.shutdown();
+   }
+
+   String restLocation() {
+      return server.url("/rest/api/2/issue/").toString();
+   }
+
+   @Test
+   public void readTimeout() throws Exception {
+      dispatcher.fault = new MockResponse().setBody(JiraResolverTest.JiraDispatcher.issueJson("Open"));
+      dispatcher.delayMillis = 1000;
+      ReportMetrics metrics = new ReportMetrics();
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setTimeouts(1000, 200).setRetries(3, 10).setMetrics(metrics).setQuiet(true)) {
+         long start = System.nanoTime();
+         Assert.assertEquals("Major/Bug/ /Open", resolver.get("ARTEMIS-1").toString());
+         Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+         Assert.assertTrue(resolver.getDegraded().isEmpty());
+      }
+      Assert.assertEquals(2, dispatcher.requests("ARTEMIS-1"));
+      Assert.assertEquals(1, metrics.getRestFailures());
+      Assert.assertEquals(1, metrics.getRestRetries());
+   }
+
+   @Test
+   public void retryAfter() throws Exception {
+      dispatcher.fault = new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+      ReportMetrics metrics = new ReportMetrics();
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setRetries(3, 10).setMetrics(metrics).setQuiet(true)) {
+         long start = System.nanoTime();
+         Assert.assertNotNull(resolver.get("ARTEMIS-1"));
+         Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+         Assert.assertNotNull(resolver.get("ARTEMIS-2"));
+      }
+      // each key is throttled once
+      Assert.assertEquals(2, dispatcher.requests("ARTEMIS-1"));
+      Assert.assertEquals(2, dispatcher.requests("ARTEMIS-2"));
+      Assert.assertEquals(2, metrics.getRestRetries());
+   }
+
+   @Test
+   public void retriesExhausted() throws Exception {
+      dispatcher.faults = -1;
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setRetries(2, 10).setCircuitBreaker(0, 0).setQuiet(true)) {
+         Assert.assertNull(resolver.get("ARTEMIS-1"));
+         Assert.assertTrue(resolver.isDegraded("ARTEMIS-1"));
+      }
+      Assert.assertEquals(3, dispatcher.requests("ARTEMIS-1"));
+   }
+
+   @Test
+   public void rateLimit() throws Exception {
+      dispatcher.faults = 0;
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 4).setRateLimit(20, 1).setQuiet(true)) {
+         long start = System.nanoTime();
+         resolver.prefetch(Arrays.asList("ARTEMIS-1", "ARTEMIS-2", "ARTEMIS-3", "ARTEMIS-4", "ARTEMIS-5", "ARTEMIS-6"));
+         for (int i = 1; i <= 6; i++) {
+            Assert.assertNotNull(resolver.get("ARTEMIS-" + i));
+         }
+         // one at once, then one every 50 ms
+         Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 240);
+      }
+   }
+
+   @Test
+   public void adaptiveRate() {
+      TokenBucket bucket = new TokenBucket(8, 1);
+      bucket.throttled(0);
+      Assert.assertEquals(4, bucket.getRate(), 0.001);
+      for (int i = 0; i < 10; i++) {
+         bucket.throttled(0);
+      }
+      Assert.assertEquals(TokenBucket.MIN_RATE, bucket.getRate(), 0.001);
+      for (int i = 0; i < 100; i++) {
+         bucket.succeeded();
+      }
+      Assert.assertEquals(8, bucket.getRate(), 0.001);
+
+      bucket.throttled(TimeUnit.SECONDS.toNanos(5));
+      Assert.assertTrue(bucket.reserve() > TimeUnit.SECONDS.toNanos(4));
+   }
+
+   @Test
+   public void circuitBreaker() throws Exception {
+      dispatcher.faults = -1;
+      ReportMetrics metrics = new ReportMetrics();
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 1).setRetries(0, 10).setCircuitBreaker(2, 300).setMetrics(metrics).setQuiet(true)) {
+         for (int i = 1; i <= 10; i++) {
+            Assert.assertNull(resolver.get("ARTEMIS-" + i));
+         }
+         // only the requests opening the breaker went out
+         Assert.assertEquals(2, dispatcher.total.get());
+         Assert.assertEquals(10, resolver.getDegraded().size());
+         Assert.assertEquals(10, metrics.getJiraDegraded());
+
+         // the trial request once the breaker is half open closes it again
+         Thread.sleep(400);
+         dispatcher.faults = 0;
+         Assert.assertNotNull(resolver.get("ARTEMIS-11"));
+         Assert.assertNotNull(resolver.get("ARTEMIS-12"));
+         Assert.assertFalse(resolver.isDegraded("ARTEMIS-11"));
+      }
+   }
+
+   @Test
+   public void sharedLimiter() throws Exception {
+      dispatcher.faults = 0;
+      JiraLimiter limiter = new JiraLimiter(new TokenBucket(20, 1), new CircuitBreaker(2, 60000));
+      try (JiraResolver first = new JiraResolver(restLocation(), 4).setLimiter(limiter).setRetries(0, 10).setQuiet(true);
+           JiraResolver second = new JiraResolver(restLocation(), 4).setLimiter(limiter).setRetries(0, 10).setQuiet(true)) {
+         long start = System.nanoTime();
+         first.prefetch(Arrays.asList("ARTEMIS-1", "ARTEMIS-2", "ARTEMIS-3"));
+         second.prefetch(Arrays.asList("ARTEMIS-4", "ARTEMIS-5", "ARTEMIS-6"));
+         for (int i = 1; i <= 6; i++) {
+            Assert.assertNotNull((i <= 3 ? first : second).get("ARTEMIS-" + i));
+         }
+         // one rate for both, one at once then one every 50 ms
+         Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 240);
+
+         // the failures of one open the breaker for the other
+         dispatcher.faults = -1;
+         Assert.assertNull(first.get("ARTEMIS-7"));
+         Assert.assertNull(first.get("ARTEMIS-8"));
+         Assert.assertEquals(CircuitBreaker.State.OPEN, limiter.breaker.getState());
+         int sent = dispatcher.total.get();
+         Assert.assertNull(second.get("ARTEMIS-9"));
+         Assert.assertTrue(second.isDegraded("ARTEMIS-9"));
+         Assert.assertEquals(sent, dispatcher.total.get());
+      }
+   }
+
+   @Test
+   public void halfOpenFailure() {
+      CircuitBreaker breaker = new CircuitBreaker(1, 0);
+      Assert.assertTrue(breaker.allow());
+      breaker.failure();
+      Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+      // the open time is over, one trial only
+      Assert.assertTrue(breaker.allow());
+      Assert.assertFalse(breaker.allow());
+      breaker.failure();
+      Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+      Assert.assertTrue(breaker.allow());
+      breaker.success();
+      Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+   }
+
+   @Test
+   public void staleEntryOnFailure() throws Exception {
+      File directory = temporaryFolder.newFolder("cache");
+      JiraCache cache = new JiraCache(directory, "test");
+      cache.put(new JiraIssue("ARTEMIS-1", "Bug", "Open", " ", "Major"));
+      cache.save();
+      // fetched long ago, the entry has expired
+      File file = new File(directory, "jira-test.cache");
+      String line = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      Files.write(file.toPath(), line.replaceFirst("\t[0-9]+\t", "\t0\t").getBytes(StandardCharsets.UTF_8));
+      cache = new JiraCache(directory, "test");
+      Assert.assertNull(cache.get("ARTEMIS-1"));
+
+      dispatcher.faults = -1;
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setCache(cache).setRetries(0, 10).setQuiet(true)) {
+         Assert.assertEquals("Major/Bug/ /Open", resolver.get("ARTEMIS-1").toString());
+         Assert.assertFalse(resolver.isDegraded("ARTEMIS-1"));
+      }
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-1"));
+   }
+
+   @Test
+   public void retryAfterHeader() {
+      Assert.assertEquals(-1, JiraResolver.retryAfter(null));
+      Assert.assertEquals(-1, JiraResolver.retryAfter("soon"));
+      Assert.assertEquals(120000, JiraResolver.retryAfter(" 120 "));
+      Assert.assertEquals(0, JiraResolver.retryAfter("Thu, 01 Jan 1970 00:00:00 GMT"));
+   }
+
+   @Test
+   public void degradedOnReport() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      File output = new File(temporaryFolder.newFolder("report"), "report.html");
+
+      // ARTEMIS-100 is served, the tracker then asks to come back in an hour
+      dispatcher.faults = -1;
+      dispatcher.healthy = "ARTEMIS-100";
+      dispatcher.fault = new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600");
+      dispatcher.delayMillis = 200;
+
+      GitParser parser = ParallelParseTest.newParser(repository).setQuiet(true).setRestLocation(restLocation());
+      long start = System.nanoTime();
+      parser.parse(output, "start", "end");
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+      Assert.assertEquals(4, parser.getMetrics().getJiraDegraded());
+
+      String html = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+      Assert.assertTrue(html.contains("<a href='https://issues.apache.org/jira/browse/ARTEMIS-100'>Major/Bug/ /Open</a>"));
+      // the plain link, as when the JIRAs are not fetched
+      Assert.assertTrue(html.contains("<td><a href='https://issues.apache.org/jira/browse/ARTEMIS-101'>ARTEMIS-101</a></td>"));
+      Assert.assertTrue(html.contains("4 JIRAs without details, the tracker was not available</h4>"));
+      Assert.assertTrue(html.contains("<a href='https://issues.apache.org/jira/browse/ARTEMIS-104'>ARTEMIS-104</a>\n<br>Generated"));
+   }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JiraResolverTest {
+
+   /**
+    * Serves any ARTEMIS-n as an open bug, counting the requests for each key.
+    */
+   static class JiraDispatcher extends Dispatcher {
+
+      final ConcurrentHashMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+      final AtomicInteger inFlight = new AtomicInteger();
+      final AtomicInteger maxInFlight = new AtomicInteger();
+
+      static String issueJson(String status) {
+         return "{\"fields\":{\"issuetype\":{\"name\":\"Bug\"},\"status\":{\"name\":\"" + status + "\"}," +
+            "\"resolution\":null,\"priority\":{\"name\":\"Major\"}}}";
+      }
+
+      int requests(String key) {
+         AtomicInteger count = requests.get(key);
+         return count == null ? 0 : count.get();
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         int current = inFlight.incrementAndGet();
+         try {
+            int max;
+            while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+            }
+            String path = request.getRequestUrl().encodedPath();
+            String key = path.substring(path.lastIndexOf('/') + 1);
+            requests.putIfAbsent(key, new AtomicInteger());
+            requests.get(key).incrementAndGet();
+
+            // slow enough for the lookups to overlap
+            Thread.sleep(50);
+            if (key.equals("ARTEMIS-404")) {
+               return new MockResponse().setResponseCode(404);
+            }
+            return new MockResponse().setBody(issueJson("Open"));
+         } finally {
+            inFlight.decrementAndGet();
+         }
+      }
+   }
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   MockWebServer server;
+   JiraDispatcher dispatcher;
+
+   @Before
+   public void startServer() throws Exception {
+      server = new MockWebServer();
+      dispatcher = new JiraDispatcher();
+      server.setDispatcher(dispatcher);
+      server.start();
+   }
+
+   @After
+   public void stopServer() throws Exception {
+      server.shutdown();
+   }
+
+   String restLocation() {
+      return server.url("/rest/api/2/issue/").toString();
+   }
+
+   @Test
+   public void fetchFields() throws Exception {
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2)) {
+         JiraIssue issue = resolver.get("ARTEMIS-1");
+         Assert.assertEquals("Major/Bug/ /Open", issue.toString());
+      }
+      RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+      Assert.assertEquals(JiraIssue.FIELDS, request.getRequestUrl().queryParameter("fields"));
+   }
+
+   @Test
+   public void coalesceDuplicates() throws Exception {
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 4)) {
+         resolver.prefetch(Arrays.asList("ARTEMIS-1", "ARTEMIS-2", "ARTEMIS-1", "ARTEMIS-3"));
+         resolver.prefetch(Arrays.asList("ARTEMIS-2", "ARTEMIS-3"));
+         for (int i = 0; i < 3; i++) {
+            Assert.assertNotNull(resolver.get("ARTEMIS-1"));
+            Assert.assertNotNull(resolver.get("ARTEMIS-2"));
+            Assert.assertNotNull(resolver.get("ARTEMIS-3"));
+         }
+      }
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-1"));
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-2"));
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-3"));
+   }
+
+   @Test
+   public void boundedConcurrency() throws Exception {
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2)) {
+         for (int i = 0; i < 10; i++) {
+            resolver.prefetch(Arrays.asList("ARTEMIS-" + i));
+         }
+         for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(resolver.get("ARTEMIS-" + i));
+         }
+      }
+      Assert.assertTrue("max in flight = " + dispatcher.maxInFlight.get(), dispatcher.maxInFlight.get() <= 2);
+   }
+
+   @Test
+   public void persistentCache() throws Exception {
+      File directory = temporaryFolder.newFolder("cache");
+
+      JiraCache cache = new JiraCache(directory, "test");
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setCache(cache)) {
+         Assert.assertNotNull(resolver.get("ARTEMIS-1"));
+      }
+      Assert.assertEquals(0, cache.getHits());
+      Assert.assertEquals(1, cache.getMisses());
+      cache.save();
+
+      // a new run, loading the cache from disk
+      cache = new JiraCache(directory, "test");
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2).setCache(cache)) {
+         Assert.assertEquals("Major/Bug/ /Open", resolver.get("ARTEMIS-1").toString());
+      }
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(0, cache.getMisses());
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-1"));
+   }
+
+   @Test
+   public void missingIssue() throws Exception {
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 2)) {
+         Assert.assertNull(resolver.get("ARTEMIS-404"));
+         Assert.assertNotNull(resolver.get("ARTEMIS-1"));
+      }
+   }
+
+   @Test
+   public void maxLookups() throws Exception {
+      try (JiraResolver resolver = new JiraResolver(restLocation(), 4).setMaxLookups(10)) {
+         for (int i = 0; i < 30; i++) {
+            Assert.assertNotNull(resolver.get("ARTEMIS-" + i));
+         }
+         // still there, then dropped and fetched again
+         Assert.assertNotNull(resolver.get("ARTEMIS-29"));
+         Assert.assertNotNull(resolver.get("ARTEMIS-0"));
+      }
+      Assert.assertEquals(1, dispatcher.requests("ARTEMIS-29"));
+      Assert.assertEquals(2, dispatcher.requests("ARTEMIS-0"));
+   }
+}
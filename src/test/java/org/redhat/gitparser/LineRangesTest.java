@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LineRangesTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+
+   /**
+    * A test of 200 lines, edited on lines 5 and 8, replaced on 100 to 102, and with line 181 deleted.
+    */
+   @Before
+   public void createRepository() throws Exception {
+      repository = temporaryFolder.newFolder("repo");
+      File test = new File(repository, "src/test/RangesTest.java");
+      try (Git git = Git.init().setDirectory(repository).call()) {
+         List<String> lines = new ArrayList<>();
+         for (int i = 1; i <= 200; i++) {
+            lines.add("   line " + i);
+         }
+         test.getParentFile().mkdirs();
+         Files.write(test.toPath(), lines);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("initial commit").setAuthor("Author", "author@example.com").call();
+
+         lines.set(4, "   changed 5");
+         lines.set(7, "   changed 8");
+         for (int i = 99; i < 102; i++) {
+            lines.set(i, "   changed " + (i + 1));
+         }
+         lines.remove(180);
+         Files.write(test.toPath(), lines);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("ARTEMIS-1 scattered edits").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("edits").call();
+      }
+   }
+
+   private static CommitStats.ChangedFile changed(GitParser parser) throws Exception {
+      List<CommitStats.ChangedFile> tests = ParallelParseTest.diff(parser, "edits").getInterestingChanges(0);
+      Assert.assertEquals(1, tests.size());
+      return tests.get(0);
+   }
+
+   private static void assertRanges(CommitStats.ChangedFile changed, int... ranges) {
+      Assert.assertEquals(ranges.length / 2, changed.getRangeCount());
+      for (int r = 0; r < changed.getRangeCount(); r++) {
+         Assert.assertEquals(ranges[r * 2], changed.getRangeFirst(r));
+         Assert.assertEquals(ranges[r * 2 + 1], changed.getRangeLast(r));
+      }
+      Assert.assertEquals(ranges[0], changed.getMin());
+      Assert.assertEquals(ranges[ranges.length - 1], changed.getMax());
+   }
+
+   @Test
+   public void ranges() throws Exception {
+      // the deletion marks the line before it
+      assertRanges(changed(ParallelParseTest.newParser(repository)), 5, 8, 100, 102, 180, 180);
+      assertRanges(changed(ParallelParseTest.newParser(repository).setLineGap(0)), 5, 5, 8, 8, 100, 102, 180, 180);
+      assertRanges(changed(ParallelParseTest.newParser(repository).setLineGap(Integer.MAX_VALUE)), 5, 180);
+   }
+
+   @Test
+   public void links() throws Exception {
+      File output = new File(temporaryFolder.newFolder("report"), "report.html");
+      ParallelParseTest.newParser(repository).setQuiet(true).parse(output, "HEAD~1", "edits");
+      String html = new String(Files.readAllBytes(output.toPath()));
+      Assert.assertTrue(html, html.contains("/src/test/RangesTest.java#L5-L8'>RangesTest.java</a>"));
+      Assert.assertTrue(html, html.contains("/src/test/RangesTest.java#L100-L102'>L100</a>"));
+      Assert.assertTrue(html, html.contains("/src/test/RangesTest.java#L180-L180'>L180</a>"));
+   }
+
+   @Test
+   public void stored() throws Exception {
+      File cache = temporaryFolder.newFolder("cache");
+      GitParser parser = ParallelParseTest.newParser(repository).setCacheDirectory(cache);
+      CommitStats stats = ParallelParseTest.diff(parser, "edits");
+      try (CommitStatsStore store = new CommitStatsStore(cache, parser)) {
+         store.put(stats);
+      }
+      try (CommitStatsStore store = new CommitStatsStore(cache, parser)) {
+         assertRanges(store.get(stats.getId()).getInterestingChanges(0).get(0), 5, 8, 100, 102, 180, 180);
+      }
+   }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PagedReportTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private static String read(File file) throws Exception {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+   }
+
+   @Test
+   public void pagedRowsMatchThePage() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 25);
+
+      File single = new File(temporaryFolder.newFolder("single"), "report.html");
+      ParallelParseTest.newParser(repository).parse(single, "start", "end");
+
+      File paged = new File(temporaryFolder.newFolder("paged"), "report.html");
+      ParallelParseTest.newParser(repository).setPageSize(10).parse(paged, "start", "end");
+
+      String singleOutput = read(single);
+      String pagedOutput = read(paged);
+      Assert.assertFalse(pagedOutput.contains("<tr><td>"));
+      Assert.assertTrue(pagedOutput.contains("gitReportLoad(\"report-data/rows-\", 3);"));
+
+      // the cells of every data file, put back as table rows, are the same as the rows on the single page
+      StringBuilder rows = new StringBuilder();
+      int numberOfRows = 0;
+      for (int chunk = 0; chunk < 3; chunk++) {
+         String script = read(new File(paged.getParentFile(), "report-data/rows-" + chunk + ".js"));
+         Assert.assertTrue(script.startsWith("gitReportRows(["));
+         String json = script.substring("gitReportRows(".length(), script.lastIndexOf(");"));
+         try (JsonReader reader = Json.createReader(new StringReader(json))) {
+            JsonArray array = reader.readArray();
+            Assert.assertEquals(chunk < 2 ? 10 : 5, array.size());
+            for (int r = 0; r < array.size(); r++) {
+               JsonArray cells = array.getJsonArray(r);
+               Assert.assertEquals(12, cells.size());
+               rows.append("<tr>");
+               for (int c = 0; c < cells.size(); c++) {
+                  rows.append("<td>").append(cells.getString(c)).append("</td>");
+               }
+               rows.append("</tr>");
+               numberOfRows++;
+            }
+         }
+      }
+      Assert.assertEquals(25, numberOfRows);
+      Assert.assertFalse(new File(paged.getParentFile(), "report-data/rows-3.js").exists());
+
+      String singleRows = singleOutput.substring(singleOutput.indexOf("<tbody>") + "<tbody>".length(), singleOutput.indexOf("</tbody>"));
+      Assert.assertEquals(singleRows.replace("\n", ""), rows.toString());
+   }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelParseTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   static void writeFile(File file, int lines, int seed) throws Exception {
+      file.getParentFile().mkdirs();
+      try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+         for (int i = 0; i < lines; i++) {
+            out.println("line " + i + " " + ((i * 31 + seed) % 7 == 0 ? seed : i));
+         }
+      }
+   }
+
+   /**
+    * Creates a repository with an initial commit tagged as "start", followed by a number of commits
+    * touching source and test files, the last one tagged as "end".
+    */
+   static File createRepository(File folder, int numberOfCommits) throws Exception {
+      try (Git git = Git.init().setDirectory(folder).call()) {
+         writeFile(new File(folder, "src/main/Main.java"), 20, 0);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("initial commit").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("start").call();
+
+         for (int i = 1; i <= numberOfCommits; i++) {
+            writeFile(new File(folder, "src/main/Main.java"), 20 + i, i);
+            writeFile(new File(folder, "src/main/Other" + (i % 3) + ".java"), 10 + i, i);
+            writeFile(new File(folder, "src/test/MyTest" + (i % 2) + ".java"), 5 + i, i);
+            writeFile(new File(folder, "docs/readme" + (i % 2) + ".md"), 3 + i, i);
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("ARTEMIS-" + (100 + i % 5) + " commit number " + i).setAuthor("Author " + (i % 3), "author@example.com").call();
+         }
+         git.tag().setName("end").call();
+      }
+      return folder;
+   }
+
+   static GitParser newParser(File repository) {
+      GitParser parser = new GitParser(repository, "ARTEMIS-", "https://issues.apache.org/jira/browse/", "https://github.com/apache/activemq-artemis/").
+         setSourceSuffix(".java", ".md");
+      parser.addInterestingfolder("test").addInterestingfolder("docs/");
+      return parser;
+   }
+
+   /**
+    * The stats of a single commit, as diffed for the report.
+    */
+   static CommitStats diff(GitParser parser, String revision) throws Exception {
+      try (Git git = Git.open(parser.getFolder());
+           RevWalk walk = new RevWalk(git.getRepository())) {
+         RevCommit commit = walk.parseCommit(git.getRepository().resolve(revision));
+         walk.parseHeaders(commit.getParent(0));
+         try (CommitDiffer differ = new CommitDiffer(parser, parser.newPathClassifier(), git.getRepository(), new ReportMetrics())) {
+            return differ.diff(commit);
+         }
+      }
+   }
+
+   @Test
+   public void parallelMatchesSequential() throws Exception {
+      File repository = createRepository(temporaryFolder.newFolder("repo"), 40);
+
+      File sequential = new File(temporaryFolder.newFolder("sequential"), "report.html");
+      newParser(repository).setParallelism(1).parse(sequential, "start", "end");
+
+      File parallel = new File(temporaryFolder.newFolder("parallel"), "report.html");
+      newParser(repository).setParallelism(4).parse(parallel, "start", "end");
+
+      String sequentialOutput = new String(Files.readAllBytes(sequential.toPath()));
+      String parallelOutput = new String(Files.readAllBytes(parallel.toPath()));
+
+      Assert.assertTrue(sequentialOutput.contains("commit number 40"));
+      Assert.assertTrue(sequentialOutput.indexOf("commit number 1<") < sequentialOutput.indexOf("commit number 40<"));
+      Assert.assertEquals(sequentialOutput, parallelOutput);
+   }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathClassifierTest {
+
+   @Test
+   public void sameAsContains() {
+      List<String> folders = Arrays.asList("test", "docs/", "examples/", "st/", "es", "a/b/c", "tests/integration");
+      String[] suffixes = {".java", ".md", ".c", ".sh", ".groovy", "va"};
+      PathClassifier classifier = new PathClassifier(folders, suffixes, false);
+
+      String alphabet = "abcdegilmnorstvx/._";
+      Random random = new Random(1);
+      BitSet matches = new BitSet();
+      for (int i = 0; i < 10000; i++) {
+         StringBuilder path = new StringBuilder();
+         int length = random.nextInt(40);
+         for (int c = 0; c < length; c++) {
+            path.append(alphabet.charAt(random.nextInt(alphabet.length())));
+         }
+         if (random.nextBoolean()) {
+            path.append(suffixes[random.nextInt(suffixes.length)]);
+         }
+         String value = path.toString();
+
+         boolean source = false;
+         for (String suffix : suffixes) {
+            source |= value.endsWith(suffix);
+         }
+         Assert.assertEquals(value, source, classifier.classify(value, matches));
+         for (int f = 0; f < folders.size(); f++) {
+            Assert.assertEquals(value + " on " + folders.get(f), value.contains(folders.get(f)), matches.get(f));
+         }
+      }
+   }
+
+   @Test
+   public void anchored() {
+      List<String> folders = Arrays.asList("test", "docs/");
+      PathClassifier classifier = new PathClassifier(folders, new String[] {".java"}, true);
+      BitSet matches = new BitSet();
+
+      Assert.assertTrue(classifier.classify("test/Foo.java", matches));
+      Assert.assertTrue(matches.get(0));
+
+      Assert.assertTrue(classifier.classify("artemis-server/src/test/java/Foo.java", matches));
+      Assert.assertTrue(matches.get(0));
+
+      Assert.assertTrue(classifier.classify("module/tests/Foo.java", matches));
+      Assert.assertTrue(matches.get(0));
+
+      Assert.assertTrue(classifier.classify("latest/Foo.java", matches));
+      Assert.assertTrue(matches.isEmpty());
+
+      Assert.assertFalse(classifier.classify("mydocs/readme.md", matches));
+      Assert.assertTrue(matches.isEmpty());
+
+      Assert.assertFalse(classifier.classify("docs/readme.md", matches));
+      Assert.assertTrue(matches.get(1));
+   }
+}
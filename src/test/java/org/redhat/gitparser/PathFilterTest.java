@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PathFilterTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+
+   /**
+    * Two modules, plus one whose name starts as the first one's, each commit changing one or both of them.
+    */
+   @Before
+   public void createRepository() throws Exception {
+      repository = temporaryFolder.newFolder("repo");
+      try (Git git = Git.init().setDirectory(repository).call()) {
+         ParallelParseTest.writeFile(new File(repository, "module-a/src/A.java"), 10, 0);
+         ParallelParseTest.writeFile(new File(repository, "module-a/generated/G.java"), 10, 0);
+         ParallelParseTest.writeFile(new File(repository, "module-ab/src/AB.java"), 10, 0);
+         ParallelParseTest.writeFile(new File(repository, "module-b/src/B.java"), 10, 0);
+         commit(git, "initial commit");
+         git.tag().setName("start").call();
+
+         ParallelParseTest.writeFile(new File(repository, "module-a/src/A.java"), 15, 1);
+         commit(git, "ARTEMIS-1 module a");
+
+         ParallelParseTest.writeFile(new File(repository, "module-b/src/B.java"), 20, 2);
+         ParallelParseTest.writeFile(new File(repository, "module-ab/src/AB.java"), 20, 2);
+         commit(git, "ARTEMIS-2 module b");
+
+         ParallelParseTest.writeFile(new File(repository, "module-a/src/A.java"), 18, 3);
+         ParallelParseTest.writeFile(new File(repository, "module-b/src/B.java"), 30, 3);
+         commit(git, "ARTEMIS-3 both modules");
+         git.tag().setName("both").call();
+
+         ParallelParseTest.writeFile(new File(repository, "module-a/generated/G.java"), 12, 4);
+         commit(git, "ARTEMIS-4 generated");
+         git.tag().setName("end").call();
+      }
+   }
+
+   private static void commit(Git git, String message) throws Exception {
+      git.add().addFilepattern(".").call();
+      git.commit().setMessage(message).setAuthor("Author", "author@example.com").call();
+   }
+
+   private String parse(GitParser parser, int commits) throws Exception {
+      File output = new File(temporaryFolder.newFolder(), "report.html");
+      parser.parse(output, "start", "end");
+      Assert.assertEquals(commits, parser.getMetrics().getCommitsWalked());
+      return new String(Files.readAllBytes(output.toPath()), "UTF-8");
+   }
+
+   @Test
+   public void noFilter() throws Exception {
+      parse(ParallelParseTest.newParser(repository), 4);
+      CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository), "both");
+      Assert.assertEquals(13, stats.getAddition());
+   }
+
+   @Test
+   public void include() throws Exception {
+      String report = parse(ParallelParseTest.newParser(repository).addIncludePath("module-a"), 3);
+      Assert.assertFalse(report.contains("ARTEMIS-2"));
+      Assert.assertTrue(report.contains("ARTEMIS-4"));
+
+      // only the lines of module-a are counted
+      CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository).addIncludePath("module-a/"), "both");
+      Assert.assertEquals(3, stats.getAddition());
+      Assert.assertEquals(0, stats.getDeletion());
+   }
+
+   @Test
+   public void exclude() throws Exception {
+      String report = parse(ParallelParseTest.newParser(repository).addIncludePath("module-a").addExcludePath("module-a/generated/"), 2);
+      Assert.assertFalse(report.contains("ARTEMIS-4"));
+
+      // module-ab is not under module-b
+      parse(ParallelParseTest.newParser(repository).addExcludePath("module-b"), 4);
+      parse(ParallelParseTest.newParser(repository).addExcludePath("module-b").addExcludePath("module-ab"), 3);
+      CommitStats stats = ParallelParseTest.diff(ParallelParseTest.newParser(repository).addExcludePath("module-b"), "both");
+      Assert.assertEquals(3, stats.getAddition());
+   }
+
+   @Test
+   public void bounded() throws Exception {
+      String report = parse(ParallelParseTest.newParser(repository).addIncludePath("module-b").setMaxRecordsInMemory(10), 2);
+      Assert.assertFalse(report.contains("ARTEMIS-1"));
+      Assert.assertFalse(report.contains("ARTEMIS-4"));
+   }
+}
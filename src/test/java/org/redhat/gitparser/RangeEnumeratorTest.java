@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RangeEnumeratorTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+
+   private static final String[][] RANGES = {{"start", "head"}, {"fork", "head"}, {"head", "maintenance"}, {"maintenance", "head"},
+      {"start", "head", "backport"}, {"fork", "head", "feature", "backport"}, {"head", "head"}};
+
+   /**
+    * master with a merged feature branch, a maintenance branch forked from it and a backport branch forked from that one.
+    */
+   @Before
+   public void createRepository() throws Exception {
+      repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 5);
+      try (Git git = Git.open(repository)) {
+         git.tag().setName("fork").call();
+         git.branchCreate().setName("maintenance").call();
+         git.branchCreate().setName("feature").call();
+
+         commits(git, "feature", 3, 100);
+         commits(git, "master", 4, 200);
+         git.merge().include(git.getRepository().resolve("feature")).setMessage("merge feature").call();
+         commits(git, "master", 3, 300);
+         git.tag().setName("head").call();
+
+         commits(git, "maintenance", 4, 400);
+         git.branchCreate().setName("backport").call();
+         commits(git, "backport", 2, 500);
+         commits(git, "maintenance", 2, 600);
+      }
+   }
+
+   private void commits(Git git, String branch, int count, int seed) throws Exception {
+      git.checkout().setName(branch).call();
+      for (int i = 0; i < count; i++) {
+         ParallelParseTest.writeFile(new File(repository, "src/main/" + branch + ".java"), 10 + i, seed + i);
+         git.add().addFilepattern(".").call();
+         git.commit().setMessage("ARTEMIS-" + (seed + i) + " on " + branch).setAuthor("Author", "author@example.com").call();
+      }
+   }
+
+   private static List<RevCommit> revWalk(Repository repository, String[] range) throws Exception {
+      try (RevWalk walk = new RevWalk(repository)) {
+         walk.sort(RevSort.REVERSE, true);
+         walk.setRevFilter(RevFilter.NO_MERGES);
+         walk.markStart(walk.parseCommit(repository.resolve(range[1])));
+         for (String ref : uninteresting(range)) {
+            walk.markUninteresting(walk.parseCommit(repository.resolve(ref)));
+         }
+         List<RevCommit> commits = new ArrayList<>();
+         for (RevCommit commit : walk) {
+            commits.add(commit);
+         }
+         return commits;
+      }
+   }
+
+   private static List<String> uninteresting(String[] range) {
+      List<String> refs = new ArrayList<>(Arrays.asList(range).subList(2, range.length));
+      refs.add(0, range[0]);
+      return refs;
+   }
+
+   private static List<RevCommit> enumerate(Repository repository, RangeEnumerator enumerator, String[] range) throws Exception {
+      try (RevWalk walk = new RevWalk(repository)) {
+         List<RevCommit> uninteresting = new ArrayList<>();
+         for (String ref : uninteresting(range)) {
+            uninteresting.add(walk.parseCommit(repository.resolve(ref)));
+         }
+         return enumerator.enumerate(walk, walk.parseCommit(repository.resolve(range[1])), uninteresting);
+      }
+   }
+
+   /**
+    * The same commits as the RevWalk, oldest first. Commits with the same commit time could be listed on a different order.
+    */
+   private static void assertSameRanges(Repository repository, RangeEnumerator enumerator) throws Exception {
+      for (String[] range : RANGES) {
+         List<RevCommit> expected = revWalk(repository, range);
+         List<RevCommit> commits = enumerate(repository, enumerator, range);
+         Assert.assertEquals(Arrays.toString(range), names(expected), names(commits));
+         for (int i = 1; i < commits.size(); i++) {
+            Assert.assertTrue(commits.get(i - 1).getCommitTime() <= commits.get(i).getCommitTime());
+         }
+      }
+   }
+
+   private static List<String> names(List<RevCommit> commits) {
+      List<String> names = new ArrayList<>();
+      for (RevCommit commit : commits) {
+         names.add(commit.getName());
+      }
+      Collections.sort(names);
+      return names;
+   }
+
+   @Test
+   public void graph() throws Exception {
+      File cache = temporaryFolder.newFolder("cache");
+      try (Git git = Git.open(repository)) {
+         Repository repository = git.getRepository();
+         CommitGraph graph = new CommitGraph(cache);
+         assertSameRanges(repository, new RangeEnumerator(graph));
+         Assert.assertTrue(graph.size() > 0);
+
+         // loaded back from the cache directory, nothing to add
+         CommitGraph loaded = new CommitGraph(cache);
+         Assert.assertEquals(graph.size(), loaded.size());
+         assertSameRanges(repository, new RangeEnumerator(loaded));
+         Assert.assertEquals(graph.size(), loaded.size());
+
+         // no graph, no bitmaps
+         Assert.assertNull(enumerate(repository, new RangeEnumerator(null), RANGES[0]));
+      }
+   }
+
+   @Test
+   public void bitmaps() throws Exception {
+      try (Git git = Git.open(repository)) {
+         git.gc().call();
+         Repository repository = git.getRepository();
+         try (ObjectReader reader = repository.newObjectReader()) {
+            Assert.assertNotNull(reader.getBitmapIndex());
+         }
+         CommitGraph graph = new CommitGraph();
+         assertSameRanges(repository, new RangeEnumerator(graph));
+         // every uninteresting ref had a bitmap
+         Assert.assertEquals(0, graph.size());
+      }
+   }
+
+   @Test
+   public void excludedRefs() throws Exception {
+      ReportRange range = ReportRange.parse("fork..maintenance ^backport");
+      Assert.assertEquals(Arrays.asList("backport"), range.getExcluded());
+      Assert.assertEquals("fork..maintenance ^backport", range.toString());
+
+      for (boolean fastEnumeration : new boolean[] {false, true}) {
+         GitParser parser = ParallelParseTest.newParser(repository).setFastEnumeration(fastEnumeration);
+         parser.parse(temporaryFolder.newFolder(), Arrays.asList(range, ReportRange.parse("fork..maintenance")));
+         // the 2 commits only on maintenance, and all of them
+         Assert.assertEquals(2 + 6, parser.getMetrics().getCommitsWalked());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void invalidExcludedRef() {
+      ReportRange.parse("start..end backport");
+   }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RenameDetectionTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File repository;
+
+   /**
+    * On top of the usual commits, moves a test as is and two source files with a single line changed.
+    */
+   @Before
+   public void createRepository() throws Exception {
+      repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 5);
+      try (Git git = Git.open(repository)) {
+         move("src/test/MyTest0.java", "src/test/moved/MyTest0.java");
+         for (String name : new String[] {"Other0.java", "Other1.java"}) {
+            File other = move("src/main/" + name, "src/main/moved/" + name);
+            List<String> lines = Files.readAllLines(other.toPath());
+            lines.set(2, "changed after the move");
+            Files.write(other.toPath(), lines);
+         }
+
+         git.add().addFilepattern(".").call();
+         git.rm().addFilepattern("src/test/MyTest0.java").addFilepattern("src/main/Other0.java").addFilepattern("src/main/Other1.java").call();
+         git.commit().setMessage("ARTEMIS-200 move the package").setAuthor("Author", "author@example.com").call();
+         git.tag().setName("moved").call();
+      }
+   }
+
+   private File move(String from, String to) throws Exception {
+      File target = new File(repository, to);
+      target.getParentFile().mkdirs();
+      Files.move(new File(repository, from).toPath(), target.toPath());
+      return target;
+   }
+
+   private CommitStats diffMove(GitParser parser) throws Exception {
+      return ParallelParseTest.diff(parser, "moved");
+   }
+
+   @Test
+   public void withoutRenames() throws Exception {
+      CommitStats stats = diffMove(ParallelParseTest.newParser(repository));
+      // the whole files are added and deleted
+      Assert.assertEquals(13 + 14, stats.getAddition());
+      Assert.assertEquals(13 + 14, stats.getDeletion());
+
+      List<CommitStats.ChangedFile> tests = stats.getInterestingChanges(0);
+      Assert.assertEquals(2, tests.size());
+      Assert.assertFalse(tests.get(0).isMoved());
+   }
+
+   @Test
+   public void withRenames() throws Exception {
+      CommitStats stats = diffMove(ParallelParseTest.newParser(repository).setDetectRenames(true));
+      Assert.assertEquals(0, stats.getAddition());
+      Assert.assertEquals(2, stats.getReplacement());
+      Assert.assertEquals(0, stats.getDeletion());
+
+      List<CommitStats.ChangedFile> tests = stats.getInterestingChanges(0);
+      Assert.assertEquals(1, tests.size());
+      Assert.assertEquals("src/test/moved/MyTest0.java", tests.get(0).getPath());
+      Assert.assertEquals("src/test/MyTest0.java", tests.get(0).getOldPath());
+      Assert.assertFalse(tests.get(0).isDeleted());
+      Assert.assertFalse(tests.get(0).hasLines());
+
+      File output = new File(temporaryFolder.newFolder("report"), "report.html");
+      ParallelParseTest.newParser(repository).setDetectRenames(true).parse(output, "end", "moved");
+      String html = new String(Files.readAllBytes(output.toPath()));
+      Assert.assertTrue(html, html.contains("blob/" + stats.getId() + "/src/test/moved/MyTest0.java'>MyTest0.java</a>"));
+      Assert.assertTrue(html, html.contains("(moved from src/test/MyTest0.java)"));
+   }
+
+   @Test
+   public void overRenameLimit() throws Exception {
+      // 2 files left after the exact renames is over the limit, only the exact rename is found
+      CommitStats stats = diffMove(ParallelParseTest.newParser(repository).setDetectRenames(true).setRenameLimit(1));
+      Assert.assertEquals(13 + 14, stats.getAddition());
+      Assert.assertEquals(13 + 14, stats.getDeletion());
+      Assert.assertTrue(stats.getInterestingChanges(0).get(0).isMoved());
+   }
+}
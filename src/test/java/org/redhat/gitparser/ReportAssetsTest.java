@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportAssetsTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void testStage() throws Exception {
+      File directory = temporaryFolder.newFolder("reports");
+      int assets = ReportAssets.STYLE_NAMES.length + ReportAssets.IMAGE_NAMES.length;
+      Assert.assertEquals(assets, ReportAssets.stage(directory));
+      Assert.assertEquals(0, ReportAssets.stage(directory));
+
+      File css = new File(directory, "styles/framework.css");
+      Assert.assertArrayEquals(ReportAssets.read("framework.css").toByteArray(), Files.readAllBytes(css.toPath()));
+
+      // the same size, another content
+      byte[] changed = Files.readAllBytes(css.toPath());
+      changed[0] = (byte) (changed[0] + 1);
+      Files.write(css.toPath(), changed);
+      css.setLastModified(css.lastModified() - 10000);
+      Assert.assertEquals(1, ReportAssets.stage(directory));
+      Assert.assertArrayEquals(ReportAssets.read("framework.css").toByteArray(), Files.readAllBytes(css.toPath()));
+
+      // a file already there from another process, with the same content, is not written again
+      File other = temporaryFolder.newFolder("other");
+      File png = new File(other, "images/sort_asc.png");
+      png.getParentFile().mkdirs();
+      Files.write(png.toPath(), ReportAssets.read("sort_asc.png").toByteArray());
+      Assert.assertEquals(assets - 1, ReportAssets.stage(other));
+
+      new File(other, "styles/jquery.min.js").delete();
+      Assert.assertEquals(1, ReportAssets.stage(other));
+   }
+
+   @Test
+   public void testInline() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 5);
+      File directory = temporaryFolder.newFolder("inline");
+      File output = new File(directory, "report.html");
+      ParallelParseTest.newParser(repository).setQuiet(true).setInlineAssets(true).parse(output, "start", "end");
+
+      Assert.assertFalse(new File(directory, "styles").exists());
+      Assert.assertFalse(new File(directory, "images").exists());
+      String page = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+      Assert.assertFalse(page.contains("\"styles/"));
+      Assert.assertFalse(page.contains("../images/sort_asc.png"));
+      Assert.assertTrue(page.contains("url(\"data:image/png;base64," + ReportAssets.read("sort_asc.png").base64() + "\")"));
+      Assert.assertTrue(page.contains("commit number 5<"));
+   }
+
+   @Test
+   public void testInlineBatch() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 5);
+      // not there yet, nothing is staged to create it
+      File directory = new File(temporaryFolder.getRoot(), "batch/reports");
+      ParallelParseTest.newParser(repository).setQuiet(true).setInlineAssets(true).parse(directory, Arrays.asList(ReportRange.parse("start..end")));
+
+      Assert.assertTrue(new File(directory, "index.html").exists());
+      Assert.assertTrue(new File(directory, ReportRange.parse("start..end").getFileName()).exists());
+      Assert.assertFalse(new File(directory, "styles").exists());
+   }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportMetricsTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void metricsWritten() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      File metricsFile = new File(temporaryFolder.getRoot(), "metrics.json");
+      File output = new File(temporaryFolder.newFolder("report"), "report.html");
+
+      try (MockWebServer server = new MockWebServer()) {
+         server.setDispatcher(new JiraResolverTest.JiraDispatcher());
+         server.start();
+
+         GitParser parser = ParallelParseTest.newParser(repository).setParallelism(2).setQuiet(true).
+            setRestLocation(server.url("/rest/api/2/issue/").toString()).
+            setMetricsFile(metricsFile).setRegisterMBean(true);
+         parser.parse(output, "start", "end");
+
+         ReportMetrics metrics = parser.getMetrics();
+         Assert.assertEquals(20, metrics.getCommitsWalked());
+         // ARTEMIS-100 to ARTEMIS-104
+         Assert.assertEquals(5, metrics.getRestCalls());
+         Assert.assertTrue(metrics.getDiffEntries() >= 20 * 4);
+         Assert.assertTrue(metrics.getBlobsLoaded() > 0);
+         Assert.assertTrue(metrics.getEditsCounted() > 0);
+         Assert.assertEquals(output.length(), metrics.getBytesWritten());
+
+         long histogramCalls = 0;
+         for (long calls : metrics.getRestLatencyHistogram()) {
+            histogramCalls += calls;
+         }
+         Assert.assertEquals(5, histogramCalls);
+
+         try (JsonReader reader = Json.createReader(new FileInputStream(metricsFile))) {
+            JsonObject json = reader.readObject();
+            Assert.assertEquals(20, json.getInt("commitsWalked"));
+            Assert.assertEquals(5, json.getJsonObject("rest").getInt("calls"));
+            Assert.assertEquals(metrics.getEditsCounted(), json.getJsonNumber("editsCounted").longValue());
+            Assert.assertTrue(json.getJsonObject("stagesMillis").containsKey("diff"));
+         }
+
+         ObjectName name = new ObjectName("org.redhat.gitparser:type=ReportMetrics,report=\"report.html\"");
+         Assert.assertEquals(20L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CommitsWalked"));
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      }
+   }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportProfileTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void testBuiltin() throws Exception {
+      ReportProfile artemis = ReportProfile.builtin("artemis");
+      Assert.assertEquals("artemis", artemis.getName());
+      Assert.assertEquals(Arrays.asList("ARTEMIS-"), artemis.getJira());
+      Assert.assertTrue(artemis.getSourceSuffix().contains(".java"));
+      Assert.assertNull(artemis.getRepository());
+
+      GitParser parser = artemis.newParser(temporaryFolder.getRoot());
+      Assert.assertEquals("https://github.com/apache/activemq-artemis/", parser.getGithubURI());
+      Assert.assertEquals(Arrays.asList("test", "docs/", "examples/"), parser.getInterestingFolder());
+
+      Assert.assertEquals(Arrays.asList("WFLY-"), ReportProfile.builtin("wildfly").getJira());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMissingSuffix() throws Exception {
+      ReportProfile.read(new ByteArrayInputStream("{\"name\":\"x\",\"jira\":\"X-\",\"jiraBrowseURI\":\"b\",\"githubURI\":\"g\"}".getBytes(StandardCharsets.UTF_8)), null);
+   }
+
+   /**
+    * Two profiles on one file, with paths relative to it, running together on pools of one thread.
+    */
+   @Test
+   public void testRunner() throws Exception {
+      File base = temporaryFolder.newFolder("profiles");
+      ParallelParseTest.createRepository(new File(base, "one"), 10);
+      ParallelParseTest.createRepository(new File(base, "two"), 20);
+
+      File profileFile = new File(base, "release.json");
+      Files.write(profileFile.toPath(), ("[" + profile("one") + "," + profile("two") + "]").getBytes(StandardCharsets.UTF_8));
+
+      List<ReportProfile> profiles = ReportProfile.load(profileFile);
+      Assert.assertEquals(2, profiles.size());
+      Assert.assertEquals(new File(base, "one"), profiles.get(0).getRepository());
+      Assert.assertEquals(1, profiles.get(1).getRanges().size());
+
+      Map<String, Exception> failures;
+      try (ReportRunner runner = new ReportRunner(1, 1).setConcurrency(2).setCacheDirectory(temporaryFolder.newFolder("cache"))) {
+         failures = runner.run(profiles);
+      }
+      Assert.assertTrue(failures.toString(), failures.isEmpty());
+
+      for (String name : new String[]{"one", "two"}) {
+         File output = new File(base, "out-" + name);
+         Assert.assertTrue(new File(output, "index.html").exists());
+         Assert.assertTrue(new File(output, "start..end.html").exists());
+         Assert.assertTrue(new File(temporaryFolder.getRoot(), "cache/" + name).isDirectory());
+      }
+   }
+
+   @Test
+   public void testRunnerFailure() throws Exception {
+      File base = temporaryFolder.newFolder("profiles");
+      ParallelParseTest.createRepository(new File(base, "one"), 5);
+      File profileFile = new File(base, "release.json");
+      Files.write(profileFile.toPath(), ("[" + profile("one") + "," + profile("missing") + "]").getBytes(StandardCharsets.UTF_8));
+
+      Map<String, Exception> failures;
+      try (ReportRunner runner = new ReportRunner(1, 1)) {
+         failures = runner.run(ReportProfile.load(profileFile));
+      }
+      Assert.assertEquals(Arrays.asList("missing"), Arrays.asList(failures.keySet().toArray()));
+      Assert.assertTrue(new File(base, "out-one/index.html").exists());
+   }
+
+   private static String profile(String name) {
+      return "{\"name\":\"" + name + "\",\"jira\":\"ARTEMIS-\",\"jiraBrowseURI\":\"https://issues.apache.org/jira/browse/\"," +
+         "\"githubURI\":\"https://github.com/apache/activemq-artemis/\",\"sourceSuffix\":[\".java\"],\"interestingFolders\":\"test\"," +
+         "\"repository\":\"" + name + "\",\"output\":\"out-" + name + "\",\"ranges\":[\"start..end\"]}";
+   }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportServerTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private final OkHttpClient client = new OkHttpClient();
+
+   private Response get(ReportServer server, String path) throws Exception {
+      return client.newCall(new Request.Builder().url("http://localhost:" + server.getPort() + path).build()).execute();
+   }
+
+   private String body(ReportServer server, String path) throws Exception {
+      try (Response response = get(server, path)) {
+         Assert.assertEquals(path, 200, response.code());
+         return response.body().string();
+      }
+   }
+
+   @Test
+   public void serveReports() throws Exception {
+      final File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+
+      File oneShot = new File(temporaryFolder.newFolder("oneShot"), "report.html");
+      ParallelParseTest.newParser(repository).parse(oneShot, "start", "end");
+      String expected = new String(Files.readAllBytes(oneShot.toPath()), "UTF-8");
+
+      try (final ReportServer server = new ReportServer(ParallelParseTest.newParser(repository).setQuiet(true), new InetSocketAddress("localhost", 0), 4)) {
+         server.start();
+
+         Assert.assertEquals(expected, body(server, "/report?from=start&to=end"));
+
+         // concurrent requests, served from the warm caches
+         ExecutorService executor = Executors.newFixedThreadPool(4);
+         try {
+            List<Future<String>> reports = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+               reports.add(executor.submit(new Callable<String>() {
+                  @Override
+                  public String call() throws Exception {
+                     return body(server, "/report?from=start&to=end");
+                  }
+               }));
+            }
+            for (Future<String> report : reports) {
+               Assert.assertEquals(expected, report.get());
+            }
+         } finally {
+            executor.shutdown();
+         }
+
+         String etag;
+         try (Response response = get(server, "/styles/jquery.min.js")) {
+            Assert.assertEquals(200, response.code());
+            // okhttp asks for gzip and decodes it
+            Assert.assertEquals(ReportAssets.read("jquery.min.js"), response.body().source().readByteString());
+            etag = response.header("ETag");
+            Assert.assertNotNull(etag);
+         }
+         Request cached = new Request.Builder().url("http://localhost:" + server.getPort() + "/styles/jquery.min.js").header("If-None-Match", etag).build();
+         try (Response response = client.newCall(cached).execute()) {
+            Assert.assertEquals(304, response.code());
+         }
+         try (Response response = get(server, "/styles/secret.txt")) {
+            Assert.assertEquals(404, response.code());
+         }
+         try (Response response = get(server, "/report?from=start&to=unknown")) {
+            Assert.assertEquals(404, response.code());
+         }
+         try (Response response = get(server, "/report?from=start")) {
+            Assert.assertEquals(400, response.code());
+         }
+
+         // a new commit and tag only show after a reload
+         try (Git git = Git.open(repository)) {
+            ParallelParseTest.writeFile(new File(repository, "src/main/Main.java"), 50, 50);
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("ARTEMIS-200 commit after the server started").setAuthor("Author", "author@example.com").call();
+            git.tag().setName("next").call();
+         }
+         String next = body(server, "/report?from=start&to=next&reload=true");
+         Assert.assertTrue(next.contains("commit after the server started"));
+         Assert.assertTrue(next.contains("commit number 20<"));
+      }
+   }
+
+   @Test
+   public void nothingKeptAfterReports() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      GitParser parser = ParallelParseTest.newParser(repository).setQuiet(true).setRegisterMBean(true);
+      ObjectName pattern = new ObjectName("org.redhat.gitparser:type=ReportMetrics,*");
+
+      try (ReportServer server = new ReportServer(parser, new InetSocketAddress("localhost", 0), 2)) {
+         server.start();
+         int before = ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).size();
+         for (int i = 0; i < 3; i++) {
+            body(server, "/report?from=start&to=end");
+            body(server, "/report?from=end~1&to=end");
+         }
+         // no MBean left per request, and only the JIRAs of the last report
+         Assert.assertEquals(before, ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).size());
+         Assert.assertEquals(1, parser.getMetrics().getCommitsWalked());
+         Assert.assertEquals(1, parser.getTotalJiras().size());
+      }
+   }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportSinkTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void jsonLinesAndCsvOnTheSamePass() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 12);
+      File output = temporaryFolder.newFolder("report");
+      File jsonLines = new File(output, "report.jsonl");
+      File csv = new File(output, "report.csv");
+
+      try (MockWebServer server = new MockWebServer()) {
+         server.setDispatcher(new JiraResolverTest.JiraDispatcher());
+         server.start();
+
+         ParallelParseTest.newParser(repository).setQuiet(true).setRestLocation(server.url("/rest/api/2/issue/").toString()).
+            addSink(new JsonLinesSink(jsonLines)).addSink(new CsvSink(csv)).
+            parse(new File(output, "report.html"), "start", "end");
+      }
+
+      List<String> lines = Files.readAllLines(jsonLines.toPath(), StandardCharsets.UTF_8);
+      Assert.assertEquals(12, lines.size());
+      for (int i = 0; i < lines.size(); i++) {
+         try (JsonReader reader = Json.createReader(new StringReader(lines.get(i)))) {
+            JsonObject record = reader.readObject();
+            Assert.assertEquals(i + 1, record.getInt("number"));
+            Assert.assertEquals(40, record.getString("sha").length());
+            Assert.assertEquals("ARTEMIS-" + (100 + (i + 1) % 5) + " commit number " + (i + 1), record.getString("message"));
+            JsonObject jira = record.getJsonArray("jiras").getJsonObject(0);
+            Assert.assertEquals("ARTEMIS-" + (100 + (i + 1) % 5), jira.getString("key"));
+            Assert.assertEquals("Open", jira.getString("status"));
+            // every commit changes one test and one doc file
+            Assert.assertEquals(1, record.getJsonObject("folders").getJsonArray("test").size());
+            Assert.assertEquals(1, record.getJsonObject("folders").getJsonArray("docs/").size());
+            Assert.assertTrue(record.getInt("addition") + record.getInt("replacement") > 0);
+         }
+      }
+
+      List<String> rows = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+      Assert.assertEquals(13, rows.size());
+      Assert.assertEquals("number,sha,date,author,message,jiras,statuses,addition,replacement,deletion,total,test,docs/", rows.get(0));
+      String[] first = rows.get(1).split(",");
+      Assert.assertEquals(13, first.length);
+      Assert.assertEquals("1", first[0]);
+      Assert.assertEquals("ARTEMIS-101", first[5]);
+      Assert.assertEquals("Open", first[6]);
+      Assert.assertTrue(first[11].startsWith("src/test/MyTest"));
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.redhat.gitparser;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockWebServer;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportSummaryTest {
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   @Test
+   public void summaryOnTheSamePass() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 20);
+      File output = temporaryFolder.newFolder("report");
+      File html = new File(output, "report.html");
+      File jsonLines = new File(output, "report.jsonl");
+
+      try (MockWebServer server = new MockWebServer()) {
+         server.setDispatcher(new JiraResolverTest.JiraDispatcher());
+         server.start();
+
+         ParallelParseTest.newParser(repository).setQuiet(true).setSummary(true).setRestLocation(server.url("/rest/api/2/issue/").toString()).
+            addSink(new JsonLinesSink(jsonLines)).parse(html, "start", "end");
+      }
+
+      List<JsonObject> summary = new ArrayList<>();
+      long commitAdditions = 0;
+      for (String line : Files.readAllLines(jsonLines.toPath(), StandardCharsets.UTF_8)) {
+         try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            JsonObject record = reader.readObject();
+            if (record.containsKey("summary")) {
+               summary.add(record);
+            } else {
+               commitAdditions += record.getInt("addition");
+            }
+         }
+      }
+
+      // Author 0, 1 and 2, one JIRA status, and the two interesting folders
+      Assert.assertEquals(3 + 1 + 2, summary.size());
+
+      long authorAdditions = 0;
+      long authorCommits = 0;
+      for (JsonObject record : summary.subList(0, 3)) {
+         Assert.assertEquals("author", record.getString("summary"));
+         authorAdditions += record.getInt("add");
+         authorCommits += record.getInt("commits");
+      }
+      Assert.assertEquals(20, authorCommits);
+      Assert.assertEquals(commitAdditions, authorAdditions);
+      Assert.assertEquals("Author 1", summary.get(0).getString("name"));
+      Assert.assertEquals(7, summary.get(0).getInt("commits"));
+
+      JsonObject status = summary.get(3);
+      Assert.assertEquals("jiraStatus", status.getString("summary"));
+      Assert.assertEquals("Bug/Open", status.getString("name"));
+      Assert.assertEquals(20, status.getInt("commits"));
+      Assert.assertEquals(5, status.getInt("jiras"));
+
+      JsonObject tests = summary.get(4);
+      Assert.assertEquals("test", tests.getString("name"));
+      Assert.assertEquals(20, tests.getInt("commits"));
+      Assert.assertEquals(20, tests.getInt("changes"));
+      // MyTest0 and MyTest1
+      Assert.assertEquals(2, tests.getInt("files"));
+
+      String page = new String(Files.readAllBytes(html.toPath()), StandardCharsets.UTF_8);
+      Assert.assertTrue(page, page.contains("<tr><td>Bug/Open</td><td>20</td><td>5</td></tr>"));
+      Assert.assertTrue(page, page.contains("<tr><td>docs/</td><td>20</td><td>20</td><td>2</td></tr>"));
+      // the largest first
+      Assert.assertTrue(page.indexOf("<tr><td>Author 1</td><td>7</td>") < page.indexOf("<tr><td>Author 0</td><td>6</td>"));
+   }
+
+   @Test
+   public void noJiraAndUnknown() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 4);
+      GitParser parser = ParallelParseTest.newParser(repository);
+      ReportSummary summary = new ReportSummary(parser);
+
+      CommitStats stats = ParallelParseTest.diff(parser, "end");
+      stats.setJiras(new String[0]);
+      RevCommit commit;
+      try (Git git = Git.open(repository);
+           RevWalk walk = new RevWalk(git.getRepository())) {
+         commit = walk.parseCommit(git.getRepository().resolve("end"));
+      }
+      summary.add(commit, stats, null);
+      stats.setJiras(new String[] {"ARTEMIS-1", "ARTEMIS-2"});
+      summary.add(commit, stats, null);
+
+      Assert.assertEquals(1, summary.getJiraStatus().get(ReportSummary.NO_JIRA, ReportSummary.COMMITS));
+      Assert.assertEquals(1, summary.getJiraStatus().get(ReportSummary.UNKNOWN, ReportSummary.COMMITS));
+      Assert.assertEquals(2, summary.getJiraStatus().get(ReportSummary.UNKNOWN, ReportSummary.JIRAS));
+      Assert.assertEquals(2, summary.getAuthors().get(commit.getAuthorIdent().getName(), ReportSummary.COMMITS));
+   }
+
+   @Test
+   public void foldersByPosition() throws Exception {
+      File repository = ParallelParseTest.createRepository(temporaryFolder.newFolder("repo"), 10);
+      // the same folder twice, then another one
+      GitParser parser = ParallelParseTest.newParser(repository).addInterestingfolder("docs/").addInterestingfolder("src/main/");
+
+      ReportSummary summary = new ReportSummary(parser);
+      ReportSummary.Table folders = summary.getFolders();
+      Assert.assertEquals(4, folders.size());
+      Assert.assertEquals("docs/", folders.getName(1));
+      Assert.assertEquals("docs/", folders.getName(2));
+      Assert.assertEquals("src/main/", folders.getName(3));
+
+      File html = new File(temporaryFolder.newFolder("report"), "report.html");
+      parser.setQuiet(true).setSummary(true).parse(html, "start", "end");
+      String page = new String(Files.readAllBytes(html.toPath()), StandardCharsets.UTF_8);
+      Assert.assertTrue(page, page.contains("<tr><td>test</td><td>10</td><td>10</td><td>2</td></tr>\n<tr><td>docs/</td><td>10</td><td>10</td><td>2</td></tr>\n" +
+         "<tr><td>docs/</td><td>10</td><td>10</td><td>2</td></tr>\n<tr><td>src/main/</td><td>10</td><td>20</td><td>4</td></tr>"));
+   }
+}